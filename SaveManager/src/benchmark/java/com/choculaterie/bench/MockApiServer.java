@@ -0,0 +1,363 @@
+package com.choculaterie.bench;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stand-in for the Save Manager API: {@code /list}, {@code /names}, {@code /upload},
+ * {@code /download/{id}} (with single-range requests), {@code /delete/{id}} and {@code /quota-info}; list and
+ * quota answers carry an {@code ETag} and honour {@code If-None-Match}. Saves are kept on disk under a scratch
+ * directory. Every request can be delayed, throttled per connection and made to
+ * fail at random, so transfer code can be measured and exercised offline. Endpoints the real server offers
+ * beyond these (chunked sessions, delta chunks) answer 404, which drives clients onto their fallback paths.
+ */
+public final class MockApiServer implements AutoCloseable {
+    private static final String API_BASE_PATH = "/api/SaveManagerAPI";
+    private static final String API_KEY_HEADER = "X-Save-Key";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private record StoredSave(String id, String worldName, Path file, long dataOffset, long size, Instant updated) {
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "MockApiServer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Path storageDir;
+    private final Map<String, StoredSave> saves = new ConcurrentHashMap<>();
+    private final Random random = new Random(42);
+
+    private volatile long latencyMs;
+    private volatile long bandwidthBps;
+    private volatile double failureRate;
+    private volatile double truncateRate;
+
+    public MockApiServer(Path storageDir) throws IOException {
+        this.storageDir = Files.createDirectories(storageDir);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 64);
+        server.createContext(API_BASE_PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /** Delay added before every response, simulating a round trip. */
+    public void setLatencyMs(long latencyMs) {
+        this.latencyMs = Math.max(0L, latencyMs);
+    }
+
+    /** Per-connection cap on request and response bodies in bytes per second; 0 means unlimited. */
+    public void setBandwidthBps(long bandwidthBps) {
+        this.bandwidthBps = Math.max(0L, bandwidthBps);
+    }
+
+    /** Probability that a request is answered with 503 before it is processed. */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /** Probability that a download drops the connection half-way through its body. */
+    public void setTruncateRate(double truncateRate) {
+        this.truncateRate = truncateRate;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        for (StoredSave s : saves.values()) {
+            try { Files.deleteIfExists(s.file()); } catch (IOException ignored) {}
+        }
+        saves.clear();
+    }
+
+    // ── Routing ──
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (latencyMs > 0) Thread.sleep(latencyMs);
+            String key = ex.getRequestHeaders().getFirst(API_KEY_HEADER);
+            if (key == null || key.isBlank()) {
+                sendJson(ex, 401, error("Missing API key"));
+                return;
+            }
+            if (chance(failureRate)) {
+                ex.getResponseHeaders().add("Retry-After", "1");
+                sendJson(ex, 503, error("Injected failure"));
+                return;
+            }
+            String path = ex.getRequestURI().getPath().substring(API_BASE_PATH.length());
+            String method = ex.getRequestMethod();
+            if (path.equals("/list") && method.equals("GET")) list(ex);
+            else if (path.equals("/names") && method.equals("GET")) names(ex);
+            else if (path.equals("/quota-info") && method.equals("GET")) quota(ex);
+            else if (path.equals("/upload") && method.equals("POST")) upload(ex);
+            else if (path.startsWith("/download/") && method.equals("GET")) download(ex, path.substring(10));
+            else if (path.startsWith("/delete/") && method.equals("DELETE")) delete(ex, path.substring(8));
+            else sendJson(ex, 404, error("Not found"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void list(HttpExchange ex) throws IOException {
+        JsonArray arr = new JsonArray();
+        for (StoredSave s : saves.values()) {
+            JsonObject o = new JsonObject();
+            o.addProperty("id", s.id());
+            o.addProperty("worldName", s.worldName());
+            o.addProperty("fileSizeBytes", s.size());
+            o.addProperty("createdAt", s.updated().toString());
+            o.addProperty("updatedAt", s.updated().toString());
+            arr.add(o);
+        }
+        JsonObject body = new JsonObject();
+        body.add("saves", arr);
+        sendCacheable(ex, body.toString());
+    }
+
+    private void names(HttpExchange ex) throws IOException {
+        JsonArray arr = new JsonArray();
+        saves.values().forEach(s -> arr.add(s.worldName()));
+        sendJson(ex, 200, arr.toString());
+    }
+
+    private void quota(HttpExchange ex) throws IOException {
+        long used = saves.values().stream().mapToLong(StoredSave::size).sum();
+        JsonObject body = new JsonObject();
+        body.addProperty("quotaFormatted", "100 GB");
+        body.addProperty("usedBytes", used);
+        sendCacheable(ex, body.toString());
+    }
+
+    private void delete(HttpExchange ex, String id) throws IOException {
+        StoredSave s = saves.remove(id);
+        if (s == null) {
+            sendJson(ex, 404, error("Save not found"));
+            return;
+        }
+        Files.deleteIfExists(s.file());
+        sendJson(ex, 200, "{\"status\":\"deleted\"}");
+    }
+
+    // ── Upload ──
+
+    /**
+     * Spools the multipart body to disk as-is and records where the file part starts and ends, so large uploads
+     * are written once. The client sends a {@code WorldName} field followed by the {@code SaveFile} part.
+     */
+    private void upload(HttpExchange ex) throws IOException {
+        String contentType = ex.getRequestHeaders().getFirst("Content-Type");
+        int b = contentType == null ? -1 : contentType.indexOf("boundary=");
+        if (b < 0) {
+            sendJson(ex, 400, error("Expected multipart/form-data"));
+            return;
+        }
+        String boundary = contentType.substring(b + 9).replace("\"", "").trim();
+        Path file = storageDir.resolve(UUID.randomUUID() + ".part");
+        long total;
+        try (InputStream in = throttle(ex.getRequestBody());
+                OutputStream out = Files.newOutputStream(file)) {
+            total = in.transferTo(out);
+        }
+
+        byte[] head;
+        try (InputStream in = Files.newInputStream(file)) {
+            head = in.readNBytes((int) Math.min(total, 8192));
+        }
+        String headText = new String(head, StandardCharsets.ISO_8859_1);
+        String worldName = fieldValue(headText, boundary, "WorldName");
+        int filePart = headText.indexOf("name=\"SaveFile\"");
+        int dataStart = filePart < 0 ? -1 : headText.indexOf("\r\n\r\n", filePart);
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        if (worldName == null || dataStart < 0 || total < dataStart + 4 + closing.length) {
+            Files.deleteIfExists(file);
+            sendJson(ex, 400, error("Malformed upload"));
+            return;
+        }
+        long offset = dataStart + 4;
+        long size = total - offset - closing.length;
+
+        for (StoredSave existing : saves.values()) {
+            if (existing.worldName().equalsIgnoreCase(worldName) && saves.remove(existing.id()) != null)
+                Files.deleteIfExists(existing.file());
+        }
+        String id = UUID.randomUUID().toString();
+        saves.put(id, new StoredSave(id, worldName, file, offset, size, Instant.now()));
+        sendJson(ex, 200, "{\"status\":\"success\",\"id\":\"" + id + "\"}");
+    }
+
+    private static String fieldValue(String head, String boundary, String name) {
+        int field = head.indexOf("name=\"" + name + "\"");
+        if (field < 0) return null;
+        int start = head.indexOf("\r\n\r\n", field);
+        int end = start < 0 ? -1 : head.indexOf("\r\n--" + boundary, start + 4);
+        if (end < 0) return null;
+        byte[] raw = head.substring(start + 4, end).getBytes(StandardCharsets.ISO_8859_1);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    // ── Download ──
+
+    private void download(HttpExchange ex, String id) throws IOException {
+        StoredSave s = saves.get(id);
+        if (s == null) {
+            sendJson(ex, 404, error("Save not found"));
+            return;
+        }
+        long start = 0L, end = s.size() - 1;
+        int status = 200;
+        String range = ex.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=") && !range.contains(",")) {
+            String[] parts = range.substring(6).split("-", -1);
+            try {
+                if (parts[0].isEmpty()) {
+                    start = Math.max(0L, s.size() - Long.parseLong(parts[1]));
+                } else {
+                    start = Long.parseLong(parts[0]);
+                    if (!parts[1].isEmpty()) end = Math.min(end, Long.parseLong(parts[1]));
+                }
+            } catch (NumberFormatException e) {
+                start = 0L;
+            }
+            if (start >= s.size() || start > end) {
+                ex.getResponseHeaders().add("Content-Range", "bytes */" + s.size());
+                ex.sendResponseHeaders(416, -1);
+                return;
+            }
+            status = 206;
+            ex.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + s.size());
+        }
+        long length = end - start + 1;
+        ex.getResponseHeaders().add("Content-Type", "application/zip");
+        ex.getResponseHeaders().add("Accept-Ranges", "bytes");
+        ex.getResponseHeaders().add("Content-Disposition", "attachment; filename=\"" + s.worldName() + ".zip\"");
+        ex.sendResponseHeaders(status, length);
+
+        long cutAt = chance(truncateRate) ? length / 2 : Long.MAX_VALUE;
+        try (FileChannel ch = FileChannel.open(s.file(), StandardOpenOption.READ);
+                InputStream in = java.nio.channels.Channels.newInputStream(ch.position(s.dataOffset() + start));
+                OutputStream out = throttle(ex.getResponseBody())) {
+            byte[] buf = new byte[COPY_BUFFER_SIZE];
+            long sent = 0L;
+            while (sent < length) {
+                int n = in.read(buf, 0, (int) Math.min(buf.length, length - sent));
+                if (n < 0) break;
+                if (sent + n > cutAt) throw new IOException("Injected truncation");
+                out.write(buf, 0, n);
+                sent += n;
+            }
+        }
+    }
+
+    // ── Helpers ──
+
+    private synchronized boolean chance(double p) {
+        return p > 0 && random.nextDouble() < p;
+    }
+
+    /** Sends {@code body} with a content-hash {@code ETag}, or 304 when the request's If-None-Match matches it. */
+    private static void sendCacheable(HttpExchange ex, String body) throws IOException {
+        String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+        ex.getResponseHeaders().add("ETag", etag);
+        if (etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+            ex.sendResponseHeaders(304, -1);
+            ex.close();
+            return;
+        }
+        sendJson(ex, 200, body);
+    }
+
+    private static void sendJson(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String error(String message) {
+        JsonObject o = new JsonObject();
+        o.addProperty("error", message);
+        return o.toString();
+    }
+
+    private InputStream throttle(InputStream in) {
+        long bps = bandwidthBps;
+        if (bps <= 0) return in;
+        Pacer pacer = new Pacer(bps);
+        return new FilterInputStream(in) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, Math.min(len, COPY_BUFFER_SIZE));
+                if (n > 0) pacer.pace(n);
+                return n;
+            }
+        };
+    }
+
+    private OutputStream throttle(OutputStream out) {
+        long bps = bandwidthBps;
+        if (bps <= 0) return out;
+        Pacer pacer = new Pacer(bps);
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                pacer.pace(len);
+                out.write(b, off, len);
+            }
+        };
+    }
+
+    /** Sleeps so that the bytes passed through it never get ahead of the configured rate. */
+    private static final class Pacer {
+        private final long bps;
+        private final long startNanos = System.nanoTime();
+        private long bytes;
+
+        Pacer(long bps) {
+            this.bps = bps;
+        }
+
+        void pace(int n) throws IOException {
+            bytes += n;
+            long dueNanos = startNanos + bytes * 1_000_000_000L / bps;
+            long waitMs = (dueNanos - System.nanoTime()) / 1_000_000L;
+            if (waitMs <= 0) return;
+            try {
+                Thread.sleep(waitMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new java.io.InterruptedIOException();
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.choculaterie.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Generates a world folder that looks like a real save to the transfer and archive code: a {@code level.dat},
+ * per-player {@code playerdata}, {@code stats} and {@code advancements} files, and Anvil region files. Region
+ * chunks are incompressible payloads padded to 4 KiB sectors, as real chunks are already zlib-compressed; the
+ * stats and advancement files are JSON and compress well. Output is deterministic for a given seed and size.
+ */
+public final class SyntheticWorld {
+    private static final int SECTOR = 4096;
+    private static final int CHUNKS_PER_REGION = 1024;
+    private static final long MAX_REGION_BYTES = 8L * 1024 * 1024;
+    private static final String[] STAT_NAMES = { "walk_one_cm", "jump", "play_time", "mined", "crafted", "used",
+            "picked_up", "dropped", "killed", "sprint_one_cm", "time_since_rest", "leave_game" };
+
+    private SyntheticWorld() {
+    }
+
+    /** Writes a world of roughly {@code targetBytes} into {@code dir} and returns the bytes actually written. */
+    public static long generate(Path dir, long targetBytes, long seed) throws IOException {
+        return generate(dir, targetBytes, seed, 4);
+    }
+
+    /** As {@link #generate(Path, long, long)}, with {@code playerCount} sets of small per-player files. */
+    public static long generate(Path dir, long targetBytes, long seed, int playerCount) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        Files.createDirectories(dir);
+        long written = 0L;
+        written += writeRandom(dir.resolve("level.dat"), 2048, random);
+        Path players = Files.createDirectories(dir.resolve("playerdata"));
+        Path stats = Files.createDirectories(dir.resolve("stats"));
+        Path advancements = Files.createDirectories(dir.resolve("advancements"));
+        for (int i = 0; i < playerCount; i++) {
+            String uuid = new UUID(seed, i).toString();
+            written += writeRandom(players.resolve(uuid + ".dat"), 1024 + random.nextInt(4096), random);
+            written += writeJson(stats.resolve(uuid + ".json"), "minecraft:", 40 + random.nextInt(200), random);
+            written += writeJson(advancements.resolve(uuid + ".json"), "minecraft:story/", 5 + random.nextInt(60),
+                    random);
+        }
+
+        Path region = Files.createDirectories(dir.resolve("region"));
+        for (int n = 0; written < targetBytes; n++) {
+            long budget = Math.min(MAX_REGION_BYTES, targetBytes - written);
+            int x = (n % 32) - 16, z = (n / 32) - 16;
+            written += writeRegion(region.resolve("r." + x + "." + z + ".mca"), budget, random);
+        }
+        return written;
+    }
+
+    private static long writeRegion(Path file, long budget, SplittableRandom random) throws IOException {
+        long maxSectors = Math.max(3L, budget / SECTOR);
+        ByteBuffer header = ByteBuffer.allocate(2 * SECTOR);
+        byte[] sector = new byte[SECTOR];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            // Lay chunks out first so the header can reference them, then stream the bodies.
+            int[] lengths = new int[CHUNKS_PER_REGION];
+            long nextSector = 2;
+            for (int i = 0; i < CHUNKS_PER_REGION && nextSector < maxSectors; i++) {
+                int sectors = (int) Math.min(1 + random.nextInt(6), maxSectors - nextSector);
+                lengths[i] = sectors;
+                header.putInt(i * 4, (int) (nextSector << 8) | sectors);
+                header.putInt(SECTOR + i * 4, (int) (System.currentTimeMillis() / 1000));
+                nextSector += sectors;
+            }
+            out.write(header.array());
+            for (int len : lengths) {
+                for (int s = 0; s < len; s++) {
+                    // The first sector of each chunk carries the length prefix; the last one is partly padding.
+                    int payload = s == len - 1 ? 1 + random.nextInt(SECTOR) : SECTOR;
+                    fill(sector, payload, random);
+                    Arrays.fill(sector, payload, SECTOR, (byte) 0);
+                    if (s == 0) {
+                        ByteBuffer.wrap(sector).putInt(len * SECTOR - 4).put((byte) 2);
+                    }
+                    out.write(sector);
+                }
+            }
+            return 2L * SECTOR + (nextSector - 2) * SECTOR;
+        }
+    }
+
+    private static long writeRandom(Path file, int size, SplittableRandom random) throws IOException {
+        byte[] data = new byte[size];
+        fill(data, size, random);
+        Files.write(file, data);
+        return size;
+    }
+
+    private static long writeJson(Path file, String prefix, int entries, SplittableRandom random) throws IOException {
+        StringBuilder sb = new StringBuilder("{\"DataVersion\":4189,\"stats\":{");
+        for (int i = 0; i < entries; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('"').append(prefix).append(STAT_NAMES[random.nextInt(STAT_NAMES.length)]).append('_').append(i)
+                    .append("\":").append(random.nextInt(100_000));
+        }
+        byte[] data = sb.append("}}").toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(file, data);
+        return data.length;
+    }
+
+    private static void fill(byte[] buf, int len, SplittableRandom random) {
+        int i = 0;
+        for (; i + 8 <= len; i += 8) {
+            long v = random.nextLong();
+            for (int b = 0; b < 8; b++) buf[i + b] = (byte) (v >>> (b * 8));
+        }
+        for (; i < len; i++) buf[i] = (byte) random.nextInt();
+    }
+}
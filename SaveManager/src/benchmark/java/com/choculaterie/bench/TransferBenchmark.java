@@ -0,0 +1,148 @@
+package com.choculaterie.bench;
+
+import com.choculaterie.network.NetworkManager;
+import com.choculaterie.util.CompressionPolicy;
+import com.choculaterie.util.WorldArchiver;
+import com.choculaterie.util.WorldExtractor;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * End-to-end transfer benchmark against {@link MockApiServer}. For each world size it measures the pipelined
+ * upload, the ranged download to a file and the streamed download-and-extract, and prints MB/s together with
+ * p50/p99 time to complete. Run with {@code ./gradlew benchmark -PbenchArgs="--sizes=100M,1G --iterations=5"}.
+ *
+ * <p>Options: {@code --sizes} (default {@code 100M,500M,1G}; 5G works but needs about 15 GB of scratch space),
+ * {@code --iterations}, {@code --latency} (ms per request), {@code --bandwidth} (server-side cap, e.g.
+ * {@code 50M} per second), {@code --failure} (probability of a 503), {@code --connections} (ranged download
+ * connections) and {@code --work} (scratch directory).
+ */
+public final class TransferBenchmark {
+    private static final double MB = 1024.0 * 1024.0;
+
+    private TransferBenchmark() {
+    }
+
+    private interface Scenario {
+        void run(Path world, Path scratch) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+        List<Long> sizes = new ArrayList<>();
+        for (String s : opts.getOrDefault("sizes", "100M,500M,1G").split(",")) sizes.add(parseSize(s.trim()));
+        int iterations = Integer.parseInt(opts.getOrDefault("iterations", "3"));
+        Path work = Path.of(opts.getOrDefault("work", System.getProperty("java.io.tmpdir")))
+                .resolve("savemanager-bench");
+        BenchFiles.deleteTree(work);
+        Files.createDirectories(work);
+
+        try (MockApiServer server = new MockApiServer(work.resolve("server"))) {
+            server.setLatencyMs(Long.parseLong(opts.getOrDefault("latency", "0")));
+            server.setBandwidthBps(parseSize(opts.getOrDefault("bandwidth", "0")));
+            server.setFailureRate(Double.parseDouble(opts.getOrDefault("failure", "0")));
+
+            NetworkManager network = new NetworkManager(server.baseUrl(), server.baseUrl());
+            network.setApiKey("benchmark");
+            network.setDownloadConnections(Integer.parseInt(opts.getOrDefault("connections", "4")));
+            CompressionPolicy policy = new CompressionPolicy(CompressionPolicy.FAST);
+
+            System.out.printf(Locale.ROOT, "%-10s %-18s %10s %10s %10s %6s%n",
+                    "size", "scenario", "p50 (s)", "p99 (s)", "MB/s", "fails");
+            for (long size : sizes) {
+                Path world = work.resolve("world-" + size);
+                long worldBytes = SyntheticWorld.generate(world, size, size);
+                String name = "bench-" + size;
+
+                Scenario upload = (w, scratch) -> network.uploadWorldSaveStreaming(name,
+                        out -> WorldArchiver.writeZip(w, out, null, policy), null).join();
+                Scenario download = (w, scratch) -> network.downloadWorldSave(saveId(network, name), scratch, null)
+                        .join();
+                Scenario extract = (w, scratch) -> network.downloadWorldSaveStreaming(saveId(network, name),
+                        in -> WorldExtractor.extractStream(in, scratch, null), null).join();
+
+                measure(size, "upload (pipelined)", upload, world, work, iterations, worldBytes);
+                measure(size, "download (ranged)", download, world, work, iterations, worldBytes);
+                measure(size, "download+extract", extract, world, work, iterations, worldBytes);
+                BenchFiles.deleteTree(world);
+            }
+        } finally {
+            BenchFiles.deleteTree(work);
+        }
+    }
+
+    private static void measure(long size, String label, Scenario scenario, Path world, Path work, int iterations,
+            long worldBytes) throws IOException {
+        List<Double> seconds = new ArrayList<>();
+        int failures = 0;
+        for (int i = 0; i < iterations; i++) {
+            Path scratch = Files.createDirectories(work.resolve("scratch"));
+            long start = System.nanoTime();
+            try {
+                scenario.run(world, scratch);
+                seconds.add((System.nanoTime() - start) / 1e9);
+            } catch (Exception e) {
+                failures++;
+                System.err.println(label + " failed: " + e.getMessage());
+            } finally {
+                BenchFiles.deleteTree(scratch);
+            }
+        }
+        seconds.sort(null);
+        double p50 = percentile(seconds, 0.50), p99 = percentile(seconds, 0.99);
+        System.out.printf(Locale.ROOT, "%-10s %-18s %10.2f %10.2f %10.1f %6d%n",
+                formatSize(size), label, p50, p99, seconds.isEmpty() ? 0.0 : worldBytes / MB / p50, failures);
+    }
+
+    private static String saveId(NetworkManager network, String name) {
+        JsonObject list = network.listWorldSaves().join();
+        JsonArray saves = list.getAsJsonArray("saves");
+        for (int i = 0; i < saves.size(); i++) {
+            JsonObject s = saves.get(i).getAsJsonObject();
+            if (name.equals(s.get("worldName").getAsString())) return s.get("id").getAsString();
+        }
+        throw new IllegalStateException("Save '" + name + "' was not uploaded");
+    }
+
+    /** Nearest-rank percentile of an already sorted list. */
+    private static double percentile(List<Double> sorted, double p) {
+        if (sorted.isEmpty()) return Double.NaN;
+        int rank = (int) Math.ceil(p * sorted.size());
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, rank - 1)));
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) throw new IllegalArgumentException("Unexpected argument: " + arg);
+            int eq = arg.indexOf('=');
+            if (eq < 0) opts.put(arg.substring(2), "true");
+            else opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return opts;
+    }
+
+    private static long parseSize(String s) {
+        String u = s.toUpperCase(Locale.ROOT);
+        long mult = 1L;
+        if (u.endsWith("K")) mult = 1024L;
+        else if (u.endsWith("M")) mult = 1024L * 1024;
+        else if (u.endsWith("G")) mult = 1024L * 1024 * 1024;
+        if (mult > 1) u = u.substring(0, u.length() - 1);
+        return (long) (Double.parseDouble(u) * mult);
+    }
+
+    private static String formatSize(long bytes) {
+        if (bytes >= 1024L * 1024 * 1024) return String.format(Locale.ROOT, "%.1fG", bytes / (MB * 1024));
+        return String.format(Locale.ROOT, "%.0fM", bytes / MB);
+    }
+}
@@ -0,0 +1,86 @@
+package com.choculaterie.util;
+
+import com.choculaterie.bench.BenchFiles;
+import com.choculaterie.bench.SyntheticWorld;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archiving a world and extracting it again, per compression level and writer/extractor thread count. Each
+ * invocation is a full pass over a synthetic world, so single-shot timings are reported.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArchiveBenchmark {
+    @Param({ "256" })
+    public int worldMb;
+
+    @Param({ "0", "1", "6" })
+    public int level;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    private Path root;
+    private Path world;
+    private Path zip;
+    private Path output;
+    private CompressionPolicy policy;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("savemanager-jmh-archive");
+        world = root.resolve("world");
+        SyntheticWorld.generate(world, worldMb * 1024L * 1024L, 1L, 200);
+        policy = new CompressionPolicy(level);
+        zip = root.resolve("world.zip");
+        try (OutputStream out = Files.newOutputStream(zip)) {
+            WorldArchiver.writeZip(world, out, null, policy, threads);
+        }
+        output = root.resolve("out");
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearOutput() throws IOException {
+        BenchFiles.deleteTree(output);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchFiles.deleteTree(root);
+    }
+
+    @Benchmark
+    public long zipWorld() throws IOException {
+        try (OutputStream out = Files.newOutputStream(output)) {
+            return WorldArchiver.writeZip(world, out, null, policy, threads);
+        }
+    }
+
+    @Benchmark
+    public Path extract() throws IOException {
+        WorldExtractor.extract(zip, output, threads);
+        return output;
+    }
+}
@@ -0,0 +1,42 @@
+package com.choculaterie.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Round trip of the stored API key through {@link CryptoUtils}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CryptoBenchmark {
+    private static final String API_KEY = "sm_4f1c2b9e0a7d4c3e8b6f5a2d1c0e9b8a7f6e5d4c3b2a1f0e";
+
+    private String encrypted;
+
+    @Setup
+    public void setUp() throws Exception {
+        encrypted = CryptoUtils.encrypt(API_KEY);
+    }
+
+    @Benchmark
+    public String encrypt() throws Exception {
+        return CryptoUtils.encrypt(API_KEY);
+    }
+
+    @Benchmark
+    public String decrypt() throws Exception {
+        return CryptoUtils.decrypt(encrypted);
+    }
+}
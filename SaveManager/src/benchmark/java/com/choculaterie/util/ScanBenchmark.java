@@ -0,0 +1,90 @@
+package com.choculaterie.util;
+
+import com.choculaterie.bench.BenchFiles;
+import com.choculaterie.bench.SyntheticWorld;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Metadata scans run when the world list opens: the size walk behind {@code LocalSave.fromDir} (cold and with
+ * the previous index), the watch manifest scan, and the single-root check done before extraction. The world
+ * stays in the page cache, so these measure CPU and syscall cost rather than disk seeks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScanBenchmark {
+    @Param({ "200", "2000" })
+    public int players;
+
+    @Param({ "64" })
+    public int worldMb;
+
+    private Path root;
+    private Path world;
+    private Map<String, DirSizeIndex.DirEntry> previous;
+    private List<String> entryNames;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("savemanager-jmh-scan");
+        world = root.resolve("world");
+        SyntheticWorld.generate(world, worldMb * 1024L * 1024L, 2L, players);
+        previous = new HashMap<>();
+        DirSizeIndex.walk(world, "", Map.of(), previous);
+        entryNames = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(world)) {
+            files.filter(Files::isRegularFile)
+                    .forEach(f -> entryNames.add("world/" + WorldArchiver.entryName(world.relativize(f))));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchFiles.deleteTree(root);
+    }
+
+    @Benchmark
+    public long dirSizeCold() throws IOException {
+        return DirSizeIndex.walk(world, "", Map.of(), new HashMap<>());
+    }
+
+    @Benchmark
+    public long dirSizeIndexed() throws IOException {
+        return DirSizeIndex.walk(world, "", previous, new HashMap<>());
+    }
+
+    @Benchmark
+    public long watchMaxModified() {
+        return WatchManager.maxModified(WatchManager.scan(world));
+    }
+
+    @Benchmark
+    public String singleRoot() {
+        return WorldExtractor.singleRoot(entryNames);
+    }
+}
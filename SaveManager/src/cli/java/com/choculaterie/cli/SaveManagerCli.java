@@ -0,0 +1,313 @@
+package com.choculaterie.cli;
+
+import com.choculaterie.network.BandwidthLimiter;
+import com.choculaterie.network.CloudSave;
+import com.choculaterie.network.CloudSaveReader;
+import com.choculaterie.network.NetworkManager;
+import com.choculaterie.network.StagedRestore;
+import com.choculaterie.network.TransferJob;
+import com.choculaterie.network.TransferScheduler;
+import com.choculaterie.network.WorldTransfers;
+import com.choculaterie.util.ConfigManager;
+import com.choculaterie.util.DirSizeIndex;
+import com.choculaterie.util.FormatUtils;
+import com.choculaterie.util.LocalBackupStore;
+import com.choculaterie.util.WatchManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs the transfer engine against a game directory without starting the game, e.g. for nightly backups of
+ * several instances on a build machine. State (API key, watch list, upload state, local backups) is read from and
+ * written to the instance exactly as the mod would. Run one process per game directory; they can run in parallel.
+ *
+ * <pre>
+ * java -jar save-manager-cli.jar --game-dir=&lt;dir&gt; &lt;command&gt; [worlds...] [options]
+ *
+ *   list                      cloud saves of the linked account
+ *   upload &lt;world&gt;...         upload the named worlds
+ *   sync [--all]              upload watched worlds that changed (every world with --all)
+ *   download &lt;save&gt;...        download cloud saves, by name or id, into saves/ (--overwrite to replace)
+ *   backup [--all]            store local versions of changed watched worlds (or every world), then prune
+ *   versions &lt;world&gt;          local versions of a world
+ *   restore &lt;world&gt;           restore the newest local version, or the one given by --at=&lt;createdAt&gt;
+ * </pre>
+ *
+ * Options: {@code --api-key} (defaults to {@code SAVEMANAGER_API_KEY}, then the key linked in the instance) and
+ * {@code --server} (API base URL). Worlds open in a running game are skipped. Exits with 1 if anything failed or
+ * was skipped.
+ */
+public final class SaveManagerCli {
+    private static final int EXIT_FAILED = 1;
+    private static final int EXIT_USAGE = 2;
+
+    private final Path savesDir;
+    private final Map<String, String> opts;
+    private NetworkManager network;
+    private boolean skipped = false;
+
+    private SaveManagerCli(Path savesDir, Map<String, String> opts) {
+        this.savesDir = savesDir;
+        this.opts = opts;
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> opts = new LinkedHashMap<>();
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) opts.put(arg.substring(2), "true");
+            else opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        String gameDir = opts.get("game-dir");
+        if (gameDir == null || positional.isEmpty()) {
+            System.err.println("Usage: save-manager-cli --game-dir=<dir> <list|upload|sync|download|backup|versions|restore> [worlds...]");
+            System.exit(EXIT_USAGE);
+        }
+        ConfigManager.setGameDir(new File(gameDir).getAbsoluteFile(), true);
+
+        SaveManagerCli cli = new SaveManagerCli(ConfigManager.getSavesDir(), opts);
+        List<String> names = positional.subList(1, positional.size());
+        int exit;
+        try {
+            exit = switch (positional.get(0)) {
+                case "list" -> cli.list();
+                case "upload" -> cli.upload(cli.targets(names));
+                case "sync" -> cli.upload(cli.targets(cli.changedOrAll()));
+                case "download" -> cli.download(names);
+                case "backup" -> cli.backup(cli.targets(cli.changedOrAll()));
+                case "versions" -> cli.versions(names);
+                case "restore" -> cli.restore(names);
+                default -> {
+                    System.err.println("Unknown command: " + positional.get(0));
+                    yield EXIT_USAGE;
+                }
+            };
+        } catch (Exception e) {
+            System.err.println("Error: " + FormatUtils.extractErrorMessage(e));
+            exit = EXIT_FAILED;
+        }
+        if (cli.skipped && exit == 0)
+            exit = EXIT_FAILED;
+        WatchManager.flush();
+        DirSizeIndex.flush(cli.localWorlds().stream().map(cli.savesDir::resolve).toList());
+        System.exit(exit);
+    }
+
+    // ── Commands ──
+
+    private int list() throws Exception {
+        List<CloudSave> saves = new ArrayList<>();
+        network().listWorldSaves(null, null, in -> saves.addAll(CloudSaveReader.read(in))).get();
+        for (CloudSave s : saves) {
+            System.out.printf(Locale.ROOT, "%-36s %10s  %-16s %s%n", s.id, FormatUtils.formatBytes(s.fileSizeBytes),
+                    FormatUtils.shortDate(s.updatedAt.isEmpty() ? s.createdAt : s.updatedAt), s.worldName);
+        }
+        return 0;
+    }
+
+    private int upload(List<WorldTransfers.SyncTarget> targets) throws Exception {
+        if (targets.isEmpty()) {
+            System.out.println("Nothing to upload");
+            return 0;
+        }
+        WorldTransfers transfers = new WorldTransfers(network());
+        TransferJob job = TransferScheduler.submit(TransferJob.Kind.UPLOAD, "Sync", subjects(targets),
+                TransferScheduler.PRIORITY_INTERACTIVE, j -> transfers.syncAll(j, targets));
+        WorldTransfers.SyncResult result = (WorldTransfers.SyncResult) job.result().get();
+        result.uploaded().forEach(name -> System.out.println("Uploaded " + name));
+        result.failed().forEach((name, err) ->
+                System.err.println("Failed " + name + ": " + FormatUtils.extractErrorMessage(err)));
+        return result.failed().isEmpty() ? 0 : EXIT_FAILED;
+    }
+
+    private int download(List<String> wanted) throws Exception {
+        List<CloudSave> saves = new ArrayList<>();
+        network().listWorldSaves(null, null, in -> saves.addAll(CloudSaveReader.read(in))).get();
+        WorldTransfers transfers = new WorldTransfers(network);
+        boolean overwrite = opts.containsKey("overwrite");
+        Files.createDirectories(savesDir);
+        StagedRestore.recover(savesDir);
+        Map<String, CompletableFuture<Object>> jobs = new LinkedHashMap<>();
+        int exit = 0;
+        for (String w : wanted) {
+            CloudSave s = saves.stream().filter(c -> c.id.equals(w)).findFirst()
+                    .orElseGet(() -> saves.stream().filter(c -> c.worldName.equals(w)).findFirst().orElse(null));
+            if (s == null) {
+                System.err.println("No cloud save named " + w);
+                exit = EXIT_FAILED;
+                continue;
+            }
+            String folder = FormatUtils.sanitizeFolderName(s.worldName);
+            Path target = savesDir.resolve(folder.isEmpty() ? "world" : folder);
+            if (Files.exists(target) && (!overwrite || isOpenInGame(target))) {
+                System.err.println("Skipped " + s.worldName + ": " + target.getFileName()
+                        + (overwrite ? " is open in a running game" : " exists (use --overwrite)"));
+                exit = EXIT_FAILED;
+                continue;
+            }
+            jobs.put(s.worldName, TransferScheduler.submit(TransferJob.Kind.DOWNLOAD, target.getFileName().toString(),
+                    TransferScheduler.PRIORITY_INTERACTIVE, j -> transfers.download(j, s.id, target, s.fileSizeBytes))
+                    .result());
+        }
+        return Math.max(exit, report(jobs, "Downloaded"));
+    }
+
+    private int backup(List<WorldTransfers.SyncTarget> targets) throws Exception {
+        WorldTransfers transfers = new WorldTransfers(new NetworkManager());
+        TransferJob job = TransferScheduler.submit(TransferJob.Kind.LOCAL, "Backup", subjects(targets),
+                TransferScheduler.PRIORITY_INTERACTIVE, j -> transfers.backupLocal(j, targets));
+        @SuppressWarnings("unchecked")
+        List<String> stored = (List<String>) job.result().get();
+        stored.forEach(name -> System.out.println("Backed up " + name));
+        return stored.size() == targets.size() ? 0 : EXIT_FAILED;
+    }
+
+    private int versions(List<String> worlds) {
+        for (String world : worlds) {
+            for (LocalBackupStore.Version v : LocalBackupStore.versions(world)) {
+                System.out.printf(Locale.ROOT, "%-24s %d  %-16s %6d files  %s%n", world, v.createdAt(),
+                        FormatUtils.shortDateMillis(v.createdAt()), v.files(), FormatUtils.formatBytes(v.sizeBytes()));
+            }
+        }
+        return 0;
+    }
+
+    private int restore(List<String> worlds) throws Exception {
+        WorldTransfers transfers = new WorldTransfers(new NetworkManager());
+        Files.createDirectories(savesDir);
+        StagedRestore.recover(savesDir);
+        Map<String, CompletableFuture<Object>> jobs = new LinkedHashMap<>();
+        int exit = 0;
+        for (String world : worlds) {
+            String at = opts.get("at");
+            LocalBackupStore.Version version = LocalBackupStore.versions(world).stream()
+                    .filter(v -> at == null || String.valueOf(v.createdAt()).equals(at))
+                    .findFirst().orElse(null);
+            Path target = savesDir.resolve(world);
+            if (version == null || isOpenInGame(target)) {
+                System.err.println("Skipped " + world + (version == null ? ": no such version" : ": open in a running game"));
+                exit = EXIT_FAILED;
+                continue;
+            }
+            jobs.put(world, TransferScheduler.submit(TransferJob.Kind.LOCAL, world,
+                    TransferScheduler.PRIORITY_INTERACTIVE, j -> transfers.restoreLocal(j, version, target)).result());
+        }
+        return Math.max(exit, report(jobs, "Restored"));
+    }
+
+    // ── Helpers ──
+
+    private NetworkManager network() {
+        if (network != null)
+            return network;
+        String key = opts.getOrDefault("api-key", System.getenv("SAVEMANAGER_API_KEY"));
+        if (key == null || key.isBlank())
+            key = ConfigManager.loadApiKey();
+        if (key == null || key.isBlank())
+            throw new IllegalStateException("No API key: link the account in game, or pass --api-key");
+        String server = opts.get("server");
+        network = server != null ? new NetworkManager(server, server) : new NetworkManager();
+        network.setApiKey(key);
+        network.setDownloadConnections(ConfigManager.getInt(ConfigManager.DOWNLOAD_CONNECTIONS, 4));
+        BandwidthLimiter.applySettings();
+        return network;
+    }
+
+    private List<String> changedOrAll() {
+        if (opts.containsKey("all"))
+            return localWorlds();
+        WatchManager.awaitReconciled();
+        return WatchManager.getChangedWorlds(savesDir);
+    }
+
+    private List<String> localWorlds() {
+        List<String> out = new ArrayList<>();
+        if (!Files.isDirectory(savesDir))
+            return out;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(savesDir, Files::isDirectory)) {
+            for (Path p : ds) {
+                String name = p.getFileName().toString();
+                if (!name.equals(StagedRestore.WORK_DIR)) out.add(name);
+            }
+        } catch (IOException ignored) {
+        }
+        out.sort(String::compareToIgnoreCase);
+        return out;
+    }
+
+    /** The named worlds as sync targets, leaving out missing worlds and worlds a running game has open. */
+    private List<WorldTransfers.SyncTarget> targets(List<String> names) throws IOException {
+        List<WorldTransfers.SyncTarget> targets = new ArrayList<>();
+        for (String name : names) {
+            Path dir = savesDir.resolve(name);
+            if (!Files.isDirectory(dir)) {
+                System.err.println("Skipped " + name + ": no such world");
+                skipped = true;
+            } else if (isOpenInGame(dir)) {
+                System.err.println("Skipped " + name + ": open in a running game");
+                skipped = true;
+            } else {
+                targets.add(new WorldTransfers.SyncTarget(name, dir, DirSizeIndex.sizeOf(dir)));
+            }
+        }
+        return targets;
+    }
+
+    private static Set<String> subjects(List<WorldTransfers.SyncTarget> targets) {
+        Set<String> out = new LinkedHashSet<>();
+        for (WorldTransfers.SyncTarget t : targets) out.add(t.worldName());
+        return out;
+    }
+
+    /** A running game holds an exclusive lock on the world's {@code session.lock}. */
+    private static boolean isOpenInGame(Path worldDir) {
+        Path lock = worldDir.resolve("session.lock");
+        if (!Files.exists(lock))
+            return false;
+        try (FileChannel ch = FileChannel.open(lock, StandardOpenOption.WRITE)) {
+            FileLock held = ch.tryLock();
+            if (held == null) return true;
+            held.release();
+            return false;
+        } catch (OverlappingFileLockException e) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static int report(Map<String, CompletableFuture<Object>> jobs, String verb) {
+        int exit = 0;
+        for (Map.Entry<String, CompletableFuture<Object>> e : jobs.entrySet()) {
+            try {
+                e.getValue().get();
+                System.out.println(verb + " " + e.getKey());
+            } catch (Exception err) {
+                System.err.println("Failed " + e.getKey() + ": " + FormatUtils.extractErrorMessage(err));
+                exit = EXIT_FAILED;
+            }
+        }
+        return exit;
+    }
+}
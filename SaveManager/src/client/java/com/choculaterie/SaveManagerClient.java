@@ -3,15 +3,22 @@ package com.choculaterie;
 import com.choculaterie.gui.SaveManagerScreen;
 import com.choculaterie.mixin.SelectWorldScreenAccessor;
 import com.choculaterie.mixin.WorldEntryAccessor;
+import com.choculaterie.network.BackupScheduler;
+import com.choculaterie.network.WorldTransfers;
+import com.choculaterie.util.ConfigManager;
 import com.choculaterie.util.WatchManager;
+import com.choculaterie.util.WorldSnapshot;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.screen.v1.ScreenEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.screens.worldselection.SelectWorldScreen;
 import net.minecraft.client.gui.screens.worldselection.WorldSelectionList;
 import net.minecraft.network.chat.Component;
 import org.lwjgl.glfw.GLFW;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class SaveManagerClient implements ClientModInitializer {
@@ -20,6 +27,11 @@ public class SaveManagerClient implements ClientModInitializer {
     @Override
     public void onInitializeClient() {
         SaveManagerMod.LOGGER.info("Initializing Save Manager Client");
+        ConfigManager.setGameDir(FabricLoader.getInstance().getGameDir().toFile(), false);
+        WorldTransfers.setSnapshotHook(new WorldSnapshot());
+
+        BackupScheduler.start();
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> BackupScheduler.onWorldClosed());
 
         ScreenEvents.AFTER_INIT.register((client, screen, scaledWidth, scaledHeight) -> {
             if (!(screen instanceof SelectWorldScreen))
@@ -71,15 +83,23 @@ public class SaveManagerClient implements ClientModInitializer {
                         hoveredTooltipWorld = folderName;
 
                     if (clicked && inBounds) {
-                        Minecraft.getInstance().setScreen(new SaveManagerScreen(s, folderName));
+                        long window = client.getWindow().handle();
+                        boolean shift = GLFW.glfwGetKey(window, GLFW.GLFW_KEY_LEFT_SHIFT) == GLFW.GLFW_PRESS
+                                || GLFW.glfwGetKey(window, GLFW.GLFW_KEY_RIGHT_SHIFT) == GLFW.GLFW_PRESS;
+                        Minecraft.getInstance().setScreen(shift && changed.size() > 1
+                                ? new SaveManagerScreen(s, changed)
+                                : new SaveManagerScreen(s, folderName));
                         return;
                     }
                 }
 
                 if (hoveredTooltipWorld != null) {
-                    context.setComponentTooltipForNextFrame(tr, List.of(
+                    List<Component> lines = new ArrayList<>(List.of(
                             Component.literal("Marked as favorite"),
-                            Component.literal("Click to upload to the cloud")), mouseX, mouseY);
+                            Component.literal("Click to upload to the cloud")));
+                    if (changed.size() > 1)
+                        lines.add(Component.literal("Shift-click to sync all " + changed.size() + " changed worlds"));
+                    context.setComponentTooltipForNextFrame(tr, lines, mouseX, mouseY);
                 }
             });
         });
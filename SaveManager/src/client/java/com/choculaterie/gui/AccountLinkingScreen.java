@@ -1,6 +1,8 @@
 package com.choculaterie.gui;
 
+import com.choculaterie.network.BandwidthLimiter;
 import com.choculaterie.network.NetworkManager;
+import com.choculaterie.util.CompressionPolicy;
 import com.choculaterie.util.ConfigManager;
 import com.choculaterie.util.ScreenUtils;
 import com.choculaterie.widget.CustomButton;
@@ -59,10 +61,70 @@ public class AccountLinkingScreen extends Screen {
         copyUrlBtn.visible = false;
         addRenderableWidget(copyUrlBtn);
 
+        int compressionW = 140;
+        addRenderableWidget(new CustomButton(cx - compressionW / 2, this.height - 28, compressionW, 20,
+                compressionLabel(ConfigManager.getInt(ConfigManager.COMPRESSION_LEVEL, CompressionPolicy.BALANCED)),
+                this::cycleCompression));
+
+        int bandwidthW = 140, adaptiveW = 90;
+        int bandwidthX = cx - (bandwidthW + 4 + adaptiveW) / 2;
+        addRenderableWidget(new CustomButton(bandwidthX, this.height - 52, bandwidthW, 20,
+                bandwidthLabel(ConfigManager.getInt(ConfigManager.BANDWIDTH_LIMIT, 0)), this::cycleBandwidth));
+        addRenderableWidget(new CustomButton(bandwidthX + bandwidthW + 4, this.height - 52, adaptiveW, 20,
+                adaptiveLabel(ConfigManager.getBoolean(ConfigManager.ADAPTIVE_BANDWIDTH, false)), this::toggleAdaptive));
+
+        int backupW = 140;
+        addRenderableWidget(new CustomButton(cx - backupW / 2, this.height - 76, backupW, 20,
+                cloudBackupLabel(ConfigManager.getBoolean(ConfigManager.CLOUD_BACKUPS, false)),
+                this::toggleCloudBackups));
+
         if (hasKey)
             networkManager.setApiKey(apiKey);
     }
 
+    private void cycleCompression(net.minecraft.client.gui.components.Button b) {
+        int level = CompressionPolicy.nextPreset(
+                ConfigManager.getInt(ConfigManager.COMPRESSION_LEVEL, CompressionPolicy.BALANCED));
+        ConfigManager.setInt(ConfigManager.COMPRESSION_LEVEL, level);
+        b.setMessage(compressionLabel(level));
+    }
+
+    private static Component compressionLabel(int level) {
+        return Component.literal("Compression: " + CompressionPolicy.label(level));
+    }
+
+    private void cycleBandwidth(net.minecraft.client.gui.components.Button b) {
+        int kbps = BandwidthLimiter.nextPreset(ConfigManager.getInt(ConfigManager.BANDWIDTH_LIMIT, 0));
+        ConfigManager.setInt(ConfigManager.BANDWIDTH_LIMIT, kbps);
+        BandwidthLimiter.applySettings();
+        b.setMessage(bandwidthLabel(kbps));
+    }
+
+    private void toggleAdaptive(net.minecraft.client.gui.components.Button b) {
+        boolean adaptive = !ConfigManager.getBoolean(ConfigManager.ADAPTIVE_BANDWIDTH, false);
+        ConfigManager.setBoolean(ConfigManager.ADAPTIVE_BANDWIDTH, adaptive);
+        BandwidthLimiter.applySettings();
+        b.setMessage(adaptiveLabel(adaptive));
+    }
+
+    private static Component bandwidthLabel(int kbps) {
+        return Component.literal("Bandwidth: " + BandwidthLimiter.label(kbps));
+    }
+
+    private static Component adaptiveLabel(boolean adaptive) {
+        return Component.literal("Adaptive: " + (adaptive ? "On" : "Off"));
+    }
+
+    private void toggleCloudBackups(net.minecraft.client.gui.components.Button b) {
+        boolean enabled = !ConfigManager.getBoolean(ConfigManager.CLOUD_BACKUPS, false);
+        ConfigManager.setBoolean(ConfigManager.CLOUD_BACKUPS, enabled);
+        b.setMessage(cloudBackupLabel(enabled));
+    }
+
+    private static Component cloudBackupLabel(boolean enabled) {
+        return Component.literal("Auto cloud backup: " + (enabled ? "On" : "Off"));
+    }
+
     private void handleLinkOrReset(boolean hasKey) {
         if (hasKey) {
             networkManager.setApiKey(null);
@@ -0,0 +1,149 @@
+package com.choculaterie.gui;
+
+import com.choculaterie.network.CloudSave;
+import com.choculaterie.util.ConfigManager;
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Last cloud save list and quota seen for the linked account, kept on disk so the Save Manager screen can
+ * show them immediately while it revalidates in the background. Each value keeps the {@code ETag} and
+ * {@code Last-Modified} it was served with so revalidation can be a conditional request. The cache belongs
+ * to a hash of the API key and is ignored once a different account is linked.
+ */
+final class CloudCache {
+    private static final String CACHE_FILE = "save-manager-cloud-cache.json";
+    private static Snapshot current;
+    private static boolean loaded = false;
+
+    private CloudCache() {
+    }
+
+    static final class Snapshot {
+        String account;
+        List<CloudSave> saves;
+        long savesFetchedAt;
+        String savesEtag, savesLastModified;
+        String quotaFormatted;
+        long quotaFetchedAt;
+        String quotaEtag, quotaLastModified;
+
+        private Snapshot copy() {
+            Snapshot s = new Snapshot();
+            s.account = account;
+            s.saves = saves != null ? new ArrayList<>(saves) : null;
+            s.savesFetchedAt = savesFetchedAt;
+            s.savesEtag = savesEtag;
+            s.savesLastModified = savesLastModified;
+            s.quotaFormatted = quotaFormatted;
+            s.quotaFetchedAt = quotaFetchedAt;
+            s.quotaEtag = quotaEtag;
+            s.quotaLastModified = quotaLastModified;
+            return s;
+        }
+    }
+
+    /** The cached values for {@code apiKey}; fields are {@code null} when nothing was cached yet. */
+    static synchronized Snapshot get(String apiKey) {
+        return forAccount(apiKey).copy();
+    }
+
+    static boolean isStale(long fetchedAt, long maxAgeMs) {
+        return System.currentTimeMillis() - fetchedAt > maxAgeMs;
+    }
+
+    static synchronized void putSaves(String apiKey, List<CloudSave> saves, String etag,
+            String lastModified) {
+        Snapshot s = forAccount(apiKey);
+        s.saves = new ArrayList<>(saves);
+        s.savesFetchedAt = System.currentTimeMillis();
+        s.savesEtag = etag;
+        s.savesLastModified = lastModified;
+        persist();
+    }
+
+    /** Marks the cached list as confirmed by a 304. */
+    static synchronized void touchSaves(String apiKey, String etag, String lastModified) {
+        Snapshot s = forAccount(apiKey);
+        s.savesFetchedAt = System.currentTimeMillis();
+        s.savesEtag = etag;
+        s.savesLastModified = lastModified;
+        persist();
+    }
+
+    static synchronized void putQuota(String apiKey, String quotaFormatted, String etag, String lastModified) {
+        Snapshot s = forAccount(apiKey);
+        s.quotaFormatted = quotaFormatted;
+        s.quotaFetchedAt = System.currentTimeMillis();
+        s.quotaEtag = etag;
+        s.quotaLastModified = lastModified;
+        persist();
+    }
+
+    static synchronized void touchQuota(String apiKey, String etag, String lastModified) {
+        Snapshot s = forAccount(apiKey);
+        s.quotaFetchedAt = System.currentTimeMillis();
+        s.quotaEtag = etag;
+        s.quotaLastModified = lastModified;
+        persist();
+    }
+
+    private static Snapshot forAccount(String apiKey) {
+        ensureLoaded();
+        String account = accountHash(apiKey);
+        if (current == null || !account.equals(current.account)) {
+            current = new Snapshot();
+            current.account = account;
+        }
+        return current;
+    }
+
+    private static void ensureLoaded() {
+        if (loaded)
+            return;
+        loaded = true;
+        try {
+            File f = getFile();
+            if (!f.exists())
+                return;
+            try (FileReader r = new FileReader(f)) {
+                current = new Gson().fromJson(r, Snapshot.class);
+            }
+        } catch (Exception ignored) {
+            current = null;
+        }
+    }
+
+    private static void persist() {
+        try {
+            File f = getFile();
+            f.getParentFile().mkdirs();
+            try (FileWriter w = new FileWriter(f)) {
+                new Gson().toJson(current, w);
+            }
+        } catch (Exception ignored) {
+        }
+    }
+
+    private static String accountHash(String apiKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                    String.valueOf(apiKey).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static File getFile() {
+        return new File(ConfigManager.getConfigDir(), CACHE_FILE);
+    }
+}
@@ -2,8 +2,18 @@ package com.choculaterie.gui;
 
 import com.choculaterie.SaveManagerMod;
 import com.choculaterie.mixin.SelectWorldScreenAccessor;
+import com.choculaterie.network.BandwidthLimiter;
+import com.choculaterie.network.ChunkedUploader;
+import com.choculaterie.network.CloudSave;
+import com.choculaterie.network.CloudSaveReader;
 import com.choculaterie.network.NetworkManager;
+import com.choculaterie.network.StagedRestore;
+import com.choculaterie.network.TransferJob;
+import com.choculaterie.network.TransferMetrics;
+import com.choculaterie.network.TransferScheduler;
+import com.choculaterie.network.WorldTransfers;
 import com.choculaterie.util.ConfigManager;
+import com.choculaterie.util.DirSizeIndex;
 import com.choculaterie.util.ScreenUtils;
 import com.choculaterie.util.WatchManager;
 import com.choculaterie.widget.ConfirmPopup;
@@ -11,7 +21,6 @@ import com.choculaterie.widget.CustomButton;
 import com.choculaterie.widget.LoadingSpinner;
 import com.choculaterie.widget.ScrollBar;
 import com.choculaterie.widget.ToastManager;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import net.minecraft.client.gui.GuiGraphicsExtractor;
 import net.minecraft.client.gui.screens.Screen;
@@ -21,10 +30,13 @@ import net.minecraft.client.gui.screens.worldselection.SelectWorldScreen;
 import net.minecraft.network.chat.Component;
 
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 import static com.choculaterie.util.FormatUtils.*;
@@ -35,13 +47,11 @@ public class SaveManagerScreen extends Screen {
     private static final int PANEL_GAP = 20;
     private static final long RELOAD_THRESHOLD_MS = 15 * 60 * 1000L;
 
-    private static long lastLoadTimeMs = 0L;
-    private static final List<LocalSave> cachedLocalSaves = new ArrayList<>();
-    private static final List<CloudSave> cachedCloudSaves = new ArrayList<>();
-    private static String cachedQuotaFormatted = "Loading";
+    private static boolean showMetrics = false;
 
     private final Screen parent;
     private final NetworkManager networkManager = new NetworkManager();
+    private final WorldTransfers transfers = new WorldTransfers(networkManager);
     private final ToastManager toastManager;
     private final LoadingSpinner spinner;
     private final List<LocalSave> localSaves = new ArrayList<>();
@@ -52,42 +62,15 @@ public class SaveManagerScreen extends Screen {
     private boolean localLoading = true, cloudLoading = true;
     private int localPanelX, localPanelW, cloudPanelX, cloudPanelW, listY, listH;
     private ConfirmPopup confirmPopup = null;
-    private CustomButton uploadBtn, downloadBtn, deleteBtn, refreshBtn;
+    private CustomButton uploadBtn, downloadBtn, deleteBtn, refreshBtn, syncBtn, cancelBtn;
     private String quotaFormatted = "Loading";
     private long quotaBytes = 5L * 1024L * 1024L * 1024L;
     private boolean quotaLoading = false;
-    private static final TransferState ACTIVE = new TransferState();
     private String autoUploadWorld = null;
+    private List<String> autoSyncWorlds = null;
     private boolean closed = false;
     private String starTooltipText = null;
 
-    private static final class TransferState {
-        volatile boolean dlActive, upActive, zipping, unzipping;
-        volatile long bytes, total = -1L, lastBytes, lastTickNanos;
-        volatile double speedBps;
-
-        boolean isActive() { return dlActive || upActive || zipping || unzipping; }
-
-        void reset(boolean download) {
-            if (download) { dlActive = true; unzipping = false; }
-            else { upActive = true; zipping = true; }
-            bytes = 0L; total = -1L; lastBytes = 0L;
-            lastTickNanos = System.nanoTime(); speedBps = 0.0;
-        }
-
-        void updateSpeed() {
-            long now = System.nanoTime();
-            long dtNs = now - lastTickNanos;
-            long dBytes = bytes - lastBytes;
-            if (dtNs > 50_000_000L) {
-                double instBps = dBytes > 0 ? (dBytes * 1_000_000_000.0) / dtNs : 0.0;
-                speedBps = speedBps <= 0 ? instBps : (0.2 * instBps + 0.8 * speedBps);
-                lastTickNanos = now;
-                lastBytes = bytes;
-            }
-        }
-    }
-
     public SaveManagerScreen(Screen parent) {
         super(Component.literal("Save Manager"));
         this.parent = parent;
@@ -100,12 +83,19 @@ public class SaveManagerScreen extends Screen {
         this.autoUploadWorld = autoUploadWorld;
     }
 
+    public SaveManagerScreen(Screen parent, List<String> autoSyncWorlds) {
+        this(parent);
+        this.autoSyncWorlds = List.copyOf(autoSyncWorlds);
+    }
+
     @Override
     protected void init() {
         toastManager.initClient(minecraft);
         int btnSize = 20, margin = 6;
         addBtn(margin, margin, btnSize, btnSize, "\u2190", b -> closeScreen());
         refreshBtn = addBtn(margin + btnSize + 5, margin, btnSize, btnSize, "\uD83D\uDD04", b -> refresh());
+        syncBtn = addBtn(margin + (btnSize + 5) * 2, margin, 36, btnSize, "Sync", b -> onSyncAll());
+        addBtn(this.width - margin - btnSize * 3 - 10, margin, btnSize, btnSize, "\u2261", b -> showMetrics = !showMetrics);
         addBtn(this.width - margin - btnSize * 2 - 5, margin, btnSize, btnSize, "\uD83D\uDCC1", b -> openSavesFolder());
         addBtn(this.width - margin - btnSize, margin, btnSize, btnSize, "\u2699", b -> minecraft.setScreen(new AccountLinkingScreen(this)));
 
@@ -118,6 +108,9 @@ public class SaveManagerScreen extends Screen {
         uploadBtn = addBtn(localPanelX + (localPanelW - btnW) / 2, actionBtnY, btnW, 20, "Upload", b -> onUpload());
         downloadBtn = addBtn(cloudPanelX + (cloudPanelW - btnW * 2 - 10) / 2, actionBtnY, btnW, 20, "Download", b -> onDownload());
         deleteBtn = addBtn(cloudPanelX + (cloudPanelW - btnW * 2 - 10) / 2 + btnW + 10, actionBtnY, btnW, 20, "Delete", b -> onDelete());
+        cancelBtn = addBtn(0, 0, btnSize, btnSize, "", b -> cancelCurrentTransfer());
+        cancelBtn.setRenderAsXIcon(true);
+        cancelBtn.visible = false;
 
         listY = 70; listH = VISIBLE_ROWS * ROW_HEIGHT;
         localScrollBar = new ScrollBar(localPanelX + localPanelW + 4, listY, listH);
@@ -129,18 +122,27 @@ public class SaveManagerScreen extends Screen {
             return;
         }
         networkManager.setApiKey(apiKey);
-        quotaFormatted = cachedQuotaFormatted;
-        quotaBytes = parseQuotaBytes(cachedQuotaFormatted);
+        networkManager.setDownloadConnections(ConfigManager.getInt(ConfigManager.DOWNLOAD_CONNECTIONS, 4));
+        BandwidthLimiter.applySettings();
 
-        boolean shouldReloadCloud = (System.currentTimeMillis() - lastLoadTimeMs) > RELOAD_THRESHOLD_MS || cachedCloudSaves.isEmpty();
+        // Stale-while-revalidate: show what was cached, then refresh in the background once it is too old.
+        CloudCache.Snapshot cached = CloudCache.get(apiKey);
         fetchLocalSaves();
-        if (shouldReloadCloud) {
-            quotaLoading = true;
-            fetchCloudSaves(); fetchQuotaInfo();
+        resumePendingUpload();
+        if (cached.saves != null) {
+            cloudSaves.clear(); cloudSaves.addAll(cached.saves);
+            cloudLoading = false;
+            if (CloudCache.isStale(cached.savesFetchedAt, RELOAD_THRESHOLD_MS)) fetchCloudSaves(true);
         } else {
+            fetchCloudSaves(false);
+        }
+        if (cached.quotaFormatted != null) {
+            quotaFormatted = cached.quotaFormatted; quotaBytes = parseQuotaBytes(cached.quotaFormatted);
             quotaLoading = false;
-            cloudSaves.clear(); cloudSaves.addAll(cachedCloudSaves);
-            cloudLoading = false;
+            if (CloudCache.isStale(cached.quotaFetchedAt, RELOAD_THRESHOLD_MS)) fetchQuotaInfo();
+        } else {
+            quotaLoading = true;
+            fetchQuotaInfo();
         }
     }
 
@@ -168,20 +170,21 @@ public class SaveManagerScreen extends Screen {
             try {
                 Path savesDir = minecraft.gameDirectory.toPath().resolve("saves");
                 if (Files.exists(savesDir) && Files.isDirectory(savesDir)) {
+                    StagedRestore.recover(savesDir);
                     try (DirectoryStream<Path> ds = Files.newDirectoryStream(savesDir)) {
                         for (Path p : ds) {
-                            if (Files.isDirectory(p)) tmp.add(LocalSave.fromDir(p));
+                            if (Files.isDirectory(p) && !p.getFileName().toString().equals(StagedRestore.WORK_DIR))
+                                tmp.add(LocalSave.fromDir(p));
                         }
                     }
                 }
+                DirSizeIndex.flush(tmp.stream().map(s -> s.dir).toList());
                 tmp.sort(Comparator.comparingLong((LocalSave s) -> s.lastModified).reversed());
             } catch (Exception e) {
                 SaveManagerMod.LOGGER.warn("LocalSaves: scan error - {}", extractErrorMessage(e));
             }
             runOnClient(() -> {
                 localSaves.clear(); localSaves.addAll(tmp);
-                cachedLocalSaves.clear(); cachedLocalSaves.addAll(tmp);
-                lastLoadTimeMs = System.currentTimeMillis();
                 localScrollOffset = 0; localSelectedIndex = -1; localLoading = false;
                 triggerAutoUpload();
             });
@@ -189,11 +192,25 @@ public class SaveManagerScreen extends Screen {
     }
 
     private void fetchCloudSaves() {
-        cloudLoading = true;
-        networkManager.listWorldSaves().whenComplete((json, err) -> {
+        fetchCloudSaves(false);
+    }
+
+    /**
+     * Reloads the cloud list, as a conditional request when the cache has validators. A background refresh
+     * keeps the current list on screen, keeps the selection if the save is still there and only logs errors.
+     */
+    private void fetchCloudSaves(boolean background) {
+        if (!background) cloudLoading = true;
+        String apiKey = networkManager.getApiKey();
+        CloudCache.Snapshot cached = CloudCache.get(apiKey);
+        boolean conditional = cached.saves != null;
+        List<CloudSave> decoded = new ArrayList<>();
+        networkManager.listWorldSaves(conditional ? cached.savesEtag : null, conditional ? cached.savesLastModified : null,
+                in -> decoded.addAll(CloudSaveReader.read(in))).whenComplete((res, err) -> {
             if (err != null) {
                 String msg = extractErrorMessage(err);
                 SaveManagerMod.LOGGER.warn("CloudSaves: list failed - {}", msg);
+                if (background) return;
                 runOnClient(() -> {
                     cloudLoading = false; cloudSaves.clear();
                     if (msg.contains("account must be linked")) toastManager.showError(msg, "Profile -> Edit profile -> Link");
@@ -201,48 +218,59 @@ public class SaveManagerScreen extends Screen {
                 });
                 return;
             }
-            List<CloudSave> tmp = new ArrayList<>();
-            try {
-                JsonArray arr = findArray(json, "saves", "items", "data", "list", "worlds");
-                if (arr == null && json.has("result") && json.get("result").isJsonObject())
-                    arr = findArray(json.getAsJsonObject("result"), "saves", "items", "data", "list", "worlds");
-                if (arr == null) {
-                    for (var e : json.entrySet()) {
-                        if (e.getValue() != null && e.getValue().isJsonArray()) { arr = e.getValue().getAsJsonArray(); break; }
-                    }
-                }
-                if (arr != null) {
-                    for (int i = 0; i < arr.size(); i++) {
-                        if (arr.get(i).isJsonObject()) tmp.add(CloudSave.from(arr.get(i).getAsJsonObject()));
-                    }
-                }
-            } catch (Throwable e) {
-                SaveManagerMod.LOGGER.warn("CloudSaves: parse error - {}", extractErrorMessage(e));
+            List<CloudSave> tmp;
+            if (res.notModified()) {
+                CloudCache.touchSaves(apiKey, res.etag(), res.lastModified());
+                tmp = cached.saves;
+            } else {
+                tmp = decoded;
+                CloudCache.putSaves(apiKey, tmp, res.etag(), res.lastModified());
             }
             runOnClient(() -> {
+                String selectedId = background && cloudSelectedIndex >= 0 && cloudSelectedIndex < cloudSaves.size()
+                        ? cloudSaves.get(cloudSelectedIndex).id : null;
                 cloudSaves.clear(); cloudSaves.addAll(tmp);
-                cachedCloudSaves.clear(); cachedCloudSaves.addAll(tmp);
-                cloudLoading = false; cloudScrollOffset = 0; cloudSelectedIndex = -1;
+                cloudLoading = false;
+                if (background) {
+                    cloudSelectedIndex = -1;
+                    for (int i = 0; selectedId != null && i < cloudSaves.size(); i++)
+                        if (selectedId.equals(cloudSaves.get(i).id)) { cloudSelectedIndex = i; break; }
+                    cloudScrollOffset = clampScroll(cloudScrollOffset, cloudSaves.size());
+                } else {
+                    cloudScrollOffset = 0; cloudSelectedIndex = -1;
+                }
             });
         });
     }
 
     private void fetchQuotaInfo() {
-        networkManager.getQuotaInfo().whenComplete((json, err) -> {
+        String apiKey = networkManager.getApiKey();
+        CloudCache.Snapshot cached = CloudCache.get(apiKey);
+        boolean conditional = cached.quotaFormatted != null;
+        networkManager.getQuotaInfo(conditional ? cached.quotaEtag : null, conditional ? cached.quotaLastModified : null)
+                .whenComplete((res, err) -> {
             if (err != null) {
                 SaveManagerMod.LOGGER.warn("Quota: fetch failed - {}", extractErrorMessage(err));
-                quotaFormatted = cachedQuotaFormatted;
                 runOnClient(() -> quotaLoading = false);
                 return;
             }
-            try {
-                String quota = json.has("quotaFormatted") ? json.get("quotaFormatted").getAsString() : "5 GB";
-                quotaFormatted = quota; cachedQuotaFormatted = quota; quotaBytes = parseQuotaBytes(quota);
-            } catch (Exception e) {
-                SaveManagerMod.LOGGER.warn("Quota: parse error - {}", extractErrorMessage(e));
-                quotaFormatted = cachedQuotaFormatted;
+            String quota = cached.quotaFormatted;
+            if (res.notModified()) {
+                CloudCache.touchQuota(apiKey, res.etag(), res.lastModified());
+            } else {
+                try {
+                    JsonObject json = res.json();
+                    quota = json.has("quotaFormatted") ? json.get("quotaFormatted").getAsString() : "5 GB";
+                    CloudCache.putQuota(apiKey, quota, res.etag(), res.lastModified());
+                } catch (Exception e) {
+                    SaveManagerMod.LOGGER.warn("Quota: parse error - {}", extractErrorMessage(e));
+                }
             }
-            runOnClient(() -> quotaLoading = false);
+            String resolved = quota;
+            runOnClient(() -> {
+                if (resolved != null) { quotaFormatted = resolved; quotaBytes = parseQuotaBytes(resolved); }
+                quotaLoading = false;
+            });
         });
     }
 
@@ -269,51 +297,40 @@ public class SaveManagerScreen extends Screen {
     }
 
     private void beginZipAndUpload(LocalSave s) {
-        ACTIVE.reset(false);
-        localLoading = true;
-        new Thread(() -> {
-            Path zip;
-            try {
-                zip = zipWorld(s.dir, s.worldName.replaceAll("[\\\\/:*?\"<>|]+", "_"));
-            } catch (Exception ex) {
-                String msg = extractErrorMessage(ex);
-                SaveManagerMod.LOGGER.warn("Zip failed - {}", msg);
-                runOnClient(() -> { ACTIVE.upActive = false; ACTIVE.zipping = false; localLoading = false; toastManager.showError(msg); });
-                return;
+        localLoading = false;
+        if (TransferScheduler.isBusy(s.worldName)) return;
+        TransferJob job = TransferScheduler.submit(TransferJob.Kind.UPLOAD, s.worldName, TransferScheduler.PRIORITY_INTERACTIVE,
+                j -> transfers.upload(j, s.worldName, s.dir, s.sizeBytes));
+        job.result().whenComplete((json, err) -> runOnClient(() -> finishUpload(job, err)));
+    }
+
+    private void resumePendingUpload() {
+        ChunkedUploader chunkedUploader = transfers.chunkedUploader();
+        CompletableFuture.supplyAsync(chunkedUploader::pending).thenAccept(pending -> runOnClient(() -> {
+            for (ChunkedUploader.PendingUpload p : pending) {
+                if (TransferScheduler.isBusy(p.worldName())) continue;
+                Path dir = localSaves.stream().filter(s -> s.worldName.equals(p.worldName()))
+                        .map(s -> s.dir).findFirst().orElse(null);
+                toastManager.showInfo("Resuming upload: " + p.worldName());
+                TransferJob job = TransferScheduler.submit(TransferJob.Kind.UPLOAD, p.worldName(), TransferScheduler.PRIORITY_BACKGROUND,
+                        j -> transfers.resume(j, p, dir));
+                job.result().whenComplete((json, err) -> runOnClient(() -> finishUpload(job, err)));
             }
-            runOnClient(() -> startUpload(zip, s.worldName));
-        }, "SaveManager-zip").start();
+        }));
     }
 
-    private void startUpload(Path zipFile, String worldName) {
-        ACTIVE.zipping = false;
-        ACTIVE.bytes = 0L; ACTIVE.total = -1L;
-        ACTIVE.lastTickNanos = System.nanoTime(); ACTIVE.lastBytes = 0L; ACTIVE.speedBps = 0.0;
-        try {
-            networkManager.uploadWorldSave(worldName, zipFile, (sent, total) -> {
-                ACTIVE.bytes = Math.max(0L, sent);
-                if (total > 0) ACTIVE.total = total;
-                ACTIVE.updateSpeed();
-            }).whenComplete((json, err) -> runOnClient(() -> {
-                try { Files.deleteIfExists(zipFile); } catch (Throwable ignored) {}
-                ACTIVE.upActive = false; ACTIVE.zipping = false; localLoading = false;
-                if (err != null) {
-                    String msg = extractErrorMessage(err);
-                    SaveManagerMod.LOGGER.warn("Upload failed - {}", msg);
-                    toastManager.showError(msg);
-                } else {
-                    toastManager.showSuccess("Upload complete: " + worldName);
-                    LocalSave uploaded = localSaves.stream()
-                            .filter(s -> s.worldName.equals(worldName)).findFirst().orElse(null);
-                    if (uploaded != null) WatchManager.updateLastKnown(worldName, uploaded.dir);
-                    WatchManager.clearPendingNotification(worldName);
-                    fetchLocalSaves(); fetchCloudSaves();
-                }
-            }));
-        } catch (Throwable t) {
-            try { Files.deleteIfExists(zipFile); } catch (Throwable ignored) {}
-            ACTIVE.upActive = false; localLoading = false;
-            toastManager.showError("Upload failed");
+    private void finishUpload(TransferJob job, Throwable err) {
+        if (job.status() == TransferJob.Status.CANCELLED) {
+            toastManager.showInfo("Upload cancelled: " + job.label());
+        } else if (err != null) {
+            String msg = extractErrorMessage(err);
+            SaveManagerMod.LOGGER.warn("Upload failed - {}", msg);
+            toastManager.showError(msg);
+            if (unwrap(err) instanceof WorldTransfers.ResumableUploadException)
+                toastManager.showInfo("The upload will resume next time you open the Save Manager");
+        } else {
+            toastManager.showSuccess("Upload complete: " + job.label());
+            fetchLocalSaves(); fetchCloudSaves();
         }
     }
 
@@ -337,46 +354,32 @@ public class SaveManagerScreen extends Screen {
     }
 
     private void beginDownload(CloudSave s, Path savesDir) {
-        cloudLoading = true;
-        Path tmpDir;
-        try { tmpDir = Files.createTempDirectory("savemanager-dl-"); }
-        catch (Exception e) { toastManager.showError("Failed to prepare temp dir"); cloudLoading = false; return; }
-
-        ACTIVE.reset(true);
-        if (s.fileSizeBytes > 0) ACTIVE.total = s.fileSizeBytes;
-
-        networkManager.downloadWorldSave(s.id, tmpDir, (downloaded, total) -> {
-            ACTIVE.bytes = Math.max(0L, downloaded);
-            if (total > 0) ACTIVE.total = total;
-            ACTIVE.updateSpeed();
-        }).whenComplete((zipPath, err) -> {
-            ACTIVE.dlActive = false;
-            if (err != null) {
+        Path target = downloadTarget(s, savesDir);
+        String label = target.getFileName().toString();
+        if (TransferScheduler.isBusy(label)) return;
+        TransferJob job = TransferScheduler.submit(TransferJob.Kind.DOWNLOAD, label, TransferScheduler.PRIORITY_INTERACTIVE,
+                j -> transfers.download(j, s.id, target, s.fileSizeBytes));
+        job.result().whenComplete((v, err) -> runOnClient(() -> {
+            if (job.status() == TransferJob.Status.CANCELLED) {
+                toastManager.showInfo("Download cancelled: " + s.worldName);
+            } else if (err != null) {
                 String msg = extractErrorMessage(err);
                 SaveManagerMod.LOGGER.warn("Download failed - {}", msg);
-                runOnClient(() -> { cloudLoading = false; toastManager.showError(msg); });
-                return;
-            }
-            runOnClient(() -> ACTIVE.unzipping = true);
-            String baseName = sanitizeFolderName(s.worldName);
-            if (baseName.isEmpty()) baseName = "world";
-            Path targetBase = savesDir.resolve(baseName);
-            try {
-                Files.createDirectories(targetBase);
-                deleteDirectoryRecursively(targetBase);
-                Files.createDirectories(targetBase);
-                unzipSmart(zipPath, targetBase);
-                runOnClient(() -> { toastManager.showSuccess("Download complete"); fetchLocalSaves(); });
-            } catch (Exception ex) {
-                String msg = extractErrorMessage(ex);
-                SaveManagerMod.LOGGER.warn("Unzip failed - {}", msg);
-                runOnClient(() -> toastManager.showError(msg));
-            } finally {
-                try { Files.deleteIfExists(zipPath); } catch (Exception ignored) {}
-                try { Files.deleteIfExists(tmpDir); } catch (Exception ignored) {}
-                runOnClient(() -> { ACTIVE.unzipping = false; cloudLoading = false; });
+                toastManager.showError(msg);
+            } else {
+                toastManager.showSuccess("Download complete");
             }
-        });
+            fetchLocalSaves();
+        }));
+    }
+
+    private static Path downloadTarget(CloudSave s, Path savesDir) {
+        return savesDir.resolve(downloadLabel(s));
+    }
+
+    private static String downloadLabel(CloudSave s) {
+        String baseName = sanitizeFolderName(s.worldName);
+        return baseName.isEmpty() ? "world" : baseName;
     }
 
     private void onDelete() {
@@ -404,19 +407,85 @@ public class SaveManagerScreen extends Screen {
     }
 
     private void deleteLocalSave(LocalSave s) {
-        new Thread(() -> {
-            try {
-                deleteDirectoryRecursively(s.dir);
-                runOnClient(() -> { toastManager.showSuccess("Deleted"); localSelectedIndex = -1; fetchLocalSaves(); });
-            } catch (Exception e) {
-                String msg = extractErrorMessage(e);
+        if (TransferScheduler.isBusy(s.worldName)) return;
+        TransferJob job = TransferScheduler.submit(TransferJob.Kind.LOCAL, s.worldName, TransferScheduler.PRIORITY_INTERACTIVE,
+                j -> transfers.deleteWorld(j, s.dir));
+        job.result().whenComplete((v, err) -> runOnClient(() -> {
+            if (err != null) {
+                String msg = extractErrorMessage(err);
                 SaveManagerMod.LOGGER.warn("Local delete failed - {}", msg);
-                runOnClient(() -> toastManager.showError(msg));
+                toastManager.showError(msg);
+                return;
             }
-        }, "SaveManager-delete").start();
+            toastManager.showSuccess("Deleted"); localSelectedIndex = -1; fetchLocalSaves();
+        }));
+    }
+
+    private void cancelCurrentTransfer() {
+        TransferJob job = TransferScheduler.current();
+        if (job != null) TransferScheduler.cancel(job);
+    }
+
+    private void onSyncAll() {
+        if (networkManager.getApiKey() == null || networkManager.getApiKey().isBlank()) {
+            minecraft.setScreen(new AccountLinkingScreen(this)); return;
+        }
+        Path savesDir = minecraft.gameDirectory.toPath().resolve("saves");
+        CompletableFuture.supplyAsync(() -> {
+                    WatchManager.awaitReconciled();
+                    return WatchManager.getChangedWorlds(savesDir);
+                })
+                .thenAccept(changed -> runOnClient(() -> confirmSync(changed)));
+    }
+
+    private void confirmSync(List<String> worldNames) {
+        List<WorldTransfers.SyncTarget> targets = new ArrayList<>();
+        for (LocalSave s : localSaves) {
+            if (worldNames.contains(s.worldName) && !TransferScheduler.isBusy(s.worldName))
+                targets.add(new WorldTransfers.SyncTarget(s.worldName, s.dir, s.sizeBytes));
+        }
+        if (targets.isEmpty()) { toastManager.showInfo("No changed favorite worlds to sync"); return; }
+        confirmPopup = new ConfirmPopup(this, "Sync Favorites?",
+                "Upload " + targets.size() + " changed world" + (targets.size() == 1 ? "" : "s")
+                        + "? Cloud saves with the same name will be overwritten.",
+                () -> { confirmPopup = null; beginSync(targets); }, () -> confirmPopup = null, "Sync");
+    }
+
+    private void beginSync(List<WorldTransfers.SyncTarget> targets) {
+        Set<String> names = new LinkedHashSet<>();
+        targets.forEach(t -> names.add(t.worldName()));
+        TransferJob job = TransferScheduler.submit(TransferJob.Kind.UPLOAD, "Sync", names, TransferScheduler.PRIORITY_INTERACTIVE,
+                j -> transfers.syncAll(j, targets));
+        job.result().whenComplete((r, err) -> runOnClient(() -> {
+            if (job.status() == TransferJob.Status.CANCELLED) {
+                toastManager.showInfo("Sync cancelled");
+            } else if (err != null) {
+                String msg = extractErrorMessage(err);
+                SaveManagerMod.LOGGER.warn("Sync failed - {}", msg);
+                toastManager.showError(msg);
+            } else {
+                WorldTransfers.SyncResult result = (WorldTransfers.SyncResult) r;
+                int total = result.uploaded().size() + result.failed().size();
+                if (result.failed().isEmpty()) {
+                    toastManager.showSuccess("Synced " + total + " world" + (total == 1 ? "" : "s"));
+                } else {
+                    List<String> failures = new ArrayList<>();
+                    result.failed().forEach((name, e) -> failures.add(name + ": " + extractErrorMessage(e)));
+                    toastManager.showError("Synced " + result.uploaded().size() + " of " + total + " worlds",
+                            String.join("\n", failures), "Failed: " + String.join(", ", result.failed().keySet()));
+                }
+            }
+            fetchLocalSaves(); fetchCloudSaves();
+        }));
     }
 
     private void triggerAutoUpload() {
+        if (autoSyncWorlds != null) {
+            List<String> worlds = autoSyncWorlds;
+            autoSyncWorlds = null;
+            confirmSync(worlds);
+            return;
+        }
         if (autoUploadWorld == null) return;
         for (int i = 0; i < localSaves.size(); i++) {
             if (localSaves.get(i).worldName.equals(autoUploadWorld)) {
@@ -449,16 +518,23 @@ public class SaveManagerScreen extends Screen {
             ctx.setTooltipForNextFrame(Component.literal(starTooltipText), mouseX, mouseY);
         }
 
-        if (ACTIVE.isActive()) {
+        TransferJob job = TransferScheduler.current();
+        cancelBtn.visible = job != null && job.kind() != TransferJob.Kind.LOCAL && !job.isCancelled();
+        if (job != null) {
             int statusY = listY + listH + 10;
-            if (ACTIVE.zipping || ACTIVE.unzipping || ACTIVE.bytes <= 0L) {
+            int queued = TransferScheduler.jobs().size() - 1;
+            String label = safe(job.label()) + (job.step() != null ? " (" + safe(job.step()) + ")" : "") + ": " + job.phase()
+                    + (queued > 0 ? " (+" + queued + " queued)" : "");
+            if (job.isIndeterminate()) {
                 spinner.setPosition(cx - 16, statusY);
                 spinner.extractRenderState(ctx, mouseX, mouseY, delta);
-                String msg = ACTIVE.zipping ? "Zipping..." : ACTIVE.unzipping ? "Unzipping..." : "Preparing...";
-                ctx.centeredText(font, Component.literal(msg), cx, statusY + 40, 0xFFFFFFFF);
+                ctx.centeredText(font, Component.literal(label), cx, statusY + 40, 0xFFFFFFFF);
+                cancelBtn.setPosition(cx + 24, statusY + 6);
             } else {
-                renderProgressBar(ctx, cx, statusY);
+                renderProgressBar(ctx, job, label, cx, statusY);
+                cancelBtn.setPosition(cx + 186, statusY + 8);
             }
+            cancelBtn.extractRenderState(ctx, mouseX, mouseY, delta);
         } else if (localLoading || cloudLoading) {
             int statusY = listY + listH + 10;
             spinner.setPosition(cx - 16, statusY);
@@ -471,10 +547,49 @@ public class SaveManagerScreen extends Screen {
         downloadBtn.extractRenderState(ctx, mouseX, mouseY, delta);
         deleteBtn.extractRenderState(ctx, mouseX, mouseY, delta);
 
+        if (showMetrics) renderMetricsOverlay(ctx);
         toastManager.render(ctx, delta, mouseX, mouseY);
         if (confirmPopup != null) confirmPopup.extractRenderState(ctx, mouseX, mouseY, delta);
     }
 
+    private void renderMetricsOverlay(GuiGraphicsExtractor ctx) {
+        List<String> lines = new ArrayList<>();
+        lines.add("Transfer metrics (this session)");
+        for (Map.Entry<TransferJob.Kind, TransferMetrics.Summary> e : TransferMetrics.summaries().entrySet()) {
+            TransferMetrics.Summary s = e.getValue();
+            lines.add(e.getKey() + ": " + s.count + " ops, " + s.failed + " failed, " + formatBytes(s.wireBytes)
+                    + ", " + s.retries + " retries");
+            StringBuilder phases = new StringBuilder("  ");
+            s.phasesMs.forEach((k, v) -> phases.append(k).append(' ').append(formatDuration(v / 1000)).append("  "));
+            lines.add(phases.toString());
+            StringBuilder hist = new StringBuilder("  ");
+            for (int i = 0; i < s.histogram.length; i++) {
+                String bound = i < TransferMetrics.HISTOGRAM_BOUNDS_BPS.length
+                        ? "<" + formatBytes(TransferMetrics.HISTOGRAM_BOUNDS_BPS[i]) : ">=" + formatBytes(TransferMetrics.HISTOGRAM_BOUNDS_BPS[i - 1]);
+                hist.append(bound).append("/s:").append(s.histogram[i]).append("  ");
+            }
+            lines.add(hist.toString());
+        }
+        List<TransferMetrics.Operation> recent = TransferMetrics.recent();
+        if (!recent.isEmpty()) lines.add("Recent:");
+        for (TransferMetrics.Operation op : recent.subList(0, Math.min(5, recent.size()))) {
+            String line = "  " + safe(op.label) + " " + op.status + " " + formatDuration(op.durationMs / 1000);
+            if (op.wireBytes > 0) line += " \u2022 " + formatBytes(op.wireBytes);
+            if (op.throughputBps > 0) line += " @ " + formatBytes(op.throughputBps) + "/s";
+            if (op.compressionRatio > 0) line += " \u2022 ratio " + String.format(Locale.ROOT, "%.2f", op.compressionRatio);
+            if (op.retries > 0) line += " \u2022 " + op.retries + " retries";
+            lines.add(line);
+        }
+        if (lines.size() == 1) lines.add("No transfers yet");
+
+        int w = 0;
+        for (String l : lines) w = Math.max(w, font.width(l));
+        int x = this.width - w - 14, y = 32, h = lines.size() * 10 + 6;
+        ctx.fill(x - 4, y - 4, x + w + 4, y + h - 4, 0xD0000000);
+        for (int i = 0; i < lines.size(); i++)
+            ctx.text(font, Component.literal(lines.get(i)), x, y + i * 10, i == 0 ? 0xFFFFFFFF : 0xFFBBBBBB);
+    }
+
     private void renderSavePanel(GuiGraphicsExtractor ctx, int mouseX, int mouseY, float delta, boolean isLocal) {
         List<?> saves = isLocal ? localSaves : cloudSaves;
         ScrollBar scrollBar = isLocal ? localScrollBar : cloudScrollBar;
@@ -524,32 +639,45 @@ public class SaveManagerScreen extends Screen {
         ctx.disableScissor();
     }
 
-    private void renderProgressBar(GuiGraphicsExtractor ctx, int cx, int statusY) {
-        long bytes = ACTIVE.bytes, total = ACTIVE.total;
-        double speed = ACTIVE.speedBps;
+    private void renderProgressBar(GuiGraphicsExtractor ctx, TransferJob job, String label, int cx, int statusY) {
+        long bytes = job.bytes(), total = job.total(), sent = job.sent(), extracted = job.extracted();
+        double speed = job.speedBps();
+        long limit = job.rateLimitBps();
+        String limitInfo = limit > 0 ? " (limit " + formatBytes(limit) + "/s)" : "";
         int barW = 360, barH = 8, bx = cx - barW / 2, by = statusY + 14;
         ctx.fill(bx, by, bx + barW, by + barH, 0xFF444444);
         if (total > 0) {
             double frac = Math.min(1.0, (double) bytes / total);
             ctx.fill(bx, by, bx + (int) (barW * frac), by + barH, 0xFFCCCCCC);
-            ctx.centeredText(font, Component.literal((int) Math.min(100, bytes * 100.0 / total) + "%"), cx, by - 10, 0xFFFFFFFF);
+            ctx.centeredText(font, Component.literal(label + " \u2022 " + (int) Math.min(100, bytes * 100.0 / total) + "%"), cx, by - 10, 0xFFFFFFFF);
             String info = formatBytes(bytes) + " / " + formatBytes(total);
+            if (sent >= 0) info += " \u2022 " + formatBytes(sent) + " sent";
+            if (extracted >= 0) info += " \u2022 " + formatBytes(extracted) + " unpacked";
             if (speed > 1) {
                 long etaSec = (long) Math.ceil(Math.max(0L, total - bytes) / Math.max(1.0, speed));
-                info += " \u2022 " + formatBytes((long) speed) + "/s \u2022 ETA " + formatDuration(etaSec);
+                info += " \u2022 " + formatBytes((long) speed) + "/s" + limitInfo + " \u2022 ETA " + formatDuration(etaSec);
             }
             ctx.centeredText(font, Component.literal(info), cx, by + barH + 2, 0xFFCCCCCC);
+        } else {
+            ctx.centeredText(font, Component.literal(label), cx, by - 10, 0xFFFFFFFF);
+            String info = formatBytes(bytes);
+            if (sent >= 0) info += " \u2022 " + formatBytes(sent) + " sent";
+            if (extracted >= 0) info += " \u2022 " + formatBytes(extracted) + " unpacked";
+            if (speed > 1) info += " \u2022 " + formatBytes((long) speed) + "/s" + limitInfo;
+            ctx.centeredText(font, Component.literal(info), cx, by + barH + 2, 0xFFCCCCCC);
         }
     }
 
     private void updateButtonStates() {
-        boolean opActive = ACTIVE.isActive();
         boolean hasLocal = localSelectedIndex >= 0 && localSelectedIndex < localSaves.size();
         boolean hasCloud = cloudSelectedIndex >= 0 && cloudSelectedIndex < cloudSaves.size();
-        if (uploadBtn != null) uploadBtn.active = hasLocal && !opActive;
-        if (downloadBtn != null) downloadBtn.active = hasCloud && !opActive;
-        if (deleteBtn != null) deleteBtn.active = (hasLocal || hasCloud) && !opActive;
+        boolean localBusy = hasLocal && TransferScheduler.isBusy(localSaves.get(localSelectedIndex).worldName);
+        boolean cloudBusy = hasCloud && TransferScheduler.isBusy(downloadLabel(cloudSaves.get(cloudSelectedIndex)));
+        if (uploadBtn != null) uploadBtn.active = hasLocal && !localBusy;
+        if (downloadBtn != null) downloadBtn.active = hasCloud && !cloudBusy;
+        if (deleteBtn != null) deleteBtn.active = (hasLocal && !localBusy) || hasCloud;
         if (refreshBtn != null) refreshBtn.active = !localLoading && !cloudLoading;
+        if (syncBtn != null) syncBtn.active = !localLoading && !WatchManager.getPendingNotifications().isEmpty();
     }
 
     // ── Input handling ──
@@ -562,7 +690,7 @@ public class SaveManagerScreen extends Screen {
         if (toastManager.isMouseOverToast(mx, my) || consumed) return true;
         if (super.mouseClicked(click, false)) return true;
 
-        if (click.button() == 0 && !localLoading && !cloudLoading && !ACTIVE.dlActive && !ACTIVE.upActive) {
+        if (click.button() == 0 && !localLoading && !cloudLoading) {
             int idx = clickedRowIndex(mx, my, localPanelX, localPanelW, localScrollOffset, localSaves.size());
             if (idx >= 0) {
                 int starX = localPanelX + localPanelW - 14;
@@ -626,10 +754,7 @@ public class SaveManagerScreen extends Screen {
         if (minecraft == null) return;
         closed = true;
         autoUploadWorld = null;
-        ACTIVE.upActive = false;
-        ACTIVE.dlActive = false;
-        ACTIVE.zipping = false;
-        ACTIVE.unzipping = false;
+        autoSyncWorlds = null;
         Screen dest;
         if (parent instanceof SelectWorldScreen) {
             Screen grandParent = ((SelectWorldScreenAccessor) parent).getParentScreen();
@@ -651,6 +776,12 @@ public class SaveManagerScreen extends Screen {
         }
     }
 
+    private static Throwable unwrap(Throwable t) {
+        while (t.getCause() != null && (t instanceof java.util.concurrent.CompletionException
+                || t instanceof java.util.concurrent.ExecutionException)) t = t.getCause();
+        return t;
+    }
+
     private void runOnClient(Runnable r) { if (minecraft != null) minecraft.execute(() -> { if (!closed) r.run(); }); }
 
     private String computeQuotaLine() {
@@ -675,87 +806,6 @@ public class SaveManagerScreen extends Screen {
         return 5L * 1024L * 1024L * 1024L;
     }
 
-    // ── File I/O helpers ──
-
-    private static void unzipSmart(Path zipFile, Path targetBase) throws Exception {
-        String root = detectSingleRootDir(zipFile);
-        try (java.util.zip.ZipInputStream zis = new java.util.zip.ZipInputStream(Files.newInputStream(zipFile))) {
-            for (java.util.zip.ZipEntry e; (e = zis.getNextEntry()) != null; ) {
-                if (e.isDirectory()) continue;
-                String name = e.getName().replace('\\', '/');
-                if (root != null && name.startsWith(root + "/")) name = name.substring(root.length() + 1);
-                if (name.isBlank()) continue;
-                Path out = targetBase.resolve(name).normalize();
-                if (!out.startsWith(targetBase)) throw new IllegalArgumentException("Blocked zip entry: " + name);
-                Files.createDirectories(out.getParent());
-                Files.copy(zis, out, StandardCopyOption.REPLACE_EXISTING);
-                zis.closeEntry();
-            }
-        }
-    }
-
-    private static String detectSingleRootDir(Path zipFile) throws Exception {
-        try (java.util.zip.ZipFile zf = new java.util.zip.ZipFile(zipFile.toFile())) {
-            String root = null;
-            var en = zf.entries();
-            while (en.hasMoreElements()) {
-                String name = en.nextElement().getName().replace('\\', '/');
-                if (name.isBlank()) continue;
-                String top = name.split("/", 2)[0];
-                if (top.isBlank()) return null;
-                if (root == null) root = top;
-                else if (!root.equals(top)) return null;
-            }
-            return root;
-        }
-    }
-
-    private static Path zipWorld(Path worldDir, String worldName) throws Exception {
-        Path zip = Files.createTempFile("savemanager-" + worldName + "-", ".zip");
-        try (var zos = new java.util.zip.ZipOutputStream(Files.newOutputStream(zip, StandardOpenOption.WRITE))) {
-            Files.walkFileTree(worldDir, new SimpleFileVisitor<>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws java.io.IOException {
-                    Path rel = worldDir.relativize(file);
-                    if ("session.lock".equalsIgnoreCase(rel.getFileName().toString())) return FileVisitResult.CONTINUE;
-                    zos.putNextEntry(new java.util.zip.ZipEntry(rel.toString().replace('\\', '/')));
-                    Files.copy(file, zos);
-                    zos.closeEntry();
-                    return FileVisitResult.CONTINUE;
-                }
-            });
-        } catch (Exception e) {
-            try { Files.deleteIfExists(zip); } catch (Exception ignored) {}
-            throw e;
-        }
-        return zip;
-    }
-
-    private static void deleteDirectoryRecursively(Path dir) throws Exception {
-        if (!Files.exists(dir)) return;
-        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
-            @Override public FileVisitResult visitFile(Path f, BasicFileAttributes a) throws java.io.IOException { Files.delete(f); return FileVisitResult.CONTINUE; }
-            @Override public FileVisitResult postVisitDirectory(Path d, java.io.IOException e) throws java.io.IOException { if (e != null) throw e; Files.delete(d); return FileVisitResult.CONTINUE; }
-        });
-    }
-
-    // ── JSON helpers ──
-
-    private static JsonArray findArray(JsonObject obj, String... names) {
-        for (String n : names) { if (!obj.has(n)) continue; var e = obj.get(n); if (e != null && e.isJsonArray()) return e.getAsJsonArray(); }
-        return null;
-    }
-
-    private static String getString(JsonObject obj, String... names) {
-        for (String n : names) { if (!obj.has(n)) continue; var e = obj.get(n); if (e != null && e.isJsonPrimitive() && e.getAsJsonPrimitive().isString()) return e.getAsString(); }
-        return "";
-    }
-
-    private static long getLong(JsonObject obj, String... names) {
-        for (String n : names) { if (!obj.has(n)) continue; var e = obj.get(n); if (e != null && e.isJsonPrimitive() && e.getAsJsonPrimitive().isNumber()) return e.getAsLong(); }
-        return 0L;
-    }
-
     // ── Tiny spinner for quota loading ──
 
     private static float tinySpinnerAngle = 0f;
@@ -790,26 +840,7 @@ public class SaveManagerScreen extends Screen {
         }
 
         static long computeDirSize(Path dir) throws Exception {
-            final long[] sum = {0L};
-            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
-                @Override public FileVisitResult visitFile(Path f, BasicFileAttributes a) { try { sum[0] += Files.size(f); } catch (Exception ignored) {} return FileVisitResult.CONTINUE; }
-            });
-            return sum[0];
-        }
-    }
-
-    static class CloudSave {
-        String id, worldName, createdAt, updatedAt;
-        long fileSizeBytes;
-
-        static CloudSave from(JsonObject o) {
-            CloudSave s = new CloudSave();
-            s.id = getString(o, "id", "saveId", "guid");
-            s.worldName = getString(o, "worldName", "name", "world", "title");
-            s.fileSizeBytes = getLong(o, "sizeBytes", "fileSizeBytes", "fileSize", "size", "bytes");
-            s.createdAt = getString(o, "createdAt", "created", "created_on");
-            s.updatedAt = getString(o, "updatedAt", "updated", "updated_on", "lastModified");
-            return s;
+            return DirSizeIndex.sizeOf(dir);
         }
     }
 }
@@ -31,6 +31,7 @@ public abstract class SinglePlayerScreenMixin extends Screen {
         Path savesDir = mc.gameDirectory.toPath().resolve("saves");
 
         CompletableFuture.runAsync(() -> {
+            WatchManager.awaitReconciled();
             List<String> changed = WatchManager.getChangedWorlds(savesDir);
             WatchManager.setPendingNotifications(changed);
         });
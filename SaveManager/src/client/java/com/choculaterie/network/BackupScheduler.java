@@ -0,0 +1,144 @@
+package com.choculaterie.network;
+
+import com.choculaterie.SaveManagerMod;
+import com.choculaterie.util.ConfigManager;
+import com.choculaterie.util.DirSizeIndex;
+import com.choculaterie.util.WatchManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unattended backups of watched worlds. Every {@link ConfigManager#BACKUP_INTERVAL} minutes, and when a world is
+ * closed, the worlds {@link WatchManager} reports as changed are synced as one background job. The job picks its
+ * worlds when it starts rather than when it is queued, so further changes and triggers while it waits are
+ * coalesced into it instead of queueing another upload. Background jobs yield to anything the player starts and
+ * run on low-priority threads with paced disk reads (see {@link WorldTransfers}). Each run stores a local version
+ * of the worlds in {@link com.choculaterie.util.LocalBackupStore} unless that is turned off; uploading them to the
+ * cloud, which replaces the cloud save of the same name, only happens once {@link ConfigManager#CLOUD_BACKUPS} is
+ * turned on.
+ */
+public final class BackupScheduler {
+    private static final String LABEL = "Backup";
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "SaveManager-backup");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private static boolean started = false;
+    private static long lastRunMs = System.currentTimeMillis();
+    private static TransferJob queued;
+
+    private BackupScheduler() {
+    }
+
+    /** Starts the interval timer; the interval is re-read from the settings every minute. */
+    public static synchronized void start() {
+        if (started)
+            return;
+        started = true;
+        TIMER.scheduleWithFixedDelay(BackupScheduler::tick, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /** Called when the integrated server has stopped and the world is saved and unlocked. */
+    public static void onWorldClosed() {
+        if (ConfigManager.getBoolean(ConfigManager.BACKUP_ON_EXIT, true))
+            TIMER.execute(BackupScheduler::run);
+    }
+
+    private static void tick() {
+        if (isDue(ConfigManager.getInt(ConfigManager.BACKUP_INTERVAL, 30), lastRunMs, System.currentTimeMillis()))
+            run();
+    }
+
+    /** Whether a timed run is due; an interval of 0 or less turns the timer off. */
+    static boolean isDue(int intervalMinutes, long lastRunMs, long nowMs) {
+        return intervalMinutes > 0 && nowMs - lastRunMs >= intervalMinutes * 60_000L;
+    }
+
+    private static void run() {
+        try {
+            lastRunMs = System.currentTimeMillis();
+            String apiKey = ConfigManager.loadApiKey();
+            boolean cloud = apiKey != null && !apiKey.isBlank()
+                    && ConfigManager.getBoolean(ConfigManager.CLOUD_BACKUPS, false);
+            boolean local = ConfigManager.getBoolean(ConfigManager.LOCAL_BACKUPS, true);
+            if (!cloud && !local)
+                return;
+            Path savesDir = ConfigManager.getSavesDir();
+            WatchManager.awaitReconciled();
+            List<String> changed = WatchManager.getChangedWorlds(savesDir);
+            if (changed.isEmpty())
+                return;
+            synchronized (BackupScheduler.class) {
+                if (queued != null && queued.status() == TransferJob.Status.QUEUED)
+                    return;
+                NetworkManager network = new NetworkManager();
+                if (cloud) {
+                    network.setApiKey(apiKey);
+                    BandwidthLimiter.applySettings();
+                }
+                WorldTransfers transfers = new WorldTransfers(network);
+                queued = TransferScheduler.submit(cloud ? TransferJob.Kind.UPLOAD : TransferJob.Kind.LOCAL, LABEL,
+                        new LinkedHashSet<>(changed), TransferScheduler.PRIORITY_BACKGROUND,
+                        job -> backup(job, transfers, savesDir, local, cloud));
+                queued.result().whenComplete((v, err) -> {
+                    if (err != null && !NetworkManager.isCancellation(err))
+                        SaveManagerMod.LOGGER.warn("Background backup failed - {}", err.getMessage());
+                });
+            }
+        } catch (Exception e) {
+            SaveManagerMod.LOGGER.warn("Background backup could not start - {}", e.getMessage());
+        }
+    }
+
+    /** Stores local versions of the changed worlds first, if enabled, then uploads them. */
+    private static CompletableFuture<WorldTransfers.SyncResult> backup(TransferJob job, WorldTransfers transfers,
+            Path savesDir, boolean local, boolean cloud) {
+        List<WorldTransfers.SyncTarget> targets = new ArrayList<>();
+        for (String name : WatchManager.getChangedWorlds(savesDir)) {
+            Path dir = savesDir.resolve(name);
+            if (busyElsewhere(job, name) || !Files.isDirectory(dir))
+                continue;
+            long size;
+            try {
+                size = DirSizeIndex.sizeOf(dir);
+            } catch (Exception e) {
+                size = 0L;
+            }
+            targets.add(new WorldTransfers.SyncTarget(name, dir, size));
+        }
+        WorldTransfers.SyncResult none = new WorldTransfers.SyncResult(List.of(), Map.of());
+        if (targets.isEmpty())
+            return CompletableFuture.completedFuture(none);
+        CompletableFuture<List<String>> stored = local
+                ? transfers.backupLocal(job, targets)
+                : CompletableFuture.completedFuture(List.of());
+        return stored.thenCompose(names -> {
+            if (!names.isEmpty())
+                SaveManagerMod.LOGGER.info("Stored local backups of {}", String.join(", ", names));
+            if (!cloud)
+                return CompletableFuture.completedFuture(none);
+            return transfers.syncAll(job, targets).whenComplete((result, err) -> {
+                if (result != null && !result.uploaded().isEmpty())
+                    SaveManagerMod.LOGGER.info("Backed up {}", String.join(", ", result.uploaded()));
+            });
+        });
+    }
+
+    /** Whether a job other than {@code self} is working on {@code world}. */
+    private static boolean busyElsewhere(TransferJob self, String world) {
+        for (TransferJob j : TransferScheduler.jobs())
+            if (j != self && j.subjects().contains(world)) return true;
+        return false;
+    }
+}
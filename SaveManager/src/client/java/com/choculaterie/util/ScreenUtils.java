@@ -1,9 +1,12 @@
 package com.choculaterie.util;
 
+import net.minecraft.client.gui.Font;
 import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.client.gui.screens.worldselection.SelectWorldScreen;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
 
 public final class ScreenUtils {
     private ScreenUtils() {
@@ -26,4 +29,30 @@ public final class ScreenUtils {
         }
         return p;
     }
+
+    public static List<String> wrapText(Font textRenderer, String text, int maxWidth) {
+        List<String> lines = new ArrayList<>();
+        for (String paragraph : text.split("\n")) {
+            if (paragraph.isEmpty()) {
+                lines.add("");
+                continue;
+            }
+            StringBuilder currentLine = new StringBuilder();
+            for (String word : paragraph.split(" ")) {
+                String testLine = currentLine.isEmpty() ? word : currentLine + " " + word;
+                if (textRenderer.width(testLine) <= maxWidth) {
+                    if (!currentLine.isEmpty())
+                        currentLine.append(" ");
+                    currentLine.append(word);
+                } else {
+                    if (!currentLine.isEmpty())
+                        lines.add(currentLine.toString());
+                    currentLine = new StringBuilder(word);
+                }
+            }
+            if (!currentLine.isEmpty())
+                lines.add(currentLine.toString());
+        }
+        return lines.isEmpty() ? List.of(text) : lines;
+    }
 }
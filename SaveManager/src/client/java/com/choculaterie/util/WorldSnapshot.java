@@ -0,0 +1,154 @@
+package com.choculaterie.util;
+
+import com.choculaterie.network.WorldTransfers;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.server.IntegratedServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.storage.LevelResource;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consistent copies of the world the integrated server has open, so it can be uploaded without quitting to the
+ * menu. {@link #capture} does what {@code /save-all flush} followed by {@code /save-off} would, copies the world
+ * folder while nothing is written to it, then turns saving back on; the archive is built from the copy afterwards.
+ *
+ * <p>Files the game only ever replaces by rename ({@code level.dat} and player data) are hard-linked. Region,
+ * stats and advancement files are rewritten in place, so a link would change under the snapshot once saving
+ * resumes; those are copied, which the JDK turns into a copy-on-write clone on file systems that support it.
+ * Copies keep their modification times so delta uploads and change tracking see the files as unchanged.
+ * {@link com.choculaterie.SaveManagerClient} registers it with {@link WorldTransfers#setSnapshotHook}.
+ */
+public final class WorldSnapshot implements WorldTransfers.SnapshotHook {
+    private static final String LOCK_FILE = "session.lock";
+    private static final long SERVER_TIMEOUT_SECONDS = 30L;
+
+    /** Whether {@code worldDir} is the world the integrated server is currently running. */
+    @Override
+    public boolean isOpen(Path worldDir) {
+        if (ConfigManager.isHeadless())
+            return false;
+        IntegratedServer server = Minecraft.getInstance().getSingleplayerServer();
+        if (server == null || !server.isRunning())
+            return false;
+        try {
+            return Files.isSameFile(server.getWorldPath(LevelResource.ROOT), worldDir);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Flushes the open world, pauses saving while it is copied, and returns the copy. */
+    @Override
+    public Path capture(Path worldDir) throws IOException {
+        IntegratedServer server = Minecraft.getInstance().getSingleplayerServer();
+        if (server == null)
+            throw new IllegalStateException("No world is open");
+        // Filled on the server thread; restores are queued behind the pausing task, so they always see it whole.
+        Map<ServerLevel, Boolean> previous = new IdentityHashMap<>();
+        CompletableFuture<Void> paused = server.submit(() -> {
+            server.saveEverything(true, true, true);
+            for (ServerLevel level : server.getAllLevels()) {
+                previous.put(level, level.noSave);
+                level.noSave = true;
+            }
+        });
+        try {
+            paused.get(SERVER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            // The task may still run after the wait gave up; without the restore the world would stop saving.
+            paused.cancel(false);
+            server.execute(() -> restore(previous));
+            if (e instanceof InterruptedException)
+                Thread.currentThread().interrupt();
+            throw new IOException("Could not save the open world", e);
+        }
+
+        Path snapshot = ConfigManager.getDataDir().toPath().resolve("snapshots")
+                .resolve(worldDir.getFileName() + "-" + System.currentTimeMillis());
+        try {
+            copyTree(worldDir, snapshot);
+            return snapshot;
+        } catch (IOException | RuntimeException e) {
+            release(snapshot);
+            throw e;
+        } finally {
+            server.execute(() -> restore(previous));
+        }
+    }
+
+    private static void restore(Map<ServerLevel, Boolean> previous) {
+        previous.forEach((level, noSave) -> level.noSave = noSave);
+    }
+
+    /** Deletes a snapshot returned by {@link #capture}. */
+    @Override
+    public void release(Path snapshot) {
+        if (snapshot == null || !Files.exists(snapshot))
+            return;
+        try {
+            Files.walkFileTree(snapshot, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path f, BasicFileAttributes a) throws IOException {
+                    Files.delete(f);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                    Files.delete(d);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void copyTree(Path from, Path to) throws IOException {
+        Files.walkFileTree(from, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(to.resolve(from.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String name = file.getFileName().toString();
+                if (LOCK_FILE.equalsIgnoreCase(name))
+                    return FileVisitResult.CONTINUE;
+                Path target = to.resolve(from.relativize(file).toString());
+                if (!replacedByRename(from, file) || !tryLink(target, file))
+                    Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static boolean replacedByRename(Path worldDir, Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(".dat") && !name.endsWith(".dat_old"))
+            return false;
+        Path parent = worldDir.relativize(file).getParent();
+        return parent == null ? name.startsWith("level.") : parent.toString().equals("playerdata");
+    }
+
+    private static boolean tryLink(Path link, Path existing) {
+        try {
+            Files.createLink(link, existing);
+            return true;
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+    }
+}
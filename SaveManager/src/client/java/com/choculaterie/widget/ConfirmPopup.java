@@ -76,7 +76,7 @@ public class ConfirmPopup implements Renderable, GuiEventListener {
     }
 
     private List<String> wrapText(String text, int maxWidth, Minecraft client) {
-        return com.choculaterie.util.FormatUtils.wrapText(client.font, text, maxWidth);
+        return com.choculaterie.util.ScreenUtils.wrapText(client.font, text, maxWidth);
     }
 
     @Override
@@ -77,7 +77,7 @@ public class Toast {
     }
 
     private java.util.List<String> wrapText(net.minecraft.client.gui.Font textRenderer, String text, int maxWidth) {
-        return com.choculaterie.util.FormatUtils.wrapText(textRenderer, text, maxWidth);
+        return com.choculaterie.util.ScreenUtils.wrapText(textRenderer, text, maxWidth);
     }
 
     public void setTargetYPosition(int targetY) {
@@ -0,0 +1,159 @@
+package com.choculaterie.network;
+
+import com.choculaterie.util.ConfigManager;
+
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Token bucket shared by every upload and download so that transfers together stay under the configured cap.
+ * In adaptive mode the rate is additionally steered by write stalls: a socket write that blocks far longer than
+ * the recent baseline means the uplink queue is full, so the rate is cut multiplicatively and then grown back
+ * additively while writes stay fast. Java does not expose TCP round-trip times, so stalls are the signal used.
+ */
+public final class BandwidthLimiter {
+    private static final BandwidthLimiter SHARED = new BandwidthLimiter();
+    private static final int[] PRESETS_KBPS = { 0, 512, 1024, 4096, 16384 };
+    private static final double BURST_SECONDS = 0.25;
+    private static final long MIN_RATE_BPS = 64L * 1024;
+    private static final long STALL_MIN_NANOS = 20_000_000L;
+    private static final long DECREASE_COOLDOWN_NANOS = 500_000_000L;
+    private static final long INCREASE_INTERVAL_NANOS = 250_000_000L;
+    private static final int SLICE_SIZE = 64 * 1024;
+
+    private long capBps;
+    private boolean adaptive;
+    private double rateBps;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    private double baselineNanosPerByte;
+    private double throughputBps;
+    private long lastDecreaseNanos, lastIncreaseNanos, lastSampleNanos;
+
+    BandwidthLimiter() {
+    }
+
+    public static BandwidthLimiter shared() {
+        return SHARED;
+    }
+
+    /** Configures the shared limiter from the {@link ConfigManager#BANDWIDTH_LIMIT} and adaptive settings. */
+    public static void applySettings() {
+        SHARED.configure(ConfigManager.getInt(ConfigManager.BANDWIDTH_LIMIT, 0) * 1024L,
+                ConfigManager.getBoolean(ConfigManager.ADAPTIVE_BANDWIDTH, false));
+    }
+
+    /** {@code capBps <= 0} means no fixed cap. */
+    public synchronized void configure(long capBps, boolean adaptive) {
+        if (Math.max(0L, capBps) == this.capBps && adaptive == this.adaptive) return;
+        this.capBps = Math.max(0L, capBps);
+        this.adaptive = adaptive;
+        this.rateBps = this.capBps;
+        this.tokens = Math.min(tokens, burst());
+        this.baselineNanosPerByte = 0.0;
+    }
+
+    /** The rate transfers are currently held to in bytes per second, or 0 when unlimited. */
+    public synchronized long effectiveRateBps() {
+        return (long) rateBps;
+    }
+
+    /** Blocks until {@code bytes} may be transferred. */
+    public void acquire(int bytes) throws InterruptedIOException {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                if (rateBps <= 0) return;
+                refill();
+                if (tokens >= Math.min(bytes, burst())) {
+                    tokens -= bytes;
+                    return;
+                }
+                waitNanos = (long) ((Math.min(bytes, burst()) - tokens) / rateBps * 1_000_000_000L);
+            }
+            try {
+                Thread.sleep(Math.max(1L, waitNanos / 1_000_000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Transfer interrupted");
+            }
+        }
+    }
+
+    /** Feeds the duration of one blocking socket write back into the adaptive controller. */
+    public synchronized void recordWrite(int bytes, long nanos) {
+        if (!adaptive || bytes <= 0) return;
+        long now = System.nanoTime();
+        if (lastSampleNanos != 0L) {
+            double instBps = bytes * 1_000_000_000.0 / Math.max(1L, now - lastSampleNanos);
+            throughputBps = throughputBps <= 0 ? instBps : 0.1 * instBps + 0.9 * throughputBps;
+        }
+        lastSampleNanos = now;
+
+        double perByte = (double) nanos / bytes;
+        if (baselineNanosPerByte <= 0 || perByte < baselineNanosPerByte) baselineNanosPerByte = perByte;
+        else baselineNanosPerByte *= 1.01;
+
+        boolean stalled = nanos > STALL_MIN_NANOS && perByte > baselineNanosPerByte * 4;
+        if (stalled && now - lastDecreaseNanos > DECREASE_COOLDOWN_NANOS) {
+            double current = rateBps > 0 ? rateBps : throughputBps;
+            rateBps = Math.max(MIN_RATE_BPS, current * 0.7);
+            tokens = Math.min(tokens, burst());
+            lastDecreaseNanos = now;
+            lastIncreaseNanos = now;
+        } else if (!stalled && rateBps > 0 && now - lastIncreaseNanos > INCREASE_INTERVAL_NANOS) {
+            rateBps += Math.max(32 * 1024.0, rateBps * 0.05);
+            if (capBps > 0) rateBps = Math.min(rateBps, capBps);
+            lastIncreaseNanos = now;
+        }
+    }
+
+    /** Splits {@code data} into slices that each wait for the limiter before they are handed to the body. */
+    public Iterable<byte[]> slices(byte[] data) {
+        return () -> new Iterator<>() {
+            private int offset;
+
+            @Override
+            public boolean hasNext() {
+                return offset < data.length;
+            }
+
+            @Override
+            public byte[] next() {
+                byte[] slice = Arrays.copyOfRange(data, offset, Math.min(data.length, offset + SLICE_SIZE));
+                offset += slice.length;
+                try {
+                    acquire(slice.length);
+                } catch (InterruptedIOException e) {
+                    throw new CancellationException(e.getMessage());
+                }
+                return slice;
+            }
+        };
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst(), tokens + (now - lastRefillNanos) / 1_000_000_000.0 * rateBps);
+        lastRefillNanos = now;
+    }
+
+    private double burst() {
+        return Math.max(SLICE_SIZE * 2.0, rateBps * BURST_SECONDS);
+    }
+
+    public static int nextPreset(int kbps) {
+        for (int i = 0; i < PRESETS_KBPS.length; i++) {
+            if (PRESETS_KBPS[i] >= kbps)
+                return PRESETS_KBPS[(PRESETS_KBPS[i] == kbps ? i + 1 : i) % PRESETS_KBPS.length];
+        }
+        return PRESETS_KBPS[0];
+    }
+
+    public static String label(int kbps) {
+        if (kbps <= 0) return "Unlimited";
+        return kbps >= 1024 ? (kbps / 1024) + " MB/s" : kbps + " KB/s";
+    }
+}
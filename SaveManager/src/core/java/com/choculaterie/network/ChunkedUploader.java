@@ -0,0 +1,370 @@
+package com.choculaterie.network;
+
+import com.google.gson.*;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+
+/**
+ * Uploads an archive as fixed-size parts within a server-side upload session. Each part carries a SHA-256
+ * checksum, which the server verifies and answers with 422 on a mismatch. Dropped connections, 5xx, 429 and
+ * checksum mismatches are retried with exponential backoff; other 4xx answers fail at once. The session id and
+ * archive location are persisted so an interrupted upload continues from the parts the server has acknowledged,
+ * even after a restart.
+ */
+public class ChunkedUploader {
+    static final int PART_SIZE = 8 * 1024 * 1024;
+    private static final int SLICE_SIZE = 256 * 1024;
+    private static final int MAX_ATTEMPTS = 6;
+    private static final long BASE_BACKOFF_MS = 1_000L;
+    private static final long MAX_BACKOFF_MS = 60_000L;
+    private static final Duration PART_TIMEOUT = Duration.ofMinutes(2);
+
+    private final NetworkManager network;
+    private final File stateFile;
+
+    public record PendingUpload(String worldName, String sessionId, Path zipPath, long zipSize, long zipModified,
+            int partSize) {
+    }
+
+    public ChunkedUploader(NetworkManager network, File stateFile) {
+        this.network = network;
+        this.stateFile = stateFile;
+    }
+
+    public CompletableFuture<JsonObject> upload(String worldName, Path zipFile, BiConsumer<Long, Long> progressCallback) {
+        network.validateApiKey();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                PendingUpload pending = new PendingUpload(worldName, null, zipFile, Files.size(zipFile),
+                        Files.getLastModifiedTime(zipFile).toMillis(), PART_SIZE);
+                return run(pending, progressCallback);
+            } catch (IOException e) {
+                throw new RuntimeException("Upload failed: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    public CompletableFuture<JsonObject> resume(PendingUpload pending, BiConsumer<Long, Long> progressCallback) {
+        network.validateApiKey();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return run(pending, progressCallback);
+            } catch (IOException e) {
+                throw new RuntimeException("Upload failed: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    public synchronized List<PendingUpload> pending() {
+        List<PendingUpload> valid = new ArrayList<>();
+        for (PendingUpload p : loadState().values()) {
+            try {
+                if (Files.size(p.zipPath()) == p.zipSize()
+                        && Files.getLastModifiedTime(p.zipPath()).toMillis() == p.zipModified()) {
+                    valid.add(p);
+                    continue;
+                }
+            } catch (IOException ignored) {
+            }
+            discard(p);
+        }
+        return valid;
+    }
+
+    public synchronized void discard(PendingUpload pending) {
+        Map<String, PendingUpload> state = loadState();
+        PendingUpload stored = state.get(pending.worldName());
+        if (stored != null && stored.zipPath().equals(pending.zipPath())) {
+            state.remove(pending.worldName());
+            saveState(state);
+        }
+        try { Files.deleteIfExists(pending.zipPath()); } catch (IOException ignored) {}
+    }
+
+    private JsonObject run(PendingUpload pending, BiConsumer<Long, Long> progressCallback) throws IOException {
+        long total = pending.zipSize();
+        int partSize = pending.partSize();
+        int partCount = (int) Math.max(1L, (total + partSize - 1) / partSize);
+
+        Set<Integer> acked = pending.sessionId() != null
+                ? withRetry("session status", progressCallback, () -> fetchAckedParts(pending.sessionId(), progressCallback))
+                : null;
+        PendingUpload session = pending;
+        if (acked == null) {
+            String sessionId = withRetry("session create", progressCallback, () -> createSession(pending, partCount, progressCallback));
+            session = new PendingUpload(pending.worldName(), sessionId, pending.zipPath(), total,
+                    pending.zipModified(), partSize);
+            acked = new HashSet<>();
+        }
+        remember(session);
+
+        long done = 0L;
+        for (int part : acked) done += partLength(part, partSize, total);
+        if (progressCallback != null) progressCallback.accept(done, total);
+
+        try (FileChannel ch = FileChannel.open(pending.zipPath(), StandardOpenOption.READ)) {
+            for (int part = 0; part < partCount; part++) {
+                if (acked.contains(part)) continue;
+                byte[] data = readPart(ch, (long) part * partSize, partLength(part, partSize, total));
+                String checksum = sha256Hex(data);
+                final int index = part;
+                final long base = done;
+                final String sessionId = session.sessionId();
+                withRetry("part " + part, progressCallback, () -> {
+                    putPart(sessionId, index, data, checksum, sent -> {
+                        if (progressCallback != null) progressCallback.accept(base + sent, total);
+                    }, progressCallback);
+                    return null;
+                });
+                done += data.length;
+                if (progressCallback != null) progressCallback.accept(done, total);
+            }
+        }
+
+        String sessionId = session.sessionId();
+        JsonObject result = withRetry("complete", progressCallback, () -> complete(sessionId, progressCallback));
+        discard(session);
+        return result;
+    }
+
+    private String createSession(PendingUpload pending, int partCount, BiConsumer<Long, Long> progressCallback)
+            throws IOException, InterruptedException {
+        JsonObject body = new JsonObject();
+        body.addProperty("worldName", pending.worldName());
+        body.addProperty("fileName", pending.worldName() + ".zip");
+        body.addProperty("totalSize", pending.zipSize());
+        body.addProperty("partSize", pending.partSize());
+        body.addProperty("partCount", partCount);
+        HttpRequest req = request("")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        HttpResponse<String> resp = network.send(req, HttpResponse.BodyHandlers.ofString(), progressCallback);
+        int status = resp.statusCode();
+        if (status == 404 || status == 405 || status == 501)
+            throw new UnsupportedOperationException("Server does not support chunked uploads");
+        checkStatus(status, resp.body());
+        JsonObject json = JsonParser.parseString(resp.body()).getAsJsonObject();
+        if (!json.has("sessionId"))
+            throw new IOException("Upload session response has no sessionId");
+        return json.get("sessionId").getAsString();
+    }
+
+    private Set<Integer> fetchAckedParts(String sessionId, BiConsumer<Long, Long> progressCallback) throws IOException, InterruptedException {
+        HttpRequest req = request("/" + sessionId).GET().build();
+        HttpResponse<String> resp = network.send(req, HttpResponse.BodyHandlers.ofString(), progressCallback);
+        if (resp.statusCode() == 404 || resp.statusCode() == 410)
+            return null;
+        checkStatus(resp.statusCode(), resp.body());
+        Set<Integer> parts = new HashSet<>();
+        JsonObject json = JsonParser.parseString(resp.body()).getAsJsonObject();
+        if (json.has("receivedParts") && json.get("receivedParts").isJsonArray()) {
+            for (JsonElement e : json.getAsJsonArray("receivedParts")) parts.add(e.getAsInt());
+        }
+        return parts;
+    }
+
+    private void putPart(String sessionId, int index, byte[] data, String checksum,
+            java.util.function.LongConsumer sentCallback, BiConsumer<Long, Long> progressCallback) throws IOException, InterruptedException {
+        List<byte[]> slices = new ArrayList<>();
+        for (int off = 0; off < data.length; off += SLICE_SIZE) {
+            slices.add(Arrays.copyOfRange(data, off, Math.min(data.length, off + SLICE_SIZE)));
+        }
+        Iterable<byte[]> reporting = () -> new Iterator<>() {
+            private final Iterator<byte[]> it = slices.iterator();
+            private long sent = 0L;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public byte[] next() {
+                byte[] slice = it.next();
+                try {
+                    BandwidthLimiter.shared().acquire(slice.length);
+                } catch (InterruptedIOException e) {
+                    throw new CancellationException(e.getMessage());
+                }
+                sent += slice.length;
+                sentCallback.accept(sent);
+                return slice;
+            }
+        };
+        HttpRequest req = request("/" + sessionId + "/parts/" + index)
+                .header("Content-Type", "application/octet-stream")
+                .header("X-Part-Sha256", checksum)
+                .timeout(PART_TIMEOUT)
+                .PUT(HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofByteArrays(reporting),
+                        data.length))
+                .build();
+        HttpResponse<String> resp = network.send(req, HttpResponse.BodyHandlers.ofString(), progressCallback);
+        if (resp.statusCode() == 422)
+            throw new HttpStatusException(422, "part " + index + " checksum mismatch", true);
+        checkStatus(resp.statusCode(), resp.body());
+    }
+
+    private JsonObject complete(String sessionId, BiConsumer<Long, Long> progressCallback) throws IOException, InterruptedException {
+        HttpRequest req = request("/" + sessionId + "/complete")
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> resp = network.send(req, HttpResponse.BodyHandlers.ofString(), progressCallback);
+        checkStatus(resp.statusCode(), resp.body());
+        String body = resp.body();
+        if (body == null || body.isBlank()) {
+            JsonObject result = new JsonObject();
+            result.addProperty("status", "success");
+            return result;
+        }
+        return JsonParser.parseString(body).getAsJsonObject();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(network.uploadBaseUrl() + NetworkManager.API_BASE_PATH + "/upload/sessions" + path))
+                .header(NetworkManager.API_KEY_HEADER, network.getApiKey())
+                .header("Accept", "application/json");
+    }
+
+    static void checkStatus(int status, String body) throws IOException {
+        if (status < 400)
+            return;
+        if (status == 401 || status == 403)
+            throw new IllegalStateException("Authentication failed: Please check your API key.");
+        throw new HttpStatusException(status, body, status == 408 || status == 429 || status >= 500);
+    }
+
+    interface Call<T> {
+        T run() throws IOException, InterruptedException;
+    }
+
+    /** Runs {@code call}, retrying transport failures and retryable statuses; a non-retryable status is rethrown
+     *  as is, and retries are counted against the job behind {@code progress}. The base backoff can be lowered
+     *  with the {@code savemanager.retryBackoffMs} system property. */
+    static <T> T withRetry(String what, BiConsumer<Long, Long> progress, Call<T> call) throws IOException {
+        long baseBackoff = Long.getLong("savemanager.retryBackoffMs", BASE_BACKOFF_MS);
+        IOException last = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            try {
+                return call.run();
+            } catch (IOException e) {
+                if (NetworkManager.isCancellation(e))
+                    throw new CancellationException("Transfer cancelled");
+                if (e instanceof HttpStatusException status && !status.retryable)
+                    throw e;
+                last = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Upload interrupted");
+            }
+            if (attempt == MAX_ATTEMPTS - 1)
+                break;
+            TransferMetrics.retried(progress);
+            long backoff = Math.min(MAX_BACKOFF_MS, baseBackoff << attempt);
+            backoff += ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Upload interrupted");
+            }
+        }
+        throw new IOException(what + " failed after " + MAX_ATTEMPTS + " attempts: " + last.getMessage(), last);
+    }
+
+    private static int partLength(int part, int partSize, long total) {
+        return (int) Math.min(partSize, total - (long) part * partSize);
+    }
+
+    private static byte[] readPart(FileChannel ch, long offset, int length) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(length);
+        while (bb.hasRemaining()) {
+            if (ch.read(bb, offset + bb.position()) < 0)
+                throw new EOFException("Archive shrank while uploading");
+        }
+        return bb.array();
+    }
+
+    static String sha256Hex(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized void remember(PendingUpload pending) {
+        Map<String, PendingUpload> state = loadState();
+        state.put(pending.worldName(), pending);
+        saveState(state);
+    }
+
+    private Map<String, PendingUpload> loadState() {
+        Map<String, PendingUpload> state = new LinkedHashMap<>();
+        if (!stateFile.exists())
+            return state;
+        try (FileReader r = new FileReader(stateFile)) {
+            JsonObject root = new Gson().fromJson(r, JsonObject.class);
+            if (root == null || !root.has("uploads"))
+                return state;
+            for (var entry : root.getAsJsonObject("uploads").entrySet()) {
+                JsonObject o = entry.getValue().getAsJsonObject();
+                state.put(entry.getKey(), new PendingUpload(entry.getKey(), o.get("sessionId").getAsString(),
+                        Path.of(o.get("zipPath").getAsString()), o.get("zipSize").getAsLong(),
+                        o.get("zipModified").getAsLong(), o.get("partSize").getAsInt()));
+            }
+        } catch (Exception ignored) {
+        }
+        return state;
+    }
+
+    private void saveState(Map<String, PendingUpload> state) {
+        try {
+            stateFile.getParentFile().mkdirs();
+            JsonObject uploads = new JsonObject();
+            state.forEach((name, p) -> {
+                JsonObject o = new JsonObject();
+                o.addProperty("sessionId", p.sessionId());
+                o.addProperty("zipPath", p.zipPath().toString());
+                o.addProperty("zipSize", p.zipSize());
+                o.addProperty("zipModified", p.zipModified());
+                o.addProperty("partSize", p.partSize());
+                uploads.add(name, o);
+            });
+            JsonObject root = new JsonObject();
+            root.add("uploads", uploads);
+            try (FileWriter w = new FileWriter(stateFile)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(root, w);
+            }
+        } catch (Exception ignored) {
+        }
+    }
+
+    static final class HttpStatusException extends IOException {
+        final int status;
+        final boolean retryable;
+
+        HttpStatusException(int status, String body, boolean retryable) {
+            super("HTTP " + status + (body == null || body.isBlank() ? "" : ": " + body));
+            this.status = status;
+            this.retryable = retryable;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.choculaterie.network;
+
+/** One save in the cloud list, as decoded by {@link CloudSaveReader}. Missing text fields are empty strings. */
+public final class CloudSave {
+    public String id, worldName, createdAt, updatedAt;
+    public long fileSizeBytes;
+}
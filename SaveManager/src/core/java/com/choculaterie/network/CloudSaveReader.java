@@ -0,0 +1,110 @@
+package com.choculaterie.network;
+
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes a {@code /list} body straight into {@link CloudSave}s with a {@link JsonReader}, so no
+ * {@code JsonObject} tree is built for the response. The server has used several shapes over time; the save
+ * array is taken from the first of {@link #LIST_KEYS} present at the top level, then from a {@code result}
+ * object, then from the first top-level array of any name. Each save field likewise accepts a few names, the
+ * earlier ones winning.
+ */
+public final class CloudSaveReader {
+    private static final String[] LIST_KEYS = { "saves", "items", "data", "list", "worlds" };
+    private static final String[] ID_KEYS = { "id", "saveId", "guid" };
+    private static final String[] NAME_KEYS = { "worldName", "name", "world", "title" };
+    private static final String[] SIZE_KEYS = { "sizeBytes", "fileSizeBytes", "fileSize", "size", "bytes" };
+    private static final String[] CREATED_KEYS = { "createdAt", "created", "created_on" };
+    private static final String[] UPDATED_KEYS = { "updatedAt", "updated", "updated_on", "lastModified" };
+    private static final int RESULT_RANK = LIST_KEYS.length;
+    private static final int ANY_ARRAY_RANK = RESULT_RANK * 2;
+
+    private List<CloudSave> best = null;
+    private int bestRank = Integer.MAX_VALUE;
+
+    private CloudSaveReader() {
+    }
+
+    public static List<CloudSave> read(InputStream in) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        reader.setStrictness(Strictness.LENIENT);
+        if (reader.peek() != JsonToken.BEGIN_OBJECT)
+            throw new IllegalStateException("Expected a JSON object but was " + reader.peek());
+        CloudSaveReader state = new CloudSaveReader();
+        state.readContainer(reader, true);
+        return state.best != null ? state.best : new ArrayList<>();
+    }
+
+    private void readContainer(JsonReader r, boolean topLevel) throws IOException {
+        r.beginObject();
+        while (r.hasNext()) {
+            String name = r.nextName();
+            JsonToken token = r.peek();
+            int key = indexOf(LIST_KEYS, name);
+            int rank = key >= 0 ? (topLevel ? key : RESULT_RANK + key) : topLevel ? ANY_ARRAY_RANK : -1;
+            if (token == JsonToken.BEGIN_ARRAY && rank >= 0 && rank < bestRank) {
+                best = readSaves(r);
+                bestRank = rank;
+            } else if (topLevel && token == JsonToken.BEGIN_OBJECT && name.equals("result") && bestRank > RESULT_RANK) {
+                readContainer(r, false);
+            } else {
+                r.skipValue();
+            }
+        }
+        r.endObject();
+    }
+
+    private static List<CloudSave> readSaves(JsonReader r) throws IOException {
+        List<CloudSave> saves = new ArrayList<>();
+        r.beginArray();
+        while (r.hasNext()) {
+            if (r.peek() == JsonToken.BEGIN_OBJECT) saves.add(readSave(r));
+            else r.skipValue();
+        }
+        r.endArray();
+        return saves;
+    }
+
+    private static CloudSave readSave(JsonReader r) throws IOException {
+        CloudSave s = new CloudSave();
+        s.id = s.worldName = s.createdAt = s.updatedAt = "";
+        int idRank = Integer.MAX_VALUE, nameRank = Integer.MAX_VALUE, sizeRank = Integer.MAX_VALUE;
+        int createdRank = Integer.MAX_VALUE, updatedRank = Integer.MAX_VALUE;
+        r.beginObject();
+        while (r.hasNext()) {
+            String name = r.nextName();
+            JsonToken token = r.peek();
+            int k;
+            if (token == JsonToken.STRING && (k = indexOf(ID_KEYS, name)) >= 0 && k < idRank) {
+                s.id = r.nextString(); idRank = k;
+            } else if (token == JsonToken.STRING && (k = indexOf(NAME_KEYS, name)) >= 0 && k < nameRank) {
+                s.worldName = r.nextString(); nameRank = k;
+            } else if (token == JsonToken.STRING && (k = indexOf(CREATED_KEYS, name)) >= 0 && k < createdRank) {
+                s.createdAt = r.nextString(); createdRank = k;
+            } else if (token == JsonToken.STRING && (k = indexOf(UPDATED_KEYS, name)) >= 0 && k < updatedRank) {
+                s.updatedAt = r.nextString(); updatedRank = k;
+            } else if (token == JsonToken.NUMBER && (k = indexOf(SIZE_KEYS, name)) >= 0 && k < sizeRank) {
+                s.fileSizeBytes = new BigDecimal(r.nextString()).longValue(); sizeRank = k;
+            } else {
+                r.skipValue();
+            }
+        }
+        r.endObject();
+        return s;
+    }
+
+    private static int indexOf(String[] keys, String name) {
+        for (int i = 0; i < keys.length; i++) if (keys[i].equals(name)) return i;
+        return -1;
+    }
+}
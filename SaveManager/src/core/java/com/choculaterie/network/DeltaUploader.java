@@ -0,0 +1,410 @@
+package com.choculaterie.network;
+
+import com.choculaterie.util.ContentChunker;
+import com.choculaterie.util.RegionFileChunker;
+import com.choculaterie.util.SaveManagerEvents;
+import com.google.gson.*;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Uploads a world as content-addressed chunks. Files are split with {@link ContentChunker}; chunk lists are
+ * reused for files whose size and mtime match the last upload, only chunks the server lacks are sent (batched),
+ * and a manifest describing every file as a list of chunks is committed last. Each chunk is listed as
+ * [hash, offset, length(, timestamp)]; a file is rebuilt by writing its chunks at their offsets into a zero-filled
+ * file of the recorded size, which lets region files skip sector padding.
+ * <p>
+ * The state file records what the server acknowledged in the last committed manifest, chunk lists included.
+ * It is deliberately separate from {@link com.choculaterie.util.WatchManager#getManifest}: that manifest only has
+ * size and mtime, exists only for watched worlds, and is rebaselined by downloads, dismissals and other events
+ * that do not put anything on the server.
+ */
+public class DeltaUploader {
+    private static final int BATCH_SIZE = 8 * 1024 * 1024;
+    private static final int BATCH_CHUNKS = 64;
+    private static final int MISSING_QUERY_SIZE = 4096;
+    private static final Duration BATCH_TIMEOUT = Duration.ofMinutes(2);
+    private static final String LOCK_FILE = "session.lock";
+
+    private final NetworkManager network;
+    private final File stateFile;
+    private final Set<String> sentThisSession = ConcurrentHashMap.newKeySet();
+
+    record FileEntry(String path, long size, long mtime, List<ContentChunker.Chunk> chunks) {
+    }
+
+    public DeltaUploader(NetworkManager network, File stateFile) {
+        this.network = network;
+        this.stateFile = stateFile;
+    }
+
+    /** The result of scanning a world: its file list and the chunks the server does not have yet. */
+    public static final class Plan {
+        final String worldName;
+        final Path worldDir;
+        final List<FileEntry> files;
+        final Map<String, ContentChunker.Chunk> chunks;
+        final Map<String, Path> sources;
+        final List<String> toSend;
+
+        Plan(String worldName, Path worldDir, List<FileEntry> files, Map<String, ContentChunker.Chunk> chunks,
+                Map<String, Path> sources, List<String> toSend) {
+            this.worldName = worldName;
+            this.worldDir = worldDir;
+            this.files = files;
+            this.chunks = chunks;
+            this.sources = sources;
+            this.toSend = toSend;
+        }
+
+        public long bytesToSend() {
+            long total = 0L;
+            for (String h : toSend) total += chunks.get(h).length();
+            return total;
+        }
+    }
+
+    public CompletableFuture<JsonObject> upload(String worldName, Path worldDir, BiConsumer<Long, Long> progressCallback) {
+        network.validateApiKey();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return send(prepare(worldName, worldDir), progressCallback);
+            } catch (UnsupportedException e) {
+                throw new CompletionException(e);
+            } catch (IOException e) {
+                throw new RuntimeException("Upload failed: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /** Chunks the world and asks the server which chunks it lacks. Blocking; throws {@link UnsupportedException}
+     *  when the server does not answer the delta probe properly. */
+    public Plan prepare(String worldName, Path worldDir) throws IOException {
+        probe();
+
+        Map<String, Map<String, FileEntry>> state = loadState();
+        Map<String, FileEntry> previous = state.getOrDefault(worldName, Map.of());
+        Set<String> known = new HashSet<>();
+        for (Map<String, FileEntry> world : state.values())
+            for (FileEntry f : world.values())
+                for (ContentChunker.Chunk c : f.chunks()) known.add(c.hash());
+
+        SaveManagerEvents.Scan event = new SaveManagerEvents.Scan();
+        event.begin();
+        List<FileEntry> files = scan(worldDir, previous);
+        if (event.shouldCommit())
+            event.finish("delta", worldDir, files.size(), files.stream().mapToLong(FileEntry::size).sum(), false);
+
+        Map<String, ContentChunker.Chunk> candidates = new LinkedHashMap<>();
+        Map<String, Path> sources = new HashMap<>();
+        for (FileEntry f : files) {
+            for (ContentChunker.Chunk c : f.chunks()) {
+                if (known.contains(c.hash()) || candidates.containsKey(c.hash())) continue;
+                candidates.put(c.hash(), c);
+                sources.put(c.hash(), worldDir.resolve(f.path()));
+            }
+        }
+        List<String> toSend = new ArrayList<>();
+        List<String> hashes = new ArrayList<>(candidates.keySet());
+        for (int i = 0; i < hashes.size(); i += MISSING_QUERY_SIZE) {
+            List<String> slice = hashes.subList(i, Math.min(hashes.size(), i + MISSING_QUERY_SIZE));
+            toSend.addAll(ChunkedUploader.withRetry("missing chunks", null, () -> missing(slice, null)));
+        }
+        return new Plan(worldName, worldDir, files, candidates, sources, toSend);
+    }
+
+    /** Sends the chunks a {@link #prepare} found missing and commits the manifest. Blocking. */
+    public JsonObject send(Plan plan, BiConsumer<Long, Long> progressCallback) throws IOException {
+        String worldName = plan.worldName;
+        List<FileEntry> files = plan.files;
+        List<String> toSend = new ArrayList<>(plan.toSend);
+        toSend.removeIf(sentThisSession::contains);
+        sendChunks(toSend, plan.chunks, plan.sources, progressCallback);
+
+        JsonObject result;
+        try {
+            result = ChunkedUploader.withRetry("manifest", progressCallback, () -> commit(worldName, files, progressCallback));
+        } catch (MissingChunksException e) {
+            Map<String, ContentChunker.Chunk> all = new HashMap<>();
+            Map<String, Path> allSources = new HashMap<>();
+            for (FileEntry f : files) {
+                for (ContentChunker.Chunk c : f.chunks()) {
+                    all.putIfAbsent(c.hash(), c);
+                    allSources.putIfAbsent(c.hash(), plan.worldDir.resolve(f.path()));
+                }
+            }
+            List<String> retry = new ArrayList<>(e.missing);
+            retry.removeIf(h -> !all.containsKey(h));
+            sendChunks(retry, all, allSources, progressCallback);
+            result = ChunkedUploader.withRetry("manifest", progressCallback, () -> commit(worldName, files, progressCallback));
+        }
+
+        Map<String, FileEntry> uploaded = new LinkedHashMap<>();
+        for (FileEntry f : files) uploaded.put(f.path(), f);
+        synchronized (this) {
+            Map<String, Map<String, FileEntry>> state = loadState();
+            state.put(worldName, uploaded);
+            saveState(state);
+        }
+        return result;
+    }
+
+    private static List<FileEntry> scan(Path worldDir, Map<String, FileEntry> previous) throws IOException {
+        List<FileEntry> files = new ArrayList<>();
+        Files.walkFileTree(worldDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (LOCK_FILE.equalsIgnoreCase(file.getFileName().toString())) return FileVisitResult.CONTINUE;
+                String rel = worldDir.relativize(file).toString().replace('\\', '/');
+                long size = attrs.size(), mtime = attrs.lastModifiedTime().toMillis();
+                FileEntry prev = previous.get(rel);
+                if (prev != null && prev.size() == size && prev.mtime() == mtime) {
+                    files.add(prev);
+                } else if (RegionFileChunker.isRegionFile(file)) {
+                    files.add(new FileEntry(rel, size, mtime, RegionFileChunker.split(file)));
+                } else {
+                    files.add(new FileEntry(rel, size, mtime, ContentChunker.split(file)));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    private void sendChunks(List<String> hashes, Map<String, ContentChunker.Chunk> chunks, Map<String, Path> sources,
+            BiConsumer<Long, Long> progressCallback) throws IOException {
+        long total = 0L;
+        for (String h : hashes) total += chunks.get(h).length();
+        long done = 0L;
+        if (progressCallback != null) progressCallback.accept(done, total);
+
+        List<String> batch = new ArrayList<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (int i = 0; i < hashes.size(); i++) {
+            String h = hashes.get(i);
+            ContentChunker.Chunk c = chunks.get(h);
+            byte[] data = readChunk(sources.get(h), c);
+            body.write(data, 0, data.length);
+            batch.add(h);
+            boolean last = i == hashes.size() - 1;
+            if (last || body.size() >= BATCH_SIZE || batch.size() >= BATCH_CHUNKS) {
+                byte[] payload = body.toByteArray();
+                List<String> sent = List.copyOf(batch);
+                List<Integer> lengths = new ArrayList<>();
+                for (String s : sent) lengths.add(chunks.get(s).length());
+                ChunkedUploader.withRetry("chunk batch", progressCallback, () -> {
+                    putBatch(sent, lengths, payload, progressCallback);
+                    return null;
+                });
+                sentThisSession.addAll(sent);
+                done += payload.length;
+                if (progressCallback != null) progressCallback.accept(done, total);
+                batch.clear();
+                body.reset();
+            }
+        }
+    }
+
+    private static byte[] readChunk(Path file, ContentChunker.Chunk c) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(c.length());
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (bb.hasRemaining()) {
+                if (ch.read(bb, c.offset() + bb.position()) < 0)
+                    throw new IOException("World changed during upload: " + file.getFileName());
+            }
+        }
+        if (!ContentChunker.hash(bb.array(), 0, c.length()).equals(c.hash()))
+            throw new IOException("World changed during upload: " + file.getFileName());
+        return bb.array();
+    }
+
+    /** Queries an empty hash list. Any failure other than a cancel means the delta endpoints cannot be relied on,
+     *  so it is not retried: the caller falls back to an archive upload instead. */
+    private void probe() throws IOException {
+        try {
+            missing(List.of(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Upload interrupted");
+        } catch (IOException | RuntimeException e) {
+            if (NetworkManager.isCancellation(e))
+                throw new CancellationException("Transfer cancelled");
+            boolean missingEndpoint = e instanceof ChunkedUploader.HttpStatusException s
+                    && (s.status == 404 || s.status == 405 || s.status == 501);
+            throw new UnsupportedException(e, missingEndpoint);
+        }
+    }
+
+    private List<String> missing(List<String> hashes, BiConsumer<Long, Long> progressCallback)
+            throws IOException, InterruptedException {
+        JsonObject body = new JsonObject();
+        JsonArray arr = new JsonArray();
+        hashes.forEach(arr::add);
+        body.add("hashes", arr);
+        HttpRequest req = request("/chunks/missing")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        HttpResponse<String> resp = network.send(req, HttpResponse.BodyHandlers.ofString(), progressCallback);
+        ChunkedUploader.checkStatus(resp.statusCode(), resp.body());
+        return hashList(JsonParser.parseString(resp.body()).getAsJsonObject());
+    }
+
+    private void putBatch(List<String> hashes, List<Integer> lengths, byte[] payload,
+            BiConsumer<Long, Long> progressCallback) throws IOException, InterruptedException {
+        HttpRequest req = request("/chunks")
+                .header("Content-Type", "application/octet-stream")
+                .header("X-Chunk-Hashes", String.join(",", hashes))
+                .header("X-Chunk-Lengths", lengths.stream().map(String::valueOf).reduce((a, b) -> a + "," + b).orElse(""))
+                .timeout(BATCH_TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.fromPublisher(
+                        HttpRequest.BodyPublishers.ofByteArrays(BandwidthLimiter.shared().slices(payload)), payload.length))
+                .build();
+        HttpResponse<String> resp = network.send(req, HttpResponse.BodyHandlers.ofString(), progressCallback);
+        ChunkedUploader.checkStatus(resp.statusCode(), resp.body());
+    }
+
+    private JsonObject commit(String worldName, List<FileEntry> files, BiConsumer<Long, Long> progressCallback)
+            throws IOException, InterruptedException {
+        JsonObject body = new JsonObject();
+        body.addProperty("worldName", worldName);
+        JsonArray arr = new JsonArray();
+        for (FileEntry f : files) arr.add(fileJson(f));
+        body.add("files", arr);
+        HttpRequest req = request("/manifests")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        HttpResponse<String> resp = network.send(req, HttpResponse.BodyHandlers.ofString(), progressCallback);
+        if (resp.statusCode() == 409) {
+            List<String> missing = hashList(JsonParser.parseString(resp.body()).getAsJsonObject());
+            if (!missing.isEmpty())
+                throw new MissingChunksException(missing);
+        }
+        ChunkedUploader.checkStatus(resp.statusCode(), resp.body());
+        String text = resp.body();
+        if (text == null || text.isBlank()) {
+            JsonObject result = new JsonObject();
+            result.addProperty("status", "success");
+            return result;
+        }
+        return JsonParser.parseString(text).getAsJsonObject();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(network.uploadBaseUrl() + NetworkManager.API_BASE_PATH + "/delta" + path))
+                .header(NetworkManager.API_KEY_HEADER, network.getApiKey())
+                .header("Accept", "application/json");
+    }
+
+    private static List<String> hashList(JsonObject json) {
+        List<String> out = new ArrayList<>();
+        if (json.has("missing") && json.get("missing").isJsonArray()) {
+            for (JsonElement e : json.getAsJsonArray("missing")) out.add(e.getAsString());
+        }
+        return out;
+    }
+
+    private static JsonObject fileJson(FileEntry f) {
+        JsonObject o = new JsonObject();
+        o.addProperty("path", f.path());
+        o.addProperty("size", f.size());
+        o.addProperty("mtime", f.mtime());
+        JsonArray chunks = new JsonArray();
+        for (ContentChunker.Chunk c : f.chunks()) {
+            JsonArray a = new JsonArray();
+            a.add(c.hash());
+            a.add(c.offset());
+            a.add(c.length());
+            if (c.stamp() != 0L) a.add(c.stamp());
+            chunks.add(a);
+        }
+        o.add("chunks", chunks);
+        return o;
+    }
+
+    private static FileEntry fileFromJson(JsonObject o) {
+        List<ContentChunker.Chunk> chunks = new ArrayList<>();
+        for (JsonElement e : o.getAsJsonArray("chunks")) {
+            JsonArray a = e.getAsJsonArray();
+            chunks.add(new ContentChunker.Chunk(a.get(0).getAsString(), a.get(1).getAsLong(), a.get(2).getAsInt(),
+                    a.size() > 3 ? a.get(3).getAsLong() : 0L));
+        }
+        return new FileEntry(o.get("path").getAsString(), o.get("size").getAsLong(), o.get("mtime").getAsLong(), chunks);
+    }
+
+    private synchronized Map<String, Map<String, FileEntry>> loadState() {
+        Map<String, Map<String, FileEntry>> state = new LinkedHashMap<>();
+        if (!stateFile.exists())
+            return state;
+        try (FileReader r = new FileReader(stateFile)) {
+            JsonObject root = new Gson().fromJson(r, JsonObject.class);
+            if (root == null || !root.has("worlds"))
+                return state;
+            for (var world : root.getAsJsonObject("worlds").entrySet()) {
+                Map<String, FileEntry> files = new LinkedHashMap<>();
+                for (JsonElement e : world.getValue().getAsJsonArray()) {
+                    FileEntry f = fileFromJson(e.getAsJsonObject());
+                    files.put(f.path(), f);
+                }
+                state.put(world.getKey(), files);
+            }
+        } catch (Exception ignored) {
+            state.clear();
+        }
+        return state;
+    }
+
+    private synchronized void saveState(Map<String, Map<String, FileEntry>> state) {
+        try {
+            stateFile.getParentFile().mkdirs();
+            JsonObject worlds = new JsonObject();
+            state.forEach((name, files) -> {
+                JsonArray arr = new JsonArray();
+                files.values().forEach(f -> arr.add(fileJson(f)));
+                worlds.add(name, arr);
+            });
+            JsonObject root = new JsonObject();
+            root.add("worlds", worlds);
+            try (FileWriter w = new FileWriter(stateFile)) {
+                new Gson().toJson(root, w);
+            }
+        } catch (Exception ignored) {
+        }
+    }
+
+    private static final class MissingChunksException extends RuntimeException {
+        final List<String> missing;
+
+        MissingChunksException(List<String> missing) {
+            super("Server is missing " + missing.size() + " chunks");
+            this.missing = missing;
+        }
+    }
+
+    /** Thrown by {@link #prepare} when the server cannot take delta uploads. {@code endpointMissing} is set when
+     *  the server plainly has no delta endpoints, as opposed to the probe failing for some other reason. */
+    static final class UnsupportedException extends IOException {
+        final boolean endpointMissing;
+
+        UnsupportedException(Throwable cause, boolean endpointMissing) {
+            super("Server does not support delta uploads: " + cause.getMessage(), cause);
+            this.endpointMissing = endpointMissing;
+        }
+    }
+}
@@ -0,0 +1,901 @@
+package com.choculaterie.network;
+
+import com.choculaterie.util.SaveManagerEvents;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+
+public class NetworkManager {
+    private static final String DEFAULT_BASE_URL = "https://api.choculaterie.com";
+    static final String API_BASE_PATH = "/api/SaveManagerAPI";
+    private static final String DEFAULT_UPLOAD_BASE_URL = "https://upload.choculaterie.com";
+    static final String API_KEY_HEADER = "X-Save-Key";
+    private static final String CRLF = "\r\n";
+    private static final int PIPE_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final int STREAM_CHUNK_SIZE = 64 * 1024;
+
+    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final String uploadBaseUrl;
+    private String apiKey;
+    private int downloadConnections = 4;
+
+    public interface BodyWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    public interface BodyReader {
+        void readFrom(InputStream in) throws IOException;
+    }
+
+    /**
+     * A progress callback that can also abort the request it reports on, so cancelling a transfer closes its
+     * socket instead of waiting for the next progress report or a read timeout.
+     */
+    public interface CancellableProgress extends BiConsumer<Long, Long> {
+        /** Runs {@code abort} on cancellation, or at once if already cancelled; the result unregisters it. */
+        Runnable onCancel(Runnable abort);
+
+        boolean isCancelled();
+
+        /** Counts one retried request against the transfer. */
+        default void retried() {
+        }
+    }
+
+    /**
+     * Answer to a conditional GET. On a 304 Not Modified {@code json} is {@code null} and the validators are the
+     * ones that were sent; it is also {@code null} when the body was streamed to a {@link BodyReader}.
+     */
+    public record Revalidated(JsonObject json, String etag, String lastModified, boolean notModified) {
+    }
+
+    /** Uses the production API unless the {@code savemanager.apiUrl} / {@code savemanager.uploadUrl} system
+     *  properties point elsewhere. */
+    public NetworkManager() {
+        this(System.getProperty("savemanager.apiUrl", DEFAULT_BASE_URL),
+                System.getProperty("savemanager.uploadUrl", DEFAULT_UPLOAD_BASE_URL));
+    }
+
+    public NetworkManager(String baseUrl, String uploadBaseUrl) {
+        this.httpClient = HTTP_CLIENT;
+        this.baseUrl = stripTrailingSlash(baseUrl);
+        this.uploadBaseUrl = stripTrailingSlash(uploadBaseUrl);
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    public void setApiKey(String apiKey) {
+        this.apiKey = apiKey;
+    }
+
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    HttpClient httpClient() {
+        return httpClient;
+    }
+
+    String uploadBaseUrl() {
+        return uploadBaseUrl;
+    }
+
+    public CompletableFuture<JsonObject> initiateOAuthFlow(String clientName) {
+        String body = "\"" + (clientName != null ? clientName : "SaveManager Mod") + "\"";
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + API_BASE_PATH + "/flow/initiate"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return httpClient.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .thenApply(this::handleJsonResponse);
+    }
+
+    public CompletableFuture<JsonObject> getOAuthFlowStatus(String flowId) {
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + API_BASE_PATH + "/flow/status/" + flowId))
+                .GET()
+                .build();
+        return httpClient.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .thenApply(this::handleJsonResponse);
+    }
+
+    public String getOAuthAuthorizeUrl(String flowId) {
+        return "https://choculaterie.com/save-manager/authorize/" + flowId;
+    }
+
+    public CompletableFuture<JsonObject> cancelOAuthFlow(String flowId) {
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + API_BASE_PATH + "/flow/cancel/" + flowId))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        return httpClient.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .thenApply(this::handleJsonResponse);
+    }
+
+    public CompletableFuture<JsonObject> getQuotaInfo() {
+        validateApiKey();
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + API_BASE_PATH + "/quota-info"))
+                .header(API_KEY_HEADER, apiKey)
+                .GET()
+                .build();
+        return httpClient.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .thenApply(this::handleJsonResponse);
+    }
+
+    /** {@link #getQuotaInfo()} sent with {@code If-None-Match} / {@code If-Modified-Since} when validators are known. */
+    public CompletableFuture<Revalidated> getQuotaInfo(String etag, String lastModified) {
+        return conditionalGet("/quota-info", etag, lastModified);
+    }
+
+    /**
+     * Conditional {@code /list} whose body is handed to {@code bodyReader} as it arrives rather than parsed into a
+     * {@link JsonObject}, so large lists can be decoded record by record. The reader is not called on a 304.
+     */
+    public CompletableFuture<Revalidated> listWorldSaves(String etag, String lastModified, BodyReader bodyReader) {
+        validateApiKey();
+        return httpClient.sendAsync(conditionalRequest("/list", etag, lastModified),
+                        HttpResponse.BodyHandlers.ofInputStream())
+                .thenCompose(response -> CompletableFuture.supplyAsync(() -> {
+                    try (InputStream body = response.body()) {
+                        int status = response.statusCode();
+                        if (status == 304) return revalidated(response, null, etag, lastModified);
+                        if (status >= 400) {
+                            String err = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                            throw new RuntimeException("Request failed: " + status + " - " + err);
+                        }
+                        BufferedInputStream in = new BufferedInputStream(body);
+                        in.mark(16);
+                        String head = new String(in.readNBytes(9), StandardCharsets.UTF_8);
+                        in.reset();
+                        if (response.headers().firstValue("Content-Type").map(ct -> ct.contains("text/html")).orElse(false)
+                                || head.startsWith("<!DOCTYPE")) {
+                            throw new RuntimeException("Unexpected HTML response from server.");
+                        }
+                        bodyReader.readFrom(in);
+                        return revalidated(response, null, null, null);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }));
+    }
+
+    private CompletableFuture<Revalidated> conditionalGet(String path, String etag, String lastModified) {
+        validateApiKey();
+        return httpClient.sendAsync(conditionalRequest(path, etag, lastModified), HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> response.statusCode() == 304
+                        ? revalidated(response, null, etag, lastModified)
+                        : revalidated(response, handleJsonResponse(response), null, null));
+    }
+
+    private HttpRequest conditionalRequest(String path, String etag, String lastModified) {
+        HttpRequest.Builder req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + API_BASE_PATH + path))
+                .header(API_KEY_HEADER, apiKey)
+                .GET();
+        if (etag != null) req.header("If-None-Match", etag);
+        if (lastModified != null) req.header("If-Modified-Since", lastModified);
+        return req.build();
+    }
+
+    /** Validators of {@code response}, falling back to the ones that were sent when it omits them. */
+    private static Revalidated revalidated(HttpResponse<?> response, JsonObject json, String etag, String lastModified) {
+        return new Revalidated(json, response.headers().firstValue("ETag").orElse(etag),
+                response.headers().firstValue("Last-Modified").orElse(lastModified), response.statusCode() == 304);
+    }
+
+    public CompletableFuture<JsonObject> listWorldSaves() {
+        validateApiKey();
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + API_BASE_PATH + "/list"))
+                .header(API_KEY_HEADER, apiKey)
+                .GET()
+                .build();
+        return httpClient.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .thenApply(this::handleJsonResponse);
+    }
+
+    public CompletableFuture<JsonObject> uploadWorldSave(String worldName, Path zipFilePath,
+            BiConsumer<Long, Long> progressCallback) throws IOException {
+        validateApiKey();
+
+        String safeWorldName = (worldName == null || worldName.isBlank()) ? "world" : worldName;
+        String boundary = "----savemanager-" + UUID.randomUUID();
+
+        long fileSize = Files.size(zipFilePath);
+        byte[] preamble = multipartPreamble(boundary, safeWorldName);
+        byte[] closing = multipartClosing(boundary);
+        long contentLength = preamble.length + fileSize + closing.length;
+
+        return CompletableFuture.supplyAsync(() -> {
+            SaveManagerEvents.Upload event = new SaveManagerEvents.Upload();
+            event.begin();
+            HttpURLConnection conn = null;
+            Runnable release = () -> {};
+            try {
+                conn = openUploadConnection(boundary);
+                release = onCancel(progressCallback, conn::disconnect);
+                conn.setFixedLengthStreamingMode(contentLength);
+
+                try (OutputStream rawOut = conn.getOutputStream();
+                        BufferedOutputStream out = new BufferedOutputStream(rawOut, 128 * 1024);
+                        InputStream in = Files.newInputStream(zipFilePath)) {
+
+                    out.write(preamble);
+
+                    byte[] buf = new byte[128 * 1024];
+                    long sentFileBytes = 0L;
+                    if (progressCallback != null)
+                        progressCallback.accept(0L, fileSize);
+
+                    BandwidthLimiter limiter = BandwidthLimiter.shared();
+                    int r;
+                    while ((r = in.read(buf)) != -1) {
+                        limiter.acquire(r);
+                        long writeStart = System.nanoTime();
+                        out.write(buf, 0, r);
+                        limiter.recordWrite(r, System.nanoTime() - writeStart);
+                        sentFileBytes += r;
+                        if (progressCallback != null)
+                            progressCallback.accept(sentFileBytes, fileSize);
+                        if (sentFileBytes % (1024 * 1024) == 0)
+                            out.flush();
+                    }
+
+                    out.write(closing);
+                    out.flush();
+
+                    if (progressCallback != null)
+                        progressCallback.accept(fileSize, fileSize);
+                }
+
+                JsonObject response = readUploadResponse(conn);
+                event.bytes = contentLength;
+                event.succeeded = true;
+                return response;
+            } catch (IOException ioEx) {
+                checkAborted(progressCallback);
+                throw uploadFailure(conn, ioEx);
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("Upload failed: " + e.getMessage(), e);
+            } finally {
+                release.run();
+                event.worldName = safeWorldName;
+                event.commit();
+                if (conn != null) {
+                    try {
+                        conn.disconnect();
+                    } catch (Throwable ignored) {
+                    }
+                }
+            }
+        });
+    }
+
+    public CompletableFuture<JsonObject> uploadWorldSaveStreaming(String worldName, BodyWriter bodyWriter,
+            BiConsumer<Long, Long> progressCallback) throws IOException {
+        validateApiKey();
+
+        String safeWorldName = (worldName == null || worldName.isBlank()) ? "world" : worldName;
+        String boundary = "----savemanager-" + UUID.randomUUID();
+        byte[] preamble = multipartPreamble(boundary, safeWorldName);
+        byte[] closing = multipartClosing(boundary);
+
+        PipedInputStream pipeIn = new PipedInputStream(PIPE_BUFFER_SIZE);
+        PipedOutputStream pipeOut = new PipedOutputStream(pipeIn);
+
+        return CompletableFuture.supplyAsync(() -> {
+            SaveManagerEvents.Upload event = new SaveManagerEvents.Upload();
+            event.begin();
+            HttpURLConnection conn = null;
+            Throwable[] producerError = { null };
+            Thread producer = new Thread(() -> {
+                try (pipeOut) {
+                    bodyWriter.writeTo(pipeOut);
+                } catch (Throwable t) {
+                    producerError[0] = t;
+                }
+            }, "SaveManager-zip");
+            Runnable release = () -> {};
+            try {
+                conn = openUploadConnection(boundary);
+                release = onCancel(progressCallback, conn::disconnect);
+                conn.setChunkedStreamingMode(STREAM_CHUNK_SIZE);
+                producer.start();
+
+                OutputStream out = new BufferedOutputStream(conn.getOutputStream(), 128 * 1024);
+                out.write(preamble);
+                byte[] buf = new byte[128 * 1024];
+                long sent = 0L;
+                if (progressCallback != null)
+                    progressCallback.accept(0L, -1L);
+                BandwidthLimiter limiter = BandwidthLimiter.shared();
+                try (pipeIn) {
+                    int r;
+                    while ((r = pipeIn.read(buf)) != -1) {
+                        limiter.acquire(r);
+                        long writeStart = System.nanoTime();
+                        out.write(buf, 0, r);
+                        limiter.recordWrite(r, System.nanoTime() - writeStart);
+                        sent += r;
+                        event.bytes = sent;
+                        if (progressCallback != null)
+                            progressCallback.accept(sent, -1L);
+                    }
+                }
+                producer.join();
+                if (producerError[0] != null) {
+                    // Drop the connection instead of closing the stream so the server never sees a complete body.
+                    conn.disconnect();
+                    throw new IOException("Archiving failed: " + producerError[0].getMessage(), producerError[0]);
+                }
+                out.write(closing);
+                out.close();
+
+                if (progressCallback != null)
+                    progressCallback.accept(sent, sent);
+                if (lengthRequired(conn))
+                    throw new UnsupportedOperationException("Server does not accept streamed uploads");
+                JsonObject response = readUploadResponse(conn);
+                event.succeeded = true;
+                return response;
+            } catch (UnsupportedOperationException | CancellationException e) {
+                throw e;
+            } catch (IOException ioEx) {
+                checkAborted(progressCallback);
+                if (producerError[0] == null && lengthRequired(conn))
+                    throw new UnsupportedOperationException("Server does not accept streamed uploads", ioEx);
+                throw uploadFailure(conn, ioEx);
+            } catch (Exception e) {
+                throw new RuntimeException("Upload failed: " + e.getMessage(), e);
+            } finally {
+                release.run();
+                event.worldName = safeWorldName;
+                event.streamed = true;
+                event.commit();
+                try {
+                    pipeIn.close();
+                } catch (IOException ignored) {
+                }
+                if (conn != null) {
+                    try {
+                        conn.disconnect();
+                    } catch (Throwable ignored) {
+                    }
+                }
+            }
+        });
+    }
+
+    private HttpURLConnection openUploadConnection(String boundary) throws IOException {
+        URL url = new URL(uploadBaseUrl + API_BASE_PATH + "/upload");
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setDoOutput(true);
+        conn.setDoInput(true);
+        conn.setRequestMethod("POST");
+        conn.setRequestProperty(API_KEY_HEADER, apiKey);
+        conn.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+        conn.setRequestProperty("Accept", "application/json");
+        conn.setRequestProperty("Connection", "keep-alive");
+        conn.setRequestProperty("User-Agent", "SaveManager/1.0");
+        conn.setConnectTimeout(30_000);
+        conn.setReadTimeout(600_000);
+        return conn;
+    }
+
+    private static byte[] multipartPreamble(String boundary, String safeWorldName) {
+        String partWorldName = "--" + boundary + CRLF +
+                "Content-Disposition: form-data; name=\"WorldName\"" + CRLF + CRLF +
+                safeWorldName + CRLF;
+
+        String partFileHeader = "--" + boundary + CRLF +
+                "Content-Disposition: form-data; name=\"SaveFile\"; filename=\"" + safeWorldName + ".zip\"" + CRLF +
+                "Content-Type: application/zip" + CRLF + CRLF;
+
+        return (partWorldName + partFileHeader).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] multipartClosing(String boundary) {
+        return (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private JsonObject readUploadResponse(HttpURLConnection conn) throws IOException {
+        int status = conn.getResponseCode();
+        InputStream respStream = (status >= 400) ? conn.getErrorStream() : conn.getInputStream();
+        String body = "";
+        if (respStream != null) {
+            try (respStream) {
+                body = new String(respStream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+
+        if (status >= 400) {
+            String errorMsg;
+            if (status == 413) {
+                errorMsg = "File too large: Server's reverse proxy is blocking uploads.";
+            } else if (status == 401 || status == 403) {
+                errorMsg = "Authentication failed: Please check your API key.";
+            } else if (status == 429) {
+                errorMsg = "Rate limit exceeded. Please try again later.";
+            } else {
+                String cleanBody = body.replaceAll("<[^>]+>", "").trim();
+                if (cleanBody.length() > 200)
+                    cleanBody = cleanBody.substring(0, 200) + "...";
+                errorMsg = "HTTP " + status + (cleanBody.isEmpty() ? "" : ": " + cleanBody);
+            }
+            throw new RuntimeException(errorMsg);
+        }
+
+        if (body.isBlank()) {
+            JsonObject result = new JsonObject();
+            result.addProperty("status", "success");
+            return result;
+        }
+
+        try {
+            return JsonParser.parseString(body).getAsJsonObject();
+        } catch (Exception parseEx) {
+            JsonObject obj = new JsonObject();
+            obj.addProperty("raw", body);
+            obj.addProperty("status", "success");
+            return obj;
+        }
+    }
+
+    private static boolean lengthRequired(HttpURLConnection conn) {
+        try {
+            return conn != null && conn.getResponseCode() == 411;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static RuntimeException uploadFailure(HttpURLConnection conn, IOException ioEx) {
+        String errorDetails = "IO Error: " + ioEx.getMessage();
+        if (conn != null) {
+            try {
+                int status = conn.getResponseCode();
+                InputStream errStream = conn.getErrorStream();
+                if (errStream != null) {
+                    String errBody = new String(errStream.readAllBytes(), StandardCharsets.UTF_8);
+                    errorDetails = "HTTP " + status + ": " + errBody;
+                }
+            } catch (Exception ignored) {
+            }
+        }
+        return new RuntimeException("Upload failed: " + errorDetails, ioEx);
+    }
+
+    public CompletableFuture<java.util.List<String>> listWorldSaveNames() {
+        validateApiKey();
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + API_BASE_PATH + "/names"))
+                .header(API_KEY_HEADER, apiKey)
+                .GET()
+                .build();
+
+        return httpClient.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() >= 400) {
+                        throw new RuntimeException(
+                                "Request failed: " + response.statusCode() + " - " + response.body());
+                    }
+                    String body = response.body();
+                    java.util.Optional<String> ct = response.headers().firstValue("Content-Type");
+                    if (ct.map(s -> s.contains("text/html")).orElse(false) || body.startsWith("<!DOCTYPE")) {
+                        throw new RuntimeException("Unexpected HTML response from server.");
+                    }
+                    com.google.gson.JsonArray arr = com.google.gson.JsonParser.parseString(body).getAsJsonArray();
+                    java.util.List<String> out = new java.util.ArrayList<>();
+                    for (com.google.gson.JsonElement e : arr) {
+                        if (e != null && e.isJsonPrimitive())
+                            out.add(e.getAsString());
+                    }
+                    return out;
+                });
+    }
+
+    public CompletableFuture<Path> downloadWorldSave(String saveId, Path destinationDirectory,
+            BiConsumer<Long, Long> progressCallback) {
+        validateApiKey();
+        HttpRequest.Builder template = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + API_BASE_PATH + "/download/" + saveId))
+                .header(API_KEY_HEADER, apiKey)
+                .header("Accept-Encoding", "identity")
+                .GET();
+        if (downloadConnections <= 1)
+            return downloadSingleStream(saveId, template.build(), destinationDirectory, progressCallback);
+
+        // Ask for the first range only; a 206 proves the server honours ranges and tells us the total size.
+        HttpRequest probe = template.copy()
+                .header("Range", "bytes=0-" + (RangedDownloader.CHUNK_SIZE - 1))
+                .build();
+        return sendAsync(probe, HttpResponse.BodyHandlers.ofInputStream(), progressCallback)
+                .thenCompose(response -> {
+                    long total = RangedDownloader.totalFromContentRange(response);
+                    if (response.statusCode() == 206 && total > 0) {
+                        return CompletableFuture.supplyAsync(() -> downloadRanged(saveId, response, template, total,
+                                destinationDirectory, progressCallback))
+                                .exceptionallyCompose(ex -> isCancellation(ex)
+                                        ? CompletableFuture.failedFuture(ex)
+                                        : downloadSingleStream(saveId, template.build(), destinationDirectory,
+                                                progressCallback));
+                    }
+                    if (response.statusCode() == 206 || response.statusCode() == 416) {
+                        try {
+                            response.body().close();
+                        } catch (IOException ignored) {
+                        }
+                        return downloadSingleStream(saveId, template.build(), destinationDirectory, progressCallback);
+                    }
+                    return CompletableFuture.supplyAsync(
+                            () -> saveResponseBody(saveId, response, destinationDirectory, progressCallback));
+                });
+    }
+
+    /**
+     * Streams the save archive straight into {@code bodyReader} without touching disk. The reader is only
+     * invoked once the server has answered successfully.
+     */
+    public CompletableFuture<Void> downloadWorldSaveStreaming(String saveId, BodyReader bodyReader,
+            BiConsumer<Long, Long> progressCallback) {
+        validateApiKey();
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + API_BASE_PATH + "/download/" + saveId))
+                .header(API_KEY_HEADER, apiKey)
+                .header("Accept-Encoding", "identity")
+                .GET()
+                .build();
+        return sendAsync(req, HttpResponse.BodyHandlers.ofInputStream(), progressCallback)
+                .thenCompose(response -> CompletableFuture.runAsync(() -> {
+                    int status = response.statusCode();
+                    if (status >= 400) {
+                        try (InputStream err = response.body()) {
+                            String body = new String(err.readAllBytes(), StandardCharsets.UTF_8);
+                            throw new RuntimeException("Request failed: " + status + " - " + body);
+                        } catch (IOException e) {
+                            throw new RuntimeException("Request failed: " + status, e);
+                        }
+                    }
+                    long total = firstLongHeader(response, "Content-Length", "X-Content-Length", "X-File-Size",
+                            "X-Total-Length").orElse(-1L);
+                    SaveManagerEvents.Download event = new SaveManagerEvents.Download();
+                    event.begin();
+                    ProgressInputStream in = new ProgressInputStream(response.body(), total, progressCallback);
+                    Runnable release = onCancel(progressCallback, () -> closeQuietly(response.body()));
+                    try (in) {
+                        bodyReader.readFrom(in);
+                        event.succeeded = true;
+                    } catch (IOException e) {
+                        checkAborted(progressCallback);
+                        throw new RuntimeException(e);
+                    } finally {
+                        release.run();
+                        commitDownload(event, saveId, "streamed", 1, in.read);
+                    }
+                }));
+    }
+
+    private static final class ProgressInputStream extends FilterInputStream {
+        private final long total;
+        private final BiConsumer<Long, Long> progressCallback;
+        private long read;
+
+        ProgressInputStream(InputStream in, long total, BiConsumer<Long, Long> progressCallback) {
+            super(in);
+            this.total = total;
+            this.progressCallback = progressCallback;
+            report();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                read++;
+                report();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                BandwidthLimiter.shared().acquire(n);
+                read += n;
+                report();
+            }
+            return n;
+        }
+
+        private void report() {
+            NetworkManager.report(progressCallback, read, total);
+        }
+    }
+
+    public void setDownloadConnections(int connections) {
+        this.downloadConnections = Math.max(1, connections);
+    }
+
+    int downloadConnections() {
+        return downloadConnections;
+    }
+
+    private CompletableFuture<Path> downloadSingleStream(String saveId, HttpRequest req, Path destinationDirectory,
+            BiConsumer<Long, Long> progressCallback) {
+        return sendAsync(req, HttpResponse.BodyHandlers.ofInputStream(), progressCallback)
+                .thenCompose(response -> CompletableFuture.supplyAsync(
+                        () -> saveResponseBody(saveId, response, destinationDirectory, progressCallback)));
+    }
+
+    private Path downloadRanged(String saveId, HttpResponse<InputStream> first, HttpRequest.Builder template,
+            long total, Path destinationDirectory, BiConsumer<Long, Long> progressCallback) {
+        SaveManagerEvents.Download event = new SaveManagerEvents.Download();
+        event.begin();
+        report(progressCallback, 0L, total);
+        String fileName = extractFileNameFromResponse(first);
+        Path temp = null;
+        try {
+            Files.createDirectories(destinationDirectory);
+            temp = Files.createTempFile(destinationDirectory, "download-", ".tmp");
+            new RangedDownloader(this, template, downloadConnections).download(first, temp, total, progressCallback);
+            Path saved = moveDownloaded(temp, destinationDirectory.resolve(fileName), total, progressCallback);
+            event.succeeded = true;
+            return saved;
+        } catch (IOException | RuntimeException e) {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+            if (e instanceof IOException) checkAborted(progressCallback);
+            throw e instanceof RuntimeException re ? re : new RuntimeException(e);
+        } finally {
+            commitDownload(event, saveId, "ranged", downloadConnections, event.succeeded ? total : 0L);
+        }
+    }
+
+    private Path saveResponseBody(String saveId, HttpResponse<InputStream> response, Path destinationDirectory,
+            BiConsumer<Long, Long> progressCallback) {
+        int status = response.statusCode();
+        if (status >= 400) {
+            try (InputStream err = response.body()) {
+                String body = new String(err.readAllBytes(), StandardCharsets.UTF_8);
+                throw new RuntimeException("Request failed: " + status + " - " + body);
+            } catch (IOException e) {
+                throw new RuntimeException("Request failed: " + status, e);
+            }
+        }
+
+        long total = firstLongHeader(response, "Content-Length", "X-Content-Length", "X-File-Size",
+                "X-Total-Length").orElse(-1L);
+        report(progressCallback, 0L, total);
+
+        String fileName = extractFileNameFromResponse(response);
+        SaveManagerEvents.Download event = new SaveManagerEvents.Download();
+        event.begin();
+        long downloaded = 0L;
+        Path temp = null;
+        Runnable release = onCancel(progressCallback, () -> closeQuietly(response.body()));
+        try {
+            Files.createDirectories(destinationDirectory);
+            temp = Files.createTempFile(destinationDirectory, "download-", ".tmp");
+
+            try (InputStream in = response.body();
+                    OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[256 * 1024];
+                int read;
+                BandwidthLimiter limiter = BandwidthLimiter.shared();
+                while ((read = in.read(buffer)) != -1) {
+                    limiter.acquire(read);
+                    out.write(buffer, 0, read);
+                    downloaded += read;
+                    report(progressCallback, downloaded, total);
+                }
+                out.flush();
+            }
+
+            Path saved = moveDownloaded(temp, destinationDirectory.resolve(fileName), total, progressCallback);
+            event.succeeded = true;
+            return saved;
+        } catch (IOException | RuntimeException e) {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+            if (e instanceof IOException) checkAborted(progressCallback);
+            throw e instanceof RuntimeException re ? re : new RuntimeException(e);
+        } finally {
+            release.run();
+            commitDownload(event, saveId, "single", 1, downloaded);
+        }
+    }
+
+    private static void commitDownload(SaveManagerEvents.Download event, String saveId, String mode, int connections,
+            long bytes) {
+        if (!event.shouldCommit()) return;
+        event.saveId = saveId;
+        event.mode = mode;
+        event.connections = connections;
+        event.bytes = bytes;
+        event.commit();
+    }
+
+    private static Path moveDownloaded(Path temp, Path finalPath, long total, BiConsumer<Long, Long> progressCallback)
+            throws IOException {
+        try {
+            Files.move(temp, finalPath, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            Files.move(temp, finalPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        long finalSize = Files.size(finalPath);
+        report(progressCallback, finalSize, (total > 0) ? total : finalSize);
+        return finalPath;
+    }
+
+    /** Forwards progress, swallowing callback errors except a cancellation, which aborts the transfer. */
+    static void report(BiConsumer<Long, Long> progressCallback, long done, long total) {
+        if (progressCallback == null)
+            return;
+        try {
+            progressCallback.accept(done, total);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Throwable ignored) {
+        }
+    }
+
+    static boolean isCancellation(Throwable t) {
+        for (; t != null; t = t.getCause())
+            if (t instanceof CancellationException)
+                return true;
+        return false;
+    }
+
+    // ── Cancellation ──
+
+    /** Registers {@code abort} with {@code progress} if it is a {@link CancellableProgress}; returns the unregister. */
+    static Runnable onCancel(BiConsumer<Long, Long> progress, Runnable abort) {
+        return progress instanceof CancellableProgress c ? c.onCancel(abort) : () -> {};
+    }
+
+    /** Throws a {@link CancellationException} if the transfer behind {@code progress} was cancelled, so that the
+     *  I/O error an abort causes is not mistaken for a network failure and retried. */
+    static void checkAborted(BiConsumer<Long, Long> progress) {
+        if (progress instanceof CancellableProgress c && c.isCancelled())
+            throw new CancellationException("Transfer cancelled");
+    }
+
+    /** Blocking send that a cancel registered through {@code progress} aborts mid-flight. */
+    <T> HttpResponse<T> send(HttpRequest req, HttpResponse.BodyHandler<T> handler, BiConsumer<Long, Long> progress)
+            throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<T>> future = sendAsync(req, handler, progress);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            checkAborted(progress);
+            if (e.getCause() instanceof IOException io)
+                throw io;
+            if (e.getCause() instanceof RuntimeException re)
+                throw re;
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest req, HttpResponse.BodyHandler<T> handler,
+            BiConsumer<Long, Long> progress) {
+        CompletableFuture<HttpResponse<T>> future = httpClient.sendAsync(req, handler);
+        Runnable release = onCancel(progress, () -> future.cancel(true));
+        future.whenComplete((r, e) -> release.run());
+        return future;
+    }
+
+    static void closeQuietly(Closeable c) {
+        try {
+            c.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    public CompletableFuture<JsonObject> deleteWorldSave(String saveId) {
+        validateApiKey();
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + API_BASE_PATH + "/delete/" + saveId))
+                .header(API_KEY_HEADER, apiKey)
+                .DELETE()
+                .build();
+        return httpClient.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .thenApply(this::handleJsonResponse);
+    }
+
+    private String extractFileNameFromResponse(HttpResponse<?> response) {
+        String def = "world_save.zip";
+        return response.headers()
+                .firstValue("Content-Disposition")
+                .map(header -> {
+                    String lower = header.toLowerCase(java.util.Locale.ROOT);
+                    int idx = lower.indexOf("filename=");
+                    if (idx >= 0) {
+                        String raw = header.substring(idx + 9).trim();
+                        if (raw.startsWith("\"")) {
+                            int end = raw.indexOf('"', 1);
+                            if (end > 1)
+                                return raw.substring(1, end);
+                        }
+                        int semi = raw.indexOf(';');
+                        String v = (semi >= 0 ? raw.substring(0, semi) : raw).replace("\"", "").trim();
+                        if (!v.isEmpty())
+                            return v;
+                    }
+                    return def;
+                }).orElse(def);
+    }
+
+    private Optional<Long> firstLongHeader(HttpResponse<?> response, String... names) {
+        for (String n : names) {
+            Optional<String> v = response.headers().firstValue(n);
+            if (v.isPresent()) {
+                try {
+                    return Optional.of(Long.parseLong(v.get().trim()));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    void validateApiKey() {
+        if (apiKey == null || apiKey.isEmpty()) {
+            throw new IllegalStateException("API key is not set");
+        }
+    }
+
+    private JsonObject handleJsonResponse(HttpResponse<String> response) {
+        if (response.statusCode() >= 400) {
+            throw new RuntimeException("Request failed: " + response.statusCode() + " - " + response.body());
+        }
+        Optional<String> ct = response.headers().firstValue("Content-Type");
+        String body = response.body();
+        if (ct.map(s -> s.contains("text/html")).orElse(false) || body.startsWith("<!DOCTYPE")) {
+            throw new RuntimeException("Unexpected HTML response from server.");
+        }
+        return JsonParser.parseString(body).getAsJsonObject();
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.choculaterie.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Downloads a file over several connections at once. The file is split into fixed-size ranges that worker
+ * threads pull in order and write into a preallocated file with positional writes; a failed range is retried
+ * from the last byte written.
+ */
+class RangedDownloader {
+    static final int CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final NetworkManager network;
+    private final HttpRequest.Builder template;
+    private final int connections;
+
+    RangedDownloader(NetworkManager network, HttpRequest.Builder template, int connections) {
+        this.network = network;
+        this.template = template;
+        this.connections = Math.max(1, connections);
+    }
+
+    static long totalFromContentRange(HttpResponse<?> response) {
+        Optional<String> range = response.headers().firstValue("Content-Range");
+        if (range.isEmpty())
+            return -1L;
+        int slash = range.get().lastIndexOf('/');
+        try {
+            return slash >= 0 ? Long.parseLong(range.get().substring(slash + 1).trim()) : -1L;
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    Path download(HttpResponse<InputStream> first, Path temp, long total, BiConsumer<Long, Long> progressCallback)
+            throws IOException {
+        AtomicLong downloaded = new AtomicLong();
+        AtomicLong nextOffset = new AtomicLong(Math.min(CHUNK_SIZE, total));
+        AtomicInteger idx = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(connections, r -> {
+            Thread t = new Thread(r, "SaveManager-download-" + idx.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            if (total > 0)
+                ch.write(ByteBuffer.allocate(1), total - 1);
+            BiConsumer<Long, Long> progress = progressCallback != null ? progressCallback : (a, b) -> {};
+
+            List<Future<Void>> workers = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                boolean usesFirst = i == 0;
+                workers.add(pool.submit(() -> {
+                    if (usesFirst) {
+                        long end = Math.min(CHUNK_SIZE, total);
+                        long written;
+                        try {
+                            written = copy(first.body(), ch, 0L, end, downloaded, total, progress);
+                        } catch (InterruptedIOException e) {
+                            throw e;
+                        } catch (IOException e) {
+                            NetworkManager.checkAborted(progress);
+                            // The probe body died before its first byte; fetch the range again like any other.
+                            TransferMetrics.retried(progress);
+                            written = 0L;
+                        }
+                        if (written < end)
+                            fetchRange(ch, written, end, downloaded, total, progress);
+                    }
+                    long off;
+                    while ((off = nextOffset.getAndAdd(CHUNK_SIZE)) < total) {
+                        fetchRange(ch, off, Math.min(off + CHUNK_SIZE, total), downloaded, total, progress);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> f : workers) {
+                try {
+                    f.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Download interrupted", e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException io)
+                        throw io;
+                    if (e.getCause() instanceof RuntimeException re)
+                        throw re;
+                    throw new IOException(e.getCause());
+                }
+            }
+            ch.force(false);
+        } finally {
+            pool.shutdownNow();
+            try {
+                first.body().close();
+            } catch (IOException ignored) {
+            }
+        }
+        return temp;
+    }
+
+    private void fetchRange(FileChannel ch, long start, long end, AtomicLong downloaded, long total,
+            BiConsumer<Long, Long> progress) throws IOException {
+        long pos = start;
+        IOException last = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && pos < end; attempt++) {
+            NetworkManager.checkAborted(progress);
+            if (attempt > 0) TransferMetrics.retried(progress);
+            HttpRequest req = template.copy()
+                    .header("Range", "bytes=" + pos + "-" + (end - 1))
+                    .build();
+            try {
+                HttpResponse<InputStream> resp = network.send(req, HttpResponse.BodyHandlers.ofInputStream(), progress);
+                if (resp.statusCode() != 206) {
+                    String body;
+                    try (InputStream in = resp.body()) {
+                        body = new String(in.readNBytes(512), StandardCharsets.UTF_8);
+                    }
+                    throw new IOException("Range request failed: " + resp.statusCode() + " - " + body);
+                }
+                pos += copy(resp.body(), ch, pos, end, downloaded, total, progress);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Download interrupted", e);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                NetworkManager.checkAborted(progress);
+                last = e;
+            }
+        }
+        if (pos < end)
+            throw last != null ? last : new IOException("Range " + start + "-" + end + " incomplete");
+    }
+
+    private static long copy(InputStream body, FileChannel ch, long start, long end, AtomicLong downloaded,
+            long total, BiConsumer<Long, Long> progress) throws IOException {
+        long pos = start;
+        byte[] buffer = new byte[256 * 1024];
+        BandwidthLimiter limiter = BandwidthLimiter.shared();
+        Runnable release = NetworkManager.onCancel(progress, () -> NetworkManager.closeQuietly(body));
+        try (InputStream in = body) {
+            int read;
+            while (pos < end && (read = in.read(buffer, 0, (int) Math.min(buffer.length, end - pos))) != -1) {
+                limiter.acquire(read);
+                ByteBuffer bb = ByteBuffer.wrap(buffer, 0, read);
+                while (bb.hasRemaining())
+                    ch.write(bb, pos + bb.position());
+                pos += read;
+                NetworkManager.report(progress, downloaded.addAndGet(read), total);
+            }
+        } catch (IOException e) {
+            if (pos == start)
+                throw e;
+        } finally {
+            release.run();
+        }
+        return pos - start;
+    }
+}
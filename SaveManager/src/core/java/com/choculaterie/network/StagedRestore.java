@@ -0,0 +1,177 @@
+package com.choculaterie.network;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Restores a world without ever leaving it half-written. Downloads are extracted into a staging folder, flushed
+ * to disk, and swapped in with two renames: the current world is moved aside, then the staged one moved into its
+ * place. The replaced copy is deleted afterwards on a low-priority thread, so overwriting a large world no longer
+ * blocks on a recursive delete, and a failed download leaves the existing world untouched.
+ *
+ * <p>Staging and replaced folders live under {@link #WORK_DIR} next to the target so the renames stay on one
+ * file system. {@link #recover} puts a replaced world back if the game stopped between the two renames.
+ */
+public final class StagedRestore {
+    private static final Logger LOGGER = LoggerFactory.getLogger("savemanager");
+    /** Hidden work folder inside the saves directory; world listings skip it. */
+    public static final String WORK_DIR = ".savemanager-restore";
+    private static final String STAGING = "staging";
+    private static final String REPLACED = "replaced";
+    private static final Set<Path> active = new HashSet<>();
+    private static final ExecutorService CLEANER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "SaveManager-restore-cleanup");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    interface Mover {
+        void move(Path from, Path to) throws IOException;
+    }
+
+    private StagedRestore() {
+    }
+
+    /** Creates an empty staging folder for a restore into {@code target}. */
+    public static synchronized Path stage(Path target) throws IOException {
+        Path work = Files.createDirectories(workDir(target));
+        Path staging = Files.createDirectory(work.resolve(entryName(STAGING, target)));
+        active.add(staging);
+        return staging;
+    }
+
+    /**
+     * Flushes {@code staging} to disk and swaps it in as {@code target}. If the second rename fails the replaced
+     * world is moved back before the error is rethrown.
+     */
+    public static void commit(Path staging, Path target) throws IOException {
+        commit(staging, target, StagedRestore::move);
+    }
+
+    /** {@link #commit} with the renames done by {@code mover}, so tests can make one fail. */
+    static void commit(Path staging, Path target, Mover mover) throws IOException {
+        sync(staging);
+        Path replaced = null;
+        synchronized (StagedRestore.class) {
+            if (Files.exists(target)) {
+                replaced = staging.resolveSibling(entryName(REPLACED, target));
+                mover.move(target, replaced);
+            }
+            try {
+                mover.move(staging, target);
+            } catch (IOException e) {
+                if (replaced != null) {
+                    try {
+                        mover.move(replaced, target);
+                        replaced = null;
+                    } catch (IOException undo) {
+                        e.addSuppressed(undo);
+                    }
+                }
+                throw e;
+            } finally {
+                active.remove(staging);
+            }
+            syncDirectory(target.toAbsolutePath().getParent());
+        }
+        if (replaced != null) deleteLater(replaced);
+    }
+
+    /** Drops a staging folder that will not be committed. */
+    public static synchronized void discard(Path staging) {
+        active.remove(staging);
+        deleteLater(staging);
+    }
+
+    /**
+     * Cleans up the work folder under {@code parent}: a replaced world whose original name is free again is moved
+     * back, since its swap never finished; anything else not in use is deleted in the background.
+     */
+    public static synchronized void recover(Path parent) {
+        Path work = parent.resolve(WORK_DIR);
+        if (!Files.isDirectory(work)) return;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(work)) {
+            for (Path p : ds) {
+                if (active.contains(p)) continue;
+                String[] parts = p.getFileName().toString().split("-", 3);
+                if (parts.length == 3 && parts[0].equals(REPLACED) && !Files.exists(parent.resolve(parts[2]))) {
+                    try {
+                        move(p, parent.resolve(parts[2]));
+                        LOGGER.info("Restored world '{}' left aside by an unfinished download", parts[2]);
+                        continue;
+                    } catch (IOException ignored) {
+                    }
+                }
+                deleteLater(p);
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static Path workDir(Path target) {
+        return target.toAbsolutePath().getParent().resolve(WORK_DIR);
+    }
+
+    private static String entryName(String kind, Path target) {
+        return kind + "-" + (System.nanoTime() & Long.MAX_VALUE) + "-" + target.getFileName();
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to);
+        }
+    }
+
+    private static void deleteLater(Path dir) {
+        CLEANER.execute(() -> TransferScheduler.deleteQuietly(dir));
+    }
+
+    /** Forces every file and directory under {@code root} to disk before it becomes visible as a world. */
+    private static void sync(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path f, BasicFileAttributes a) throws IOException {
+                try (FileChannel ch = FileChannel.open(f, StandardOpenOption.WRITE)) {
+                    ch.force(true);
+                } catch (AccessDeniedException ignored) {
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                if (e != null) throw e;
+                syncDirectory(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /** Directory entries can only be flushed on some platforms; elsewhere opening one fails and is skipped. */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+}
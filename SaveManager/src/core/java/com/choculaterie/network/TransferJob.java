@@ -0,0 +1,254 @@
+package com.choculaterie.network;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One queued or running transfer. The job owns its progress counters. Once cancelled, every progress report
+ * throws {@link CancellationException}, which unwinds the copy loop, and registered hooks run; the network layer
+ * registers hooks that close the in-flight socket, so a transfer stalled on a read or on the server unblocks at
+ * once. Registered partial files are deleted when the work settles. Work that completes despite a late cancel is
+ * reported as done.
+ */
+public final class TransferJob {
+    public enum Kind { UPLOAD, DOWNLOAD, LOCAL }
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    /** Phase shown once a request body is fully sent and the server has yet to answer. */
+    public static final String SERVER_PHASE = "Waiting for server...";
+
+    public interface Body {
+        CompletableFuture<?> start(TransferJob job) throws Exception;
+    }
+
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    private final long id = NEXT_ID.incrementAndGet();
+    private final Kind kind;
+    private final String label;
+    private final Set<String> subjects;
+    private final int priority;
+    private final Body body;
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+    private final List<Runnable> cancelHooks = new CopyOnWriteArrayList<>();
+    private final List<Path> partials = new CopyOnWriteArrayList<>();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile boolean cancelled;
+    private volatile String step;
+    private volatile String phase = "Queued";
+    private volatile boolean indeterminate = true;
+    private volatile long bytes, total = -1L, sent = -1L, extracted = -1L, lastBytes, lastTickNanos;
+    private volatile double speedBps;
+    private volatile long sourceBytes = -1L;
+
+    // Metrics, guarded by this
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private long startNanos, startedAtMillis, phaseStartNanos, wireBytes = -1L, extractedBytes = -1L;
+    private int retries;
+
+    TransferJob(Kind kind, String label, Set<String> subjects, int priority, Body body) {
+        this.kind = kind;
+        this.label = label;
+        this.subjects = subjects;
+        this.priority = priority;
+        this.body = body;
+    }
+
+    public long id() { return id; }
+    public Kind kind() { return kind; }
+    public String label() { return label; }
+    public Set<String> subjects() { return subjects; }
+    public int priority() { return priority; }
+    public Status status() { return status; }
+    public String step() { return step; }
+    public String phase() { return phase; }
+    public boolean isIndeterminate() { return indeterminate; }
+    public long bytes() { return bytes; }
+    public long total() { return total; }
+    public long sent() { return sent; }
+    public long extracted() { return extracted; }
+    public double speedBps() { return speedBps; }
+
+    /** The shared bandwidth limit currently applied to this job's socket I/O, or 0 when unlimited. */
+    public long rateLimitBps() {
+        return BandwidthLimiter.shared().effectiveRateBps();
+    }
+    public boolean isCancelled() { return cancelled; }
+
+    /** Completes with the body's result, or exceptionally with its error or a {@link CancellationException}. */
+    public CompletableFuture<Object> result() {
+        return result;
+    }
+
+    /** Sets a sub-label for jobs made of several steps, such as the world a batch sync is on. */
+    public void setStep(String step) {
+        this.step = step;
+    }
+
+    /** Uncompressed size of the world being transferred, used for the compression ratio in metrics. */
+    public void setSourceBytes(long sourceBytes) {
+        this.sourceBytes = sourceBytes;
+    }
+
+    /** Starts a new phase: counters reset and, unless {@code indeterminate}, a progress bar is shown. */
+    public void begin(String phase, boolean indeterminate) {
+        checkCancelled();
+        closePhase();
+        this.phase = phase;
+        this.indeterminate = indeterminate;
+        bytes = 0L; total = -1L; sent = -1L; extracted = -1L; lastBytes = 0L;
+        lastTickNanos = System.nanoTime(); speedBps = 0.0;
+    }
+
+    /** Switches to {@link #SERVER_PHASE} once, when the last byte of a request body has been sent. */
+    public void awaitServer() {
+        if (!isAwaitingServer()) begin(SERVER_PHASE, true);
+    }
+
+    public boolean isAwaitingServer() {
+        return SERVER_PHASE.equals(phase);
+    }
+
+    public void progress(long bytes, long total) {
+        checkCancelled();
+        indeterminate = false;
+        this.bytes = Math.max(0L, bytes);
+        if (total > 0) this.total = total;
+        updateSpeed();
+    }
+
+    public void setTotal(long total) {
+        if (total > 0) this.total = total;
+    }
+
+    public void setSent(long sent) {
+        checkCancelled();
+        this.sent = Math.max(0L, sent);
+    }
+
+    public void setExtracted(long extracted) {
+        checkCancelled();
+        this.extracted = Math.max(0L, extracted);
+    }
+
+    public void checkCancelled() {
+        if (cancelled) throw new CancellationException("Transfer cancelled");
+    }
+
+    /**
+     * Runs {@code hook} on cancellation, or immediately if the job is already cancelled. Returns a handle that
+     * unregisters it, for hooks that abort one request and must not outlive it.
+     */
+    public Runnable onCancel(Runnable hook) {
+        cancelHooks.add(hook);
+        if (cancelled) runHook(hook);
+        return () -> cancelHooks.remove(hook);
+    }
+
+    public void deleteOnCancel(Path path) {
+        partials.add(path);
+    }
+
+    private void updateSpeed() {
+        long now = System.nanoTime();
+        long dtNs = now - lastTickNanos;
+        long dBytes = bytes - lastBytes;
+        if (dtNs > 50_000_000L) {
+            double instBps = dBytes > 0 ? (dBytes * 1_000_000_000.0) / dtNs : 0.0;
+            speedBps = speedBps <= 0 ? instBps : (0.2 * instBps + 0.8 * speedBps);
+            lastTickNanos = now;
+            lastBytes = bytes;
+        }
+    }
+
+    CompletableFuture<?> start() throws Exception {
+        checkCancelled();
+        synchronized (this) {
+            startNanos = phaseStartNanos = System.nanoTime();
+            startedAtMillis = System.currentTimeMillis();
+        }
+        status = Status.RUNNING;
+        phase = "Preparing...";
+        return body.start(this);
+    }
+
+    boolean cancel() {
+        if (cancelled || status == Status.DONE || status == Status.FAILED) return false;
+        cancelled = true;
+        cancelHooks.forEach(TransferJob::runHook);
+        return true;
+    }
+
+    void finish(Object value, Throwable err) {
+        boolean started = status != Status.QUEUED;
+        if (err == null && !(cancelled && status == Status.QUEUED)) {
+            status = Status.DONE;
+            result.complete(value);
+        } else if (cancelled || NetworkManager.isCancellation(err)) {
+            status = Status.CANCELLED;
+            for (Path p : partials) TransferScheduler.deleteQuietly(p);
+            result.completeExceptionally(new CancellationException("Transfer cancelled"));
+        } else {
+            status = Status.FAILED;
+            result.completeExceptionally(err);
+        }
+        if (started) recordMetrics(err);
+    }
+
+    // ── Metrics ──
+
+    private synchronized void closePhase() {
+        if (phaseStartNanos == 0L) return;
+        long now = System.nanoTime();
+        String key = TransferMetrics.phaseKey(phase);
+        phaseNanos.merge(key, now - phaseStartNanos, Long::sum);
+        phaseStartNanos = now;
+        if (key.equals("upload") || key.equals("download")) {
+            long wire = sent >= 0 ? sent : bytes;
+            if (wire > 0) wireBytes = Math.max(0L, wireBytes) + wire;
+            if (extracted > 0) extractedBytes = Math.max(0L, extractedBytes) + extracted;
+        }
+    }
+
+    /** Counts one retried request of this job, reported through its progress handle. */
+    synchronized void retried() {
+        retries++;
+    }
+
+    private void recordMetrics(Throwable err) {
+        closePhase();
+        TransferMetrics.Operation op = new TransferMetrics.Operation();
+        long transferNanos;
+        synchronized (this) {
+            op.kind = kind.name();
+            op.label = label;
+            op.status = status.name();
+            op.startedAt = startedAtMillis;
+            op.durationMs = (System.nanoTime() - startNanos) / 1_000_000L;
+            phaseNanos.forEach((k, v) -> op.phasesMs.put(k, v / 1_000_000L));
+            op.sourceBytes = sourceBytes;
+            op.wireBytes = wireBytes;
+            op.extractedBytes = extractedBytes;
+            op.retries = retries;
+            transferNanos = phaseNanos.getOrDefault("upload", 0L) + phaseNanos.getOrDefault("download", 0L);
+        }
+        long rawBytes = kind == Kind.DOWNLOAD ? op.extractedBytes : op.sourceBytes;
+        if (rawBytes > 0 && op.wireBytes > 0) op.compressionRatio = (double) op.wireBytes / rawBytes;
+        if (transferNanos > 0 && op.wireBytes > 0) op.throughputBps = (long) (op.wireBytes * 1_000_000_000.0 / transferNanos);
+        if (status == Status.FAILED && err != null) op.error = String.valueOf(WorldTransfers.unwrap(err).getMessage());
+        TransferMetrics.record(op, kind, status == Status.FAILED);
+    }
+
+    private static void runHook(Runnable hook) {
+        try { hook.run(); } catch (Exception ignored) {}
+    }
+}
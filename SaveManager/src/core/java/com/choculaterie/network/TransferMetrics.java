@@ -0,0 +1,160 @@
+package com.choculaterie.network;
+
+import com.choculaterie.util.ConfigManager;
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+
+/**
+ * Records one {@link Operation} per finished transfer job: time spent in each phase, bytes on the wire and on
+ * disk, compression ratio, retries and throughput. Operations are kept in memory for the debug overlay,
+ * summed per job kind with a throughput histogram, and appended as JSON lines to a log in the config folder
+ * that rolls over to a single {@code .1} file once it grows past {@link #LOG_MAX_BYTES}.
+ */
+public final class TransferMetrics {
+    private static final String LOG_FILE = "save-manager-metrics.jsonl";
+    private static final long LOG_MAX_BYTES = 1024L * 1024L;
+    private static final int RECENT_LIMIT = 20;
+    /** Upper bounds of the throughput histogram buckets in bytes per second; the last bucket is open-ended. */
+    public static final long[] HISTOGRAM_BOUNDS_BPS = {
+            256L * 1024, 1024L * 1024, 4L * 1024 * 1024, 16L * 1024 * 1024, 64L * 1024 * 1024 };
+
+    private static final Gson GSON = new Gson();
+    private static final Deque<Operation> RECENT = new ArrayDeque<>();
+    private static final Map<TransferJob.Kind, Summary> SUMMARIES = new EnumMap<>(TransferJob.Kind.class);
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "SaveManager-metrics");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private TransferMetrics() {
+    }
+
+    /** A finished job as written to the log. Byte counts are -1 when the job had no such stage. */
+    public static final class Operation {
+        public String kind;
+        public String label;
+        public String status;
+        public long startedAt;
+        public long durationMs;
+        public Map<String, Long> phasesMs = new LinkedHashMap<>();
+        public long sourceBytes = -1L;
+        public long wireBytes = -1L;
+        public long extractedBytes = -1L;
+        public double compressionRatio;
+        public int retries;
+        public long throughputBps;
+        public String error;
+    }
+
+    public static final class Summary {
+        public int count;
+        public int failed;
+        public long wireBytes;
+        public int retries;
+        public final long[] histogram = new long[HISTOGRAM_BOUNDS_BPS.length + 1];
+        public final Map<String, Long> phasesMs = new LinkedHashMap<>();
+    }
+
+    /** Counts one retried request against the job behind {@code progress}; the summaries add up the job counts. */
+    static void retried(BiConsumer<Long, Long> progress) {
+        if (progress instanceof NetworkManager.CancellableProgress c)
+            c.retried();
+    }
+
+    /** Metric name of a UI phase label, e.g. {@code "Zipping..."} becomes {@code "zip"}. */
+    static String phaseKey(String phase) {
+        return switch (phase) {
+            case "Scanning world..." -> "scan";
+            case "Preparing..." -> "prepare";
+            case WorldTransfers.SNAPSHOT_PHASE -> "snapshot";
+            case "Zipping..." -> "zip";
+            case "Uploading...", "Uploading changes..." -> "upload";
+            case TransferJob.SERVER_PHASE -> "server";
+            case "Downloading..." -> "download";
+            case "Unzipping..." -> "unzip";
+            case WorldTransfers.COMMIT_PHASE -> "commit";
+            case "Deleting..." -> "delete";
+            case "Backing up..." -> "backup";
+            case "Restoring..." -> "restore";
+            case "Pruning..." -> "prune";
+            default -> phase.replace("...", "").trim().toLowerCase(Locale.ROOT);
+        };
+    }
+
+    static void record(Operation op, TransferJob.Kind kind, boolean failed) {
+        synchronized (TransferMetrics.class) {
+            RECENT.addFirst(op);
+            while (RECENT.size() > RECENT_LIMIT) RECENT.removeLast();
+            Summary s = SUMMARIES.computeIfAbsent(kind, k -> new Summary());
+            s.count++;
+            if (failed) s.failed++;
+            if (op.wireBytes > 0) s.wireBytes += op.wireBytes;
+            s.retries += op.retries;
+            if (op.throughputBps > 0) s.histogram[bucket(op.throughputBps)]++;
+            op.phasesMs.forEach((k, v) -> s.phasesMs.merge(k, v, Long::sum));
+        }
+        String line = GSON.toJson(op);
+        WRITER.execute(() -> append(line));
+    }
+
+    /** Most recent operations first. */
+    public static synchronized List<Operation> recent() {
+        return new ArrayList<>(RECENT);
+    }
+
+    /** Totals since the game started, per job kind. Returned copies are detached from the registry. */
+    public static synchronized Map<TransferJob.Kind, Summary> summaries() {
+        Map<TransferJob.Kind, Summary> out = new EnumMap<>(TransferJob.Kind.class);
+        SUMMARIES.forEach((kind, s) -> {
+            Summary copy = new Summary();
+            copy.count = s.count;
+            copy.failed = s.failed;
+            copy.wireBytes = s.wireBytes;
+            copy.retries = s.retries;
+            System.arraycopy(s.histogram, 0, copy.histogram, 0, s.histogram.length);
+            copy.phasesMs.putAll(s.phasesMs);
+            out.put(kind, copy);
+        });
+        return out;
+    }
+
+    private static int bucket(long bps) {
+        for (int i = 0; i < HISTOGRAM_BOUNDS_BPS.length; i++)
+            if (bps < HISTOGRAM_BOUNDS_BPS[i]) return i;
+        return HISTOGRAM_BOUNDS_BPS.length;
+    }
+
+    private static void append(String line) {
+        try {
+            File file = new File(ConfigManager.getConfigDir(), LOG_FILE);
+            File dir = file.getParentFile();
+            if (dir != null && !dir.exists()) dir.mkdirs();
+            if (file.length() > LOG_MAX_BYTES) {
+                File rolled = new File(dir, LOG_FILE + ".1");
+                rolled.delete();
+                file.renameTo(rolled);
+            }
+            try (Writer w = new FileWriter(file, true)) {
+                w.write(line);
+                w.write('\n');
+            }
+        } catch (IOException | RuntimeException ignored) {
+        }
+    }
+}
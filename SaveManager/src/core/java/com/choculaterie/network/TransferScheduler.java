@@ -0,0 +1,139 @@
+package com.choculaterie.network;
+
+import com.choculaterie.util.ConfigManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Process-wide queue for uploads, downloads and local file work. Jobs start in priority order (higher first,
+ * then submission order) while their kind is below its concurrency limit, and keep running after the screen
+ * that submitted them is closed.
+ */
+public final class TransferScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger("savemanager");
+    public static final int PRIORITY_BACKGROUND = 0;
+    public static final int PRIORITY_INTERACTIVE = 10;
+
+    private static final Comparator<TransferJob> ORDER = Comparator
+            .comparingInt(TransferJob::priority).reversed()
+            .thenComparingLong(TransferJob::id);
+    private static final PriorityQueue<TransferJob> QUEUE = new PriorityQueue<>(ORDER);
+    private static final List<TransferJob> RUNNING = new ArrayList<>();
+    private static final Map<TransferJob.Kind, Integer> ACTIVE = new EnumMap<>(TransferJob.Kind.class);
+
+    private TransferScheduler() {
+    }
+
+    public static TransferJob submit(TransferJob.Kind kind, String label, int priority, TransferJob.Body body) {
+        return submit(kind, label, Set.of(label), priority, body);
+    }
+
+    /** Submits a job that works on several worlds; {@code subjects} are the names {@link #isBusy} reports. */
+    public static TransferJob submit(TransferJob.Kind kind, String label, Set<String> subjects, int priority,
+            TransferJob.Body body) {
+        TransferJob job = new TransferJob(kind, label, Set.copyOf(subjects), priority, body);
+        synchronized (TransferScheduler.class) {
+            QUEUE.add(job);
+        }
+        pump();
+        return job;
+    }
+
+    /** Running jobs first, then queued jobs in the order they will start. */
+    public static synchronized List<TransferJob> jobs() {
+        List<TransferJob> out = new ArrayList<>(RUNNING);
+        List<TransferJob> queued = new ArrayList<>(QUEUE);
+        queued.sort(ORDER);
+        out.addAll(queued);
+        return out;
+    }
+
+    /** The job to show in the UI: the earliest running job, else the next queued one. */
+    public static synchronized TransferJob current() {
+        if (!RUNNING.isEmpty()) return RUNNING.get(0);
+        return QUEUE.peek();
+    }
+
+    /** Whether a queued or running job works on {@code subject}. */
+    public static synchronized boolean isBusy(String subject) {
+        for (TransferJob j : RUNNING) if (j.subjects().contains(subject)) return true;
+        for (TransferJob j : QUEUE) if (j.subjects().contains(subject)) return true;
+        return false;
+    }
+
+    public static void cancel(TransferJob job) {
+        boolean dequeued;
+        synchronized (TransferScheduler.class) {
+            dequeued = QUEUE.remove(job);
+        }
+        job.cancel();
+        if (dequeued) job.finish(null, null);
+    }
+
+    private static void pump() {
+        List<TransferJob> starting = new ArrayList<>();
+        synchronized (TransferScheduler.class) {
+            List<TransferJob> deferred = new ArrayList<>();
+            while (!QUEUE.isEmpty()) {
+                TransferJob job = QUEUE.poll();
+                int active = ACTIVE.getOrDefault(job.kind(), 0);
+                if (active >= limit(job.kind())) {
+                    deferred.add(job);
+                    continue;
+                }
+                ACTIVE.put(job.kind(), active + 1);
+                RUNNING.add(job);
+                starting.add(job);
+            }
+            QUEUE.addAll(deferred);
+        }
+        for (TransferJob job : starting) start(job);
+    }
+
+    private static void start(TransferJob job) {
+        CompletableFuture<?> work;
+        try {
+            work = job.start();
+        } catch (Throwable t) {
+            work = CompletableFuture.failedFuture(t);
+        }
+        if (work == null) work = CompletableFuture.completedFuture(null);
+        work.whenComplete((value, err) -> {
+            synchronized (TransferScheduler.class) {
+                RUNNING.remove(job);
+                ACTIVE.merge(job.kind(), -1, Integer::sum);
+            }
+            if (err != null && !job.isCancelled() && !NetworkManager.isCancellation(err))
+                LOGGER.debug("Transfer '{}' failed", job.label(), err);
+            job.finish(value, err);
+            pump();
+        });
+    }
+
+    private static int limit(TransferJob.Kind kind) {
+        return switch (kind) {
+            case UPLOAD -> Math.max(1, ConfigManager.getInt(ConfigManager.MAX_UPLOADS, 1));
+            case DOWNLOAD -> Math.max(1, ConfigManager.getInt(ConfigManager.MAX_DOWNLOADS, 2));
+            case LOCAL -> 1;
+        };
+    }
+
+    static void deleteQuietly(Path path) {
+        try {
+            if (Files.isDirectory(path)) WorldTransfers.deleteDirectoryRecursively(path);
+            else Files.deleteIfExists(path);
+        } catch (Exception ignored) {
+        }
+    }
+}
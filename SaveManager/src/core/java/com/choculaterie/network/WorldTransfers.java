@@ -0,0 +1,625 @@
+package com.choculaterie.network;
+
+import com.choculaterie.util.CompressionPolicy;
+import com.choculaterie.util.ConfigManager;
+import com.choculaterie.util.LocalBackupStore;
+import com.choculaterie.util.WatchManager;
+import com.choculaterie.util.WorldArchiver;
+import com.choculaterie.util.WorldExtractor;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+import java.util.zip.ZipException;
+
+/**
+ * Upload and download pipelines run as {@link TransferJob} bodies. Each pipeline picks the best transport the
+ * settings and server allow and falls back to the simpler one when the server rejects it, reporting progress and
+ * honouring cancellation through the job.
+ */
+public final class WorldTransfers {
+    private static final Logger LOGGER = LoggerFactory.getLogger("savemanager");
+    private static final long CHUNKED_UPLOAD_THRESHOLD = 256L * 1024 * 1024;
+    // Above this, parallel ranged connections beat overlapping the unzip with a single stream.
+    private static final long RANGED_DOWNLOAD_THRESHOLD = 256L * 1024 * 1024;
+    private static final int SYNC_PREPARE_THREADS = 1;
+    private static final int SYNC_LOOKAHEAD = 1;
+    static final String COMMIT_PHASE = "Finishing...";
+    static final String SNAPSHOT_PHASE = "Saving world...";
+    private static volatile boolean deltaUnsupported = false;
+    private static volatile SnapshotHook snapshotHook;
+
+    private final NetworkManager network;
+    private final ChunkedUploader chunkedUploader;
+    private final DeltaUploader deltaUploader;
+
+    /** A chunked upload failed part-way; its parts are kept and it resumes the next time uploads are checked. */
+    public static final class ResumableUploadException extends RuntimeException {
+        ResumableUploadException(Throwable cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Takes consistent copies of a world the game has open, so it can be uploaded while it is played. The client
+     * registers one with {@link #setSnapshotHook}; without one, as in the CLI, no world counts as open.
+     */
+    public interface SnapshotHook {
+        boolean isOpen(Path worldDir);
+
+        /** Returns a copy of the open world taken while it was not being written. */
+        Path capture(Path worldDir) throws IOException;
+
+        /** Deletes a copy returned by {@link #capture}. */
+        void release(Path snapshot);
+    }
+
+    public record SyncTarget(String worldName, Path worldDir, long sizeBytes) {
+    }
+
+    /** Outcome of {@link #syncAll}: uploaded world names and, for each failed world, its error. */
+    public record SyncResult(List<String> uploaded, Map<String, Throwable> failed) {
+    }
+
+    public static void setSnapshotHook(SnapshotHook hook) {
+        snapshotHook = hook;
+    }
+
+    public WorldTransfers(NetworkManager network) {
+        this.network = network;
+        this.chunkedUploader = new ChunkedUploader(network,
+                new File(ConfigManager.getConfigDir(), "save-manager-uploads.json"));
+        this.deltaUploader = new DeltaUploader(network,
+                new File(ConfigManager.getConfigDir(), "save-manager-delta.json"));
+    }
+
+    public ChunkedUploader chunkedUploader() {
+        return chunkedUploader;
+    }
+
+    // ── Uploads ──
+
+    public CompletableFuture<JsonObject> upload(TransferJob job, String worldName, Path worldDir, long sizeBytes) {
+        job.setSourceBytes(sizeBytes);
+        if (!useSnapshot(worldDir))
+            return uploadFrom(job, worldName, worldDir, sizeBytes).thenApply(json -> {
+                WatchManager.updateLastKnown(worldName, worldDir);
+                WatchManager.clearPendingNotification(worldName);
+                return json;
+            });
+        job.begin(SNAPSHOT_PHASE, true);
+        return onThread("SaveManager-snapshot", () -> captureSnapshot(worldDir))
+                .thenCompose(snap -> uploadFrom(job, worldName, snap.dir(), sizeBytes)
+                        .whenComplete((json, err) -> releaseSnapshot(snap.dir()))
+                        .thenApply(json -> {
+                            WatchManager.updateLastKnown(worldName, worldDir, snap.capturedNanos());
+                            WatchManager.clearPendingNotification(worldName);
+                            return json;
+                        }));
+    }
+
+    private CompletableFuture<JsonObject> uploadFrom(TransferJob job, String worldName, Path worldDir, long sizeBytes) {
+        CompletableFuture<JsonObject> result;
+        if (!deltaUnsupported && ConfigManager.getBoolean(ConfigManager.DELTA_UPLOAD, true)) {
+            result = uploadDelta(job, worldName, worldDir).exceptionallyCompose(err -> {
+                if (!(unwrap(err) instanceof DeltaUploader.UnsupportedException e))
+                    return CompletableFuture.failedFuture(err);
+                deltaFallback(e);
+                return uploadArchive(job, worldName, worldDir, sizeBytes);
+            });
+        } else {
+            result = uploadArchive(job, worldName, worldDir, sizeBytes);
+        }
+        return result;
+    }
+
+    public CompletableFuture<JsonObject> resume(TransferJob job, ChunkedUploader.PendingUpload pending, Path worldDir) {
+        job.begin("Uploading...", false);
+        return chunkedUploader.resume(pending, bodyProgress(job, job::progress))
+                .exceptionallyCompose(err -> CompletableFuture.failedFuture(chunkedFailure(pending.worldName(), err)))
+                .thenApply(json -> {
+                    if (worldDir != null) WatchManager.updateLastKnown(pending.worldName(), worldDir);
+                    WatchManager.clearPendingNotification(pending.worldName());
+                    return json;
+                });
+    }
+
+    /** Only a server without delta endpoints turns delta uploads off for the session; other probe failures
+     *  fall back for this upload alone. */
+    private static void deltaFallback(DeltaUploader.UnsupportedException e) {
+        if (e.endpointMissing) {
+            LOGGER.info("Delta uploads unsupported, falling back to archive upload");
+            deltaUnsupported = true;
+        } else {
+            LOGGER.warn("Delta probe failed, falling back to archive upload - {}", e.getCause().getMessage());
+        }
+    }
+
+    private CompletableFuture<JsonObject> uploadDelta(TransferJob job, String worldName, Path worldDir) {
+        job.begin("Scanning world...", true);
+        return deltaUploader.upload(worldName, worldDir, bodyProgress(job, (sent, total) -> {
+            if (job.isIndeterminate()) job.begin("Uploading changes...", false);
+            job.progress(sent, total);
+        }));
+    }
+
+    private CompletableFuture<JsonObject> uploadArchive(TransferJob job, String worldName, Path worldDir, long sizeBytes) {
+        if (sizeBytes >= CHUNKED_UPLOAD_THRESHOLD && ConfigManager.getBoolean(ConfigManager.CHUNKED_UPLOAD, true))
+            return uploadChunked(job, worldName, worldDir);
+        if (ConfigManager.getBoolean(ConfigManager.PIPELINED_UPLOAD, true))
+            return uploadPipelined(job, worldName, worldDir, sizeBytes);
+        return uploadStaged(job, worldName, worldDir);
+    }
+
+    private CompletableFuture<JsonObject> uploadChunked(TransferJob job, String worldName, Path worldDir) {
+        job.begin("Zipping...", true);
+        return onThread("SaveManager-zip", () -> stageZip(job, worldName, worldDir))
+                .thenCompose(zip -> sendChunked(job, worldName, zip));
+    }
+
+    private static Path stageZip(TransferJob job, String worldName, Path worldDir) throws IOException {
+        String baseName = worldName.replaceAll("[\\\\/:*?\"<>|]+", "_");
+        Path zip = ConfigManager.getDataDir().toPath().resolve("uploads").resolve((baseName.isEmpty() ? "world" : baseName) + ".zip");
+        job.deleteOnCancel(zip);
+        Files.createDirectories(zip.getParent());
+        try (OutputStream out = Files.newOutputStream(zip)) {
+            if (isBackground(job))
+                WorldArchiver.writeZip(worldDir, out, paced(job), compressionPolicy(), 1);
+            else
+                WorldArchiver.writeZip(worldDir, out, read -> job.checkCancelled(), compressionPolicy());
+        } catch (IOException | RuntimeException e) {
+            try { Files.deleteIfExists(zip); } catch (IOException ignored) {}
+            throw e;
+        }
+        return zip;
+    }
+
+    private CompletableFuture<JsonObject> sendChunked(TransferJob job, String worldName, Path zip) {
+        job.begin("Uploading...", false);
+        return chunkedUploader.upload(worldName, zip, bodyProgress(job, job::progress)).exceptionallyCompose(err -> {
+            if (unwrap(err) instanceof UnsupportedOperationException) {
+                LOGGER.info("Chunked upload unsupported, falling back to single request");
+                return uploadFile(job, worldName, zip);
+            }
+            return CompletableFuture.failedFuture(chunkedFailure(worldName, err));
+        });
+    }
+
+    private Throwable chunkedFailure(String worldName, Throwable err) {
+        if (!NetworkManager.isCancellation(err)) return new ResumableUploadException(unwrap(err));
+        for (ChunkedUploader.PendingUpload p : chunkedUploader.pending())
+            if (p.worldName().equals(worldName)) chunkedUploader.discard(p);
+        return err;
+    }
+
+    private CompletableFuture<JsonObject> uploadPipelined(TransferJob job, String worldName, Path worldDir, long sizeBytes) {
+        job.begin("Uploading...", false);
+        job.setTotal(sizeBytes);
+        job.setSent(0L);
+        CompletableFuture<JsonObject> upload;
+        try {
+            upload = network.uploadWorldSaveStreaming(worldName,
+                    out -> WorldArchiver.writeZip(worldDir, out, read -> job.progress(read, sizeBytes), compressionPolicy()),
+                    bodyProgress(job, (sent, total) -> job.setSent(sent)));
+        } catch (IOException | RuntimeException e) {
+            upload = CompletableFuture.failedFuture(e);
+        }
+        return upload.exceptionallyCompose(err -> {
+            if (!(unwrap(err) instanceof UnsupportedOperationException)) return CompletableFuture.failedFuture(err);
+            LOGGER.info("Streamed upload rejected, falling back to staged upload");
+            return uploadStaged(job, worldName, worldDir);
+        });
+    }
+
+    private CompletableFuture<JsonObject> uploadStaged(TransferJob job, String worldName, Path worldDir) {
+        job.begin("Zipping...", true);
+        return onThread("SaveManager-zip", () -> WorldArchiver.zipWorld(worldDir,
+                        worldName.replaceAll("[\\\\/:*?\"<>|]+", "_"), compressionPolicy()))
+                .thenCompose(zip -> uploadFile(job, worldName, zip));
+    }
+
+    private CompletableFuture<JsonObject> uploadFile(TransferJob job, String worldName, Path zipFile) {
+        job.begin("Uploading...", false);
+        CompletableFuture<JsonObject> upload;
+        try {
+            upload = network.uploadWorldSave(worldName, zipFile, bodyProgress(job, job::progress));
+        } catch (IOException | RuntimeException e) {
+            upload = CompletableFuture.failedFuture(e);
+        }
+        return upload.whenComplete((json, err) -> {
+            try { Files.deleteIfExists(zipFile); } catch (IOException ignored) {}
+        });
+    }
+
+    // ── Batch sync ──
+
+    /**
+     * Uploads several worlds as one job. Preparing a world (chunk hashing for delta uploads, zipping otherwise)
+     * runs on a small pool up to {@code SYNC_LOOKAHEAD} worlds ahead of the upload in progress, so compression of
+     * the next world overlaps the network transfer of the current one. A failed world does not stop the others.
+     */
+    public CompletableFuture<SyncResult> syncAll(TransferJob job, List<SyncTarget> worlds) {
+        network.validateApiKey();
+        job.setSourceBytes(worlds.stream().mapToLong(SyncTarget::sizeBytes).sum());
+        boolean background = isBackground(job);
+        return onThread("SaveManager-sync", () -> {
+            if (background) Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+            ExecutorService pool = Executors.newFixedThreadPool(SYNC_PREPARE_THREADS, r -> {
+                Thread t = new Thread(r, "SaveManager-sync-prepare");
+                t.setDaemon(true);
+                if (background) t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+            List<CompletableFuture<Prepared>> prepared = new ArrayList<>();
+            List<String> uploaded = new ArrayList<>();
+            Map<String, Throwable> failed = new LinkedHashMap<>();
+            int attempted = 0;
+            try {
+                for (int i = 0; i < worlds.size(); i++) {
+                    while (prepared.size() < worlds.size() && prepared.size() <= i + SYNC_LOOKAHEAD) {
+                        SyncTarget target = worlds.get(prepared.size());
+                        prepared.add(CompletableFuture.supplyAsync(() -> prepare(job, target), pool));
+                    }
+                    SyncTarget target = worlds.get(i);
+                    job.setStep((i + 1) + "/" + worlds.size() + " " + target.worldName());
+                    job.begin("Preparing...", true);
+                    attempted = i + 1;
+                    try {
+                        Prepared p = prepared.get(i).join();
+                        try {
+                            send(job, p);
+                        } finally {
+                            if (p.snapshot() != null) releaseSnapshot(p.snapshot().dir());
+                        }
+                        if (p.snapshot() != null)
+                            WatchManager.updateLastKnown(target.worldName(), target.worldDir(), p.snapshot().capturedNanos());
+                        else
+                            WatchManager.updateLastKnown(target.worldName(), target.worldDir());
+                        WatchManager.clearPendingNotification(target.worldName());
+                        uploaded.add(target.worldName());
+                    } catch (RuntimeException e) {
+                        if (job.isCancelled() || NetworkManager.isCancellation(e)) throw e;
+                        LOGGER.warn("Sync of '{}' failed - {}", target.worldName(), unwrap(e).getMessage());
+                        failed.put(target.worldName(), unwrap(e));
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+                for (CompletableFuture<Prepared> f : prepared.subList(attempted, prepared.size())) {
+                    f.thenAccept(p -> {
+                        if (p.zip() != null) try { Files.deleteIfExists(p.zip()); } catch (IOException ignored) {}
+                        if (p.snapshot() != null) releaseSnapshot(p.snapshot().dir());
+                    });
+                }
+            }
+            return new SyncResult(uploaded, failed);
+        });
+    }
+
+    /** A prepared world; {@code snapshot} is the copy it was prepared from when the world was open, if any. */
+    private record Prepared(SyncTarget target, DeltaUploader.Plan plan, Path zip, Snapshot snapshot) {
+    }
+
+    private Prepared prepare(TransferJob job, SyncTarget target) {
+        Snapshot snapshot = null;
+        try {
+            job.checkCancelled();
+            if (useSnapshot(target.worldDir())) snapshot = captureSnapshot(target.worldDir());
+            Path dir = snapshot != null ? snapshot.dir() : target.worldDir();
+            if (!deltaUnsupported && ConfigManager.getBoolean(ConfigManager.DELTA_UPLOAD, true)) {
+                try {
+                    return new Prepared(target, deltaUploader.prepare(target.worldName(), dir), null, snapshot);
+                } catch (DeltaUploader.UnsupportedException e) {
+                    deltaFallback(e);
+                }
+            }
+            return new Prepared(target, null, stageZip(job, target.worldName(), dir), snapshot);
+        } catch (IOException e) {
+            if (snapshot != null) releaseSnapshot(snapshot.dir());
+            throw new RuntimeException("Upload failed: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            if (snapshot != null) releaseSnapshot(snapshot.dir());
+            throw e;
+        }
+    }
+
+    private void send(TransferJob job, Prepared p) {
+        String worldName = p.target().worldName();
+        if (p.plan() != null) {
+            job.begin("Uploading changes...", false);
+            try {
+                deltaUploader.send(p.plan(), bodyProgress(job, job::progress));
+            } catch (IOException e) {
+                throw new RuntimeException("Upload failed: " + e.getMessage(), e);
+            }
+        } else if (p.target().sizeBytes() >= CHUNKED_UPLOAD_THRESHOLD
+                && ConfigManager.getBoolean(ConfigManager.CHUNKED_UPLOAD, true)) {
+            sendChunked(job, worldName, p.zip()).join();
+        } else {
+            uploadFile(job, worldName, p.zip()).join();
+        }
+    }
+
+    // ── Downloads ──
+
+    public CompletableFuture<Void> download(TransferJob job, String saveId, Path target, long sizeBytes) {
+        if (!ConfigManager.getBoolean(ConfigManager.STREAMING_DOWNLOAD, true)
+                || (sizeBytes >= RANGED_DOWNLOAD_THRESHOLD && network.downloadConnections() > 1))
+            return downloadStaged(job, saveId, target, sizeBytes);
+        job.begin("Downloading...", false);
+        job.setTotal(sizeBytes);
+        job.setExtracted(0L);
+        Path staging;
+        try {
+            staging = StagedRestore.stage(target);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new RuntimeException("Failed to prepare staging dir", e));
+        }
+        job.deleteOnCancel(staging);
+        return network.downloadWorldSaveStreaming(saveId, in -> {
+            WorldExtractor.extractStream(in, staging, job::setExtracted);
+            job.begin(COMMIT_PHASE, true);
+            StagedRestore.commit(staging, target);
+        }, cancellable(job, job::progress)).whenComplete((v, err) -> {
+            if (err != null) StagedRestore.discard(staging);
+        }).exceptionallyCompose(err -> {
+            if (NetworkManager.isCancellation(err) || !isArchiveFormatError(err))
+                return CompletableFuture.failedFuture(err);
+            LOGGER.info("Streamed extraction failed, falling back to staged download - {}", err.getMessage());
+            return downloadStaged(job, saveId, target, sizeBytes);
+        });
+    }
+
+    private CompletableFuture<Void> downloadStaged(TransferJob job, String saveId, Path target, long sizeBytes) {
+        Path tmpDir;
+        try {
+            tmpDir = Files.createTempDirectory("savemanager-dl-");
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new RuntimeException("Failed to prepare temp dir", e));
+        }
+        job.deleteOnCancel(tmpDir);
+        job.begin("Downloading...", false);
+        job.setTotal(sizeBytes);
+        return network.downloadWorldSave(saveId, tmpDir, cancellable(job, job::progress))
+                .thenCompose(zipPath -> onThread("SaveManager-unzip", () -> {
+                    job.begin("Unzipping...", true);
+                    Path staging = StagedRestore.stage(target);
+                    job.deleteOnCancel(staging);
+                    try {
+                        WorldExtractor.extract(zipPath, staging);
+                        job.begin(COMMIT_PHASE, true);
+                        StagedRestore.commit(staging, target);
+                    } catch (Throwable t) {
+                        StagedRestore.discard(staging);
+                        throw t;
+                    } finally {
+                        try { Files.deleteIfExists(zipPath); } catch (IOException ignored) {}
+                    }
+                    return (Void) null;
+                }))
+                .whenComplete((v, err) -> {
+                    try { Files.deleteIfExists(tmpDir); } catch (IOException ignored) {}
+                });
+    }
+
+    // ── Local ──
+
+    public CompletableFuture<Void> deleteWorld(TransferJob job, Path worldDir) {
+        job.begin("Deleting...", true);
+        return onThread("SaveManager-delete", () -> {
+            deleteDirectoryRecursively(worldDir);
+            return null;
+        });
+    }
+
+    /**
+     * Stores a new local version of each world, reading open worlds from a snapshot, then applies the retention
+     * settings. A world that fails is logged and skipped. Completes with the names of the worlds backed up.
+     */
+    public CompletableFuture<List<String>> backupLocal(TransferJob job, List<SyncTarget> worlds) {
+        boolean background = isBackground(job);
+        return onThread("SaveManager-local-backup", () -> {
+            if (background) Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+            List<String> stored = new ArrayList<>();
+            for (int i = 0; i < worlds.size(); i++) {
+                SyncTarget target = worlds.get(i);
+                job.setStep((i + 1) + "/" + worlds.size() + " " + target.worldName());
+                Snapshot snapshot = null;
+                try {
+                    if (useSnapshot(target.worldDir())) {
+                        job.begin(SNAPSHOT_PHASE, true);
+                        snapshot = captureSnapshot(target.worldDir());
+                    }
+                    job.begin("Backing up...", false);
+                    LongConsumer pace = background ? paced(job) : read -> job.checkCancelled();
+                    LocalBackupStore.create(target.worldName(), snapshot != null ? snapshot.dir() : target.worldDir(),
+                            read -> {
+                                pace.accept(read);
+                                job.progress(read, target.sizeBytes());
+                            });
+                    stored.add(target.worldName());
+                } catch (IOException | RuntimeException e) {
+                    if (job.isCancelled() || NetworkManager.isCancellation(e)) throw e;
+                    LOGGER.warn("Local backup of '{}' failed - {}", target.worldName(), e.getMessage());
+                } finally {
+                    if (snapshot != null) releaseSnapshot(snapshot.dir());
+                }
+            }
+            job.begin("Pruning...", true);
+            LocalBackupStore.prune();
+            return stored;
+        });
+    }
+
+    /** Restores a local version over {@code target} through a staging folder, like a download. */
+    public CompletableFuture<Void> restoreLocal(TransferJob job, LocalBackupStore.Version version, Path target) {
+        job.begin("Restoring...", false);
+        job.setTotal(version.sizeBytes());
+        return onThread("SaveManager-local-restore", () -> {
+            Path staging = StagedRestore.stage(target);
+            job.deleteOnCancel(staging);
+            try {
+                LocalBackupStore.extract(version, staging, done -> job.progress(done, version.sizeBytes()));
+                job.begin(COMMIT_PHASE, true);
+                StagedRestore.commit(staging, target);
+            } catch (Throwable t) {
+                StagedRestore.discard(staging);
+                throw t;
+            }
+            return (Void) null;
+        });
+    }
+
+    // ── Helpers ──
+
+    /** A copy of an open world and the time it was taken, so changes made after it keep the world dirty. */
+    private record Snapshot(Path dir, long capturedNanos) {
+    }
+
+    /** Whether an upload of {@code worldDir} should read from a snapshot because the game has it open. */
+    private static boolean useSnapshot(Path worldDir) {
+        SnapshotHook hook = snapshotHook;
+        return hook != null && ConfigManager.getBoolean(ConfigManager.LIVE_SNAPSHOT, true) && hook.isOpen(worldDir);
+    }
+
+    private static Snapshot captureSnapshot(Path worldDir) throws IOException {
+        Path dir = snapshotHook.capture(worldDir);
+        return new Snapshot(dir, System.nanoTime());
+    }
+
+    private static void releaseSnapshot(Path dir) {
+        SnapshotHook hook = snapshotHook;
+        if (hook != null) hook.release(dir);
+    }
+
+    /** Forwards body progress until the last byte is sent, then shows the job as waiting for the server. */
+    private static BiConsumer<Long, Long> bodyProgress(TransferJob job, BiConsumer<Long, Long> progress) {
+        return cancellable(job, (sent, total) -> {
+            if (job.isAwaitingServer()) return;
+            progress.accept(sent, total);
+            if (total > 0 && sent >= total) job.awaitServer();
+        });
+    }
+
+    /** Lets the network layer abort its socket when {@code job} is cancelled instead of waiting for progress. */
+    private static NetworkManager.CancellableProgress cancellable(TransferJob job, BiConsumer<Long, Long> progress) {
+        return new NetworkManager.CancellableProgress() {
+            @Override
+            public void accept(Long done, Long total) {
+                progress.accept(done, total);
+            }
+
+            @Override
+            public Runnable onCancel(Runnable abort) {
+                return job.onCancel(abort);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return job.isCancelled();
+            }
+
+            @Override
+            public void retried() {
+                job.retried();
+            }
+        };
+    }
+
+    private static <T> CompletableFuture<T> onThread(String name, Callable<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        new Thread(() -> {
+            try {
+                future.complete(work.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, name).start();
+        return future;
+    }
+
+    /** Jobs nobody is waiting on, such as scheduled backups, run on low-priority threads with paced reads. */
+    private static boolean isBackground(TransferJob job) {
+        return job.priority() <= TransferScheduler.PRIORITY_BACKGROUND;
+    }
+
+    /**
+     * Archive progress for a background job: checks for cancellation and sleeps whenever reading runs ahead of
+     * {@link ConfigManager#BACKUP_DISK_LIMIT}, which stalls the reader since progress is reported on its thread.
+     */
+    private static LongConsumer paced(TransferJob job) {
+        return paced(job, ConfigManager.getInt(ConfigManager.BACKUP_DISK_LIMIT, 32) * 1024L * 1024L);
+    }
+
+    /** {@code bytesPerSecond <= 0} only checks for cancellation. */
+    static LongConsumer paced(TransferJob job, long bytesPerSecond) {
+        double bytesPerNano = bytesPerSecond / 1e9;
+        long start = System.nanoTime();
+        return read -> {
+            job.checkCancelled();
+            if (bytesPerNano <= 0) return;
+            long aheadMs = (long) ((read / bytesPerNano - (System.nanoTime() - start)) / 1e6);
+            if (aheadMs <= 0) return;
+            try {
+                Thread.sleep(aheadMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Transfer cancelled");
+            }
+        };
+    }
+
+    private static CompressionPolicy compressionPolicy() {
+        return new CompressionPolicy(ConfigManager.getInt(ConfigManager.COMPRESSION_LEVEL, CompressionPolicy.BALANCED));
+    }
+
+    private static boolean isArchiveFormatError(Throwable t) {
+        for (; t != null; t = t.getCause()) if (t instanceof ZipException) return true;
+        return false;
+    }
+
+    static Throwable unwrap(Throwable t) {
+        while (t.getCause() != null && (t instanceof CompletionException || t instanceof ExecutionException))
+            t = t.getCause();
+        return t;
+    }
+
+    static void deleteDirectoryRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path f, BasicFileAttributes a) throws IOException {
+                Files.delete(f);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                if (e != null) throw e;
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,96 @@
+package com.choculaterie.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+
+/**
+ * Decides per file whether the archiver should deflate it or store it as-is. Files that start with a
+ * gzip/zlib/png/zip signature are already compressed; larger files are sampled with a quick deflate pass.
+ */
+public final class CompressionPolicy {
+    public static final int STORE = 0;
+    public static final int FAST = Deflater.BEST_SPEED;
+    public static final int BALANCED = 6;
+    public static final int MAX = Deflater.BEST_COMPRESSION;
+    private static final int[] PRESETS = { STORE, FAST, BALANCED, MAX };
+
+    static final long STORED_MAX_SIZE = 64L * 1024 * 1024;
+    private static final long SAMPLE_MIN_SIZE = 256 * 1024;
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    private static final double STORE_RATIO = 0.9;
+
+    private final int level;
+
+    public CompressionPolicy(int level) {
+        this.level = Math.max(STORE, Math.min(MAX, level));
+    }
+
+    public int level() {
+        return level;
+    }
+
+    public boolean shouldStore(Path file, long size) {
+        if (level == STORE) return true;
+        if (size > STORED_MAX_SIZE) return false;
+        if (size < 16) return false;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4);
+            ch.read(head, 0);
+            if (head.position() == 4 && hasCompressedMagic(head.array())) return true;
+            if (size < SAMPLE_MIN_SIZE) return false;
+            return sampleRatio(ch, size) > STORE_RATIO;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static boolean hasCompressedMagic(byte[] h) {
+        int b0 = h[0] & 0xFF, b1 = h[1] & 0xFF;
+        if (b0 == 0x1F && b1 == 0x8B) return true;
+        if (b0 == 0x89 && b1 == 'P' && h[2] == 'N' && h[3] == 'G') return true;
+        if (b0 == 'P' && b1 == 'K' && h[2] == 3 && h[3] == 4) return true;
+        return (b0 & 0x0F) == 8 && (b0 >> 4) <= 7 && ((b0 << 8) | b1) % 31 == 0;
+    }
+
+    private static double sampleRatio(FileChannel ch, long size) throws IOException {
+        byte[] sample = new byte[SAMPLE_SIZE];
+        byte[] out = new byte[SAMPLE_SIZE + 1024];
+        long in = 0L, compressed = 0L;
+        Deflater def = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            for (long pos : new long[] { size / 3, 2 * size / 3 }) {
+                ByteBuffer bb = ByteBuffer.wrap(sample);
+                int r;
+                do {
+                    r = ch.read(bb, pos + bb.position());
+                } while (r > 0 && bb.hasRemaining());
+                def.reset();
+                def.setInput(sample, 0, bb.position());
+                def.finish();
+                while (!def.finished()) compressed += def.deflate(out);
+                in += bb.position();
+            }
+        } finally {
+            def.end();
+        }
+        return in == 0 ? 0.0 : (double) compressed / in;
+    }
+
+    public static int nextPreset(int level) {
+        for (int i = 0; i < PRESETS.length; i++) {
+            if (PRESETS[i] >= level) return PRESETS[(PRESETS[i] == level ? i + 1 : i) % PRESETS.length];
+        }
+        return PRESETS[0];
+    }
+
+    public static String label(int level) {
+        if (level <= STORE) return "Store";
+        if (level <= FAST) return "Fast";
+        if (level < MAX) return "Balanced";
+        return "Max";
+    }
+}
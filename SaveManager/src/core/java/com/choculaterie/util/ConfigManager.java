@@ -0,0 +1,185 @@
+package com.choculaterie.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.nio.file.Path;
+
+public final class ConfigManager {
+    private static final String CONFIG_FILE = "save-manager-settings.json";
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    public static final String PIPELINED_UPLOAD = "pipelinedUpload";
+    public static final String COMPRESSION_LEVEL = "compressionLevel";
+    public static final String CHUNKED_UPLOAD = "chunkedUpload";
+    public static final String DOWNLOAD_CONNECTIONS = "downloadConnections";
+    public static final String STREAMING_DOWNLOAD = "streamingDownload";
+    public static final String DELTA_UPLOAD = "deltaUpload";
+    public static final String MAX_UPLOADS = "maxConcurrentUploads";
+    public static final String MAX_DOWNLOADS = "maxConcurrentDownloads";
+    public static final String BANDWIDTH_LIMIT = "bandwidthLimitKBps";
+    public static final String ADAPTIVE_BANDWIDTH = "adaptiveBandwidth";
+    public static final String LIVE_SNAPSHOT = "liveSnapshot";
+    public static final String BACKUP_INTERVAL = "backupIntervalMinutes";
+    public static final String BACKUP_ON_EXIT = "backupOnWorldExit";
+    public static final String BACKUP_DISK_LIMIT = "backupDiskLimitMBps";
+    public static final String CLOUD_BACKUPS = "cloudBackups";
+    public static final String LOCAL_BACKUPS = "localBackups";
+    public static final String LOCAL_BACKUP_KEEP_HOURLY = "localBackupKeepHourly";
+    public static final String LOCAL_BACKUP_KEEP_DAILY = "localBackupKeepDaily";
+    public static final String LOCAL_BACKUP_KEEP_WEEKLY = "localBackupKeepWeekly";
+
+    private static volatile File gameDir;
+    private static volatile boolean headless = false;
+
+    private ConfigManager() {
+    }
+
+    /** Sets the game directory config, saves and data live under; the client does this before anything else. */
+    public static void setGameDir(File dir, boolean headless) {
+        ConfigManager.gameDir = dir;
+        ConfigManager.headless = headless;
+    }
+
+    public static File getGameDir() {
+        File dir = gameDir;
+        if (dir == null)
+            throw new IllegalStateException("Game directory not set");
+        return dir;
+    }
+
+    /** Whether this process runs without a game client, as the command-line tool does. */
+    public static boolean isHeadless() {
+        return headless;
+    }
+
+    public static Path getSavesDir() {
+        return getGameDir().toPath().resolve("saves");
+    }
+
+    private static File getConfigFile() {
+        return new File(getConfigDir(), CONFIG_FILE);
+    }
+
+    public static File getConfigDir() {
+        return new File(getGameDir(), "config");
+    }
+
+    public static File getDataDir() {
+        return new File(getGameDir(), "save-manager");
+    }
+
+    public static String loadApiKey() {
+        try {
+            File configFile = getConfigFile();
+            if (!configFile.exists())
+                return null;
+            try (FileReader reader = new FileReader(configFile)) {
+                JsonObject json = new Gson().fromJson(reader, JsonObject.class);
+                if (json == null)
+                    return null;
+                if (json.has("encryptedApiToken"))
+                    return CryptoUtils.decrypt(json.get("encryptedApiToken").getAsString());
+                if (json.has("apiToken"))
+                    return json.get("apiToken").getAsString();
+            }
+        } catch (Exception e) {
+            return null;
+        }
+        return null;
+    }
+
+    public static void saveApiKey(String key) {
+        try {
+            JsonObject json = readSettings();
+            json.remove("apiToken");
+            json.addProperty("encryptedApiToken", CryptoUtils.encrypt(key));
+            writeSettings(json);
+        } catch (Exception ignored) {
+        }
+    }
+
+    public static void clearApiKey() {
+        try {
+            File configFile = getConfigFile();
+            if (!configFile.exists())
+                return;
+            JsonObject json;
+            try (FileReader reader = new FileReader(configFile)) {
+                json = new Gson().fromJson(reader, JsonObject.class);
+            }
+            if (json == null)
+                return;
+            json.remove("encryptedApiToken");
+            json.remove("apiToken");
+            if (json.entrySet().isEmpty()) {
+                configFile.delete();
+            } else {
+                try (FileWriter writer = new FileWriter(configFile)) {
+                    GSON.toJson(json, writer);
+                }
+            }
+        } catch (Exception ignored) {
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean def) {
+        JsonElement e = readSettings().get(key);
+        try {
+            return e != null && e.isJsonPrimitive() ? e.getAsBoolean() : def;
+        } catch (Exception ignored) {
+            return def;
+        }
+    }
+
+    public static int getInt(String key, int def) {
+        JsonElement e = readSettings().get(key);
+        try {
+            return e != null && e.isJsonPrimitive() ? e.getAsInt() : def;
+        } catch (Exception ignored) {
+            return def;
+        }
+    }
+
+    public static void setBoolean(String key, boolean value) {
+        JsonObject json = readSettings();
+        json.addProperty(key, value);
+        writeSettings(json);
+    }
+
+    public static void setInt(String key, int value) {
+        JsonObject json = readSettings();
+        json.addProperty(key, value);
+        writeSettings(json);
+    }
+
+    private static synchronized JsonObject readSettings() {
+        try {
+            File configFile = getConfigFile();
+            if (!configFile.exists())
+                return new JsonObject();
+            try (FileReader reader = new FileReader(configFile)) {
+                JsonObject json = new Gson().fromJson(reader, JsonObject.class);
+                return json != null ? json : new JsonObject();
+            }
+        } catch (Exception e) {
+            return new JsonObject();
+        }
+    }
+
+    private static synchronized void writeSettings(JsonObject json) {
+        try {
+            File configFile = getConfigFile();
+            configFile.getParentFile().mkdirs();
+            try (FileWriter writer = new FileWriter(configFile)) {
+                GSON.toJson(json, writer);
+            }
+        } catch (Exception ignored) {
+        }
+    }
+}
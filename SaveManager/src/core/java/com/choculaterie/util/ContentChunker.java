@@ -0,0 +1,117 @@
+package com.choculaterie.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Splits files into content-defined chunks with a gear rolling hash (normalized FastCDC cut points), so an
+ * edit only changes the chunks around it. Each chunk is identified by the SHA-256 of its bytes.
+ */
+public final class ContentChunker {
+    public static final int MIN_SIZE = 16 * 1024;
+    public static final int AVG_SIZE = 64 * 1024;
+    public static final int MAX_SIZE = 256 * 1024;
+    private static final long MASK_SMALL = (1L << 18) - 1;
+    private static final long MASK_LARGE = (1L << 14) - 1;
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom rnd = new SplittableRandom(0x536176654D67724CL);
+        for (int i = 0; i < GEAR.length; i++) GEAR[i] = rnd.nextLong();
+    }
+
+    /** A byte range of a file. {@code stamp} carries the region chunk timestamp for region files, else 0. */
+    public record Chunk(String hash, long offset, int length, long stamp) {
+        public Chunk(String hash, long offset, int length) {
+            this(hash, offset, length, 0L);
+        }
+    }
+
+    /** Receives the bytes of each chunk as it is cut, so callers that store chunks need not read the file again. */
+    @FunctionalInterface
+    public interface ChunkSink {
+        void accept(Chunk chunk, byte[] data) throws IOException;
+    }
+
+    private ContentChunker() {
+    }
+
+    public static List<Chunk> split(Path file) throws IOException {
+        return split(file, null);
+    }
+
+    /** Splits {@code file}, handing every chunk with its bytes to {@code sink} when it is not {@code null}. */
+    public static List<Chunk> split(Path file, ChunkSink sink) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        MessageDigest digest = sha256();
+        byte[] buf = new byte[READ_BUFFER_SIZE];
+        byte[] pending = sink != null ? new byte[MAX_SIZE] : null;
+        int pendingLen = 0;
+        long chunkStart = 0L, pos = 0L;
+        long hash = 0L;
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.readNBytes(buf, 0, buf.length)) > 0) {
+                int segStart = 0;
+                for (int i = 0; i < n; i++) {
+                    hash = (hash << 1) + GEAR[buf[i] & 0xFF];
+                    long len = pos + i + 1 - chunkStart;
+                    if (len < MIN_SIZE) continue;
+                    long mask = len < AVG_SIZE ? MASK_SMALL : MASK_LARGE;
+                    if ((hash & mask) != 0 && len < MAX_SIZE) continue;
+                    digest.update(buf, segStart, i + 1 - segStart);
+                    Chunk chunk = new Chunk(hex(digest.digest()), chunkStart, (int) len);
+                    chunks.add(chunk);
+                    if (sink != null) {
+                        System.arraycopy(buf, segStart, pending, pendingLen, i + 1 - segStart);
+                        sink.accept(chunk, Arrays.copyOf(pending, (int) len));
+                        pendingLen = 0;
+                    }
+                    chunkStart = pos + i + 1;
+                    segStart = i + 1;
+                    hash = 0L;
+                }
+                digest.update(buf, segStart, n - segStart);
+                if (sink != null) {
+                    System.arraycopy(buf, segStart, pending, pendingLen, n - segStart);
+                    pendingLen += n - segStart;
+                }
+                pos += n;
+            }
+        }
+        if (pos > chunkStart) {
+            Chunk chunk = new Chunk(hex(digest.digest()), chunkStart, (int) (pos - chunkStart));
+            chunks.add(chunk);
+            if (sink != null) sink.accept(chunk, Arrays.copyOf(pending, pendingLen));
+        }
+        return chunks;
+    }
+
+    public static String hash(byte[] data, int off, int len) {
+        MessageDigest digest = sha256();
+        digest.update(data, off, len);
+        return hex(digest.digest());
+    }
+
+    private static String hex(byte[] digest) {
+        return HexFormat.of().formatHex(digest);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
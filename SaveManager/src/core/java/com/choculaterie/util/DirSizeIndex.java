@@ -0,0 +1,203 @@
+package com.choculaterie.util;
+
+import com.google.gson.*;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Remembers world sizes between screen opens. A world whose root, level.dat and session.lock mtimes are
+ * unchanged is answered from the index; otherwise only directories whose mtime moved are listed again.
+ * Folders holding region files are always re-listed since Minecraft grows those files in place, which
+ * does not touch the directory mtime.
+ */
+public final class DirSizeIndex {
+    private static final String INDEX_FILE = "save-manager-sizes.json";
+    private static final Map<String, WorldEntry> worlds = new HashMap<>();
+    private static boolean loaded = false;
+    private static boolean dirty = false;
+
+    private DirSizeIndex() {
+    }
+
+    private static final class WorldEntry {
+        String fingerprint;
+        long total;
+        Map<String, DirEntry> dirs = new HashMap<>();
+    }
+
+    static final class DirEntry {
+        long mtime;
+        long bytes;
+        boolean inPlace;
+        List<String> subdirs = new ArrayList<>();
+    }
+
+    public static long sizeOf(Path worldDir) throws IOException {
+        SaveManagerEvents.Scan event = new SaveManagerEvents.Scan();
+        event.begin();
+        String key = worldDir.toAbsolutePath().normalize().toString();
+        String fingerprint = fingerprint(worldDir);
+        WorldEntry cached;
+        synchronized (DirSizeIndex.class) {
+            ensureLoaded();
+            cached = worlds.get(key);
+        }
+        if (cached != null && cached.fingerprint.equals(fingerprint)) {
+            event.finish("size", worldDir, cached.dirs.size(), cached.total, true);
+            return cached.total;
+        }
+
+        WorldEntry fresh = new WorldEntry();
+        fresh.fingerprint = fingerprint;
+        fresh.total = walk(worldDir, "", cached != null ? cached.dirs : Map.of(), fresh.dirs);
+        synchronized (DirSizeIndex.class) {
+            worlds.put(key, fresh);
+            dirty = true;
+        }
+        event.finish("size", worldDir, fresh.dirs.size(), fresh.total, false);
+        return fresh.total;
+    }
+
+    /** Drops worlds that are no longer present and writes the index if anything changed. */
+    public static synchronized void flush(Collection<Path> present) {
+        ensureLoaded();
+        Set<String> keep = new HashSet<>();
+        for (Path p : present) keep.add(p.toAbsolutePath().normalize().toString());
+        if (worlds.keySet().retainAll(keep)) dirty = true;
+        if (dirty) persist();
+    }
+
+    static long walk(Path dir, String rel, Map<String, DirEntry> previous, Map<String, DirEntry> out)
+            throws IOException {
+        long mtime = Files.getLastModifiedTime(dir).toMillis();
+        DirEntry prev = previous.get(rel);
+        DirEntry entry;
+        if (prev != null && prev.mtime == mtime && !prev.inPlace) {
+            entry = prev;
+        } else {
+            entry = new DirEntry();
+            entry.mtime = mtime;
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for (Path child : ds) {
+                    BasicFileAttributes a;
+                    try {
+                        a = Files.readAttributes(child, BasicFileAttributes.class);
+                    } catch (IOException ignored) {
+                        continue;
+                    }
+                    String name = child.getFileName().toString();
+                    if (a.isDirectory()) {
+                        entry.subdirs.add(name);
+                    } else {
+                        entry.bytes += a.size();
+                        if (name.endsWith(".mca") || name.endsWith(".mcc")) entry.inPlace = true;
+                    }
+                }
+            }
+        }
+        out.put(rel, entry);
+        long total = entry.bytes;
+        for (String sub : entry.subdirs) {
+            try {
+                total += walk(dir.resolve(sub), rel.isEmpty() ? sub : rel + "/" + sub, previous, out);
+            } catch (IOException ignored) {
+            }
+        }
+        return total;
+    }
+
+    private static String fingerprint(Path worldDir) throws IOException {
+        StringBuilder sb = new StringBuilder().append(Files.getLastModifiedTime(worldDir).toMillis());
+        for (String name : new String[] { "level.dat", "session.lock" }) {
+            Path p = worldDir.resolve(name);
+            sb.append(':');
+            try {
+                BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+                sb.append(a.lastModifiedTime().toMillis()).append('/').append(a.size());
+            } catch (IOException ignored) {
+                sb.append('-');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void ensureLoaded() {
+        if (loaded)
+            return;
+        loaded = true;
+        try {
+            File f = getFile();
+            if (!f.exists())
+                return;
+            try (FileReader r = new FileReader(f)) {
+                JsonObject obj = new Gson().fromJson(r, JsonObject.class);
+                if (obj == null || !obj.has("worlds"))
+                    return;
+                for (var w : obj.getAsJsonObject("worlds").entrySet()) {
+                    JsonObject wo = w.getValue().getAsJsonObject();
+                    WorldEntry we = new WorldEntry();
+                    we.fingerprint = wo.get("fingerprint").getAsString();
+                    we.total = wo.get("total").getAsLong();
+                    for (var d : wo.getAsJsonObject("dirs").entrySet()) {
+                        JsonObject dobj = d.getValue().getAsJsonObject();
+                        DirEntry de = new DirEntry();
+                        de.mtime = dobj.get("mtime").getAsLong();
+                        de.bytes = dobj.get("bytes").getAsLong();
+                        de.inPlace = dobj.has("inPlace") && dobj.get("inPlace").getAsBoolean();
+                        if (dobj.has("subdirs"))
+                            for (JsonElement s : dobj.getAsJsonArray("subdirs")) de.subdirs.add(s.getAsString());
+                        we.dirs.put(d.getKey(), de);
+                    }
+                    worlds.put(w.getKey(), we);
+                }
+            }
+        } catch (Exception ignored) {
+            worlds.clear();
+        }
+    }
+
+    private static void persist() {
+        try {
+            JsonObject root = new JsonObject();
+            JsonObject ws = new JsonObject();
+            worlds.forEach((key, we) -> {
+                JsonObject wo = new JsonObject();
+                wo.addProperty("fingerprint", we.fingerprint);
+                wo.addProperty("total", we.total);
+                JsonObject dirs = new JsonObject();
+                we.dirs.forEach((rel, de) -> {
+                    JsonObject dobj = new JsonObject();
+                    dobj.addProperty("mtime", de.mtime);
+                    dobj.addProperty("bytes", de.bytes);
+                    if (de.inPlace) dobj.addProperty("inPlace", true);
+                    if (!de.subdirs.isEmpty()) {
+                        JsonArray subs = new JsonArray();
+                        de.subdirs.forEach(subs::add);
+                        dobj.add("subdirs", subs);
+                    }
+                    dirs.add(rel, dobj);
+                });
+                wo.add("dirs", dirs);
+                ws.add(key, wo);
+            });
+            root.add("worlds", ws);
+            File f = getFile();
+            f.getParentFile().mkdirs();
+            try (FileWriter w = new FileWriter(f)) {
+                new Gson().toJson(root, w);
+            }
+            dirty = false;
+        } catch (Exception ignored) {
+        }
+    }
+
+    private static File getFile() {
+        return new File(ConfigManager.getConfigDir(), INDEX_FILE);
+    }
+}
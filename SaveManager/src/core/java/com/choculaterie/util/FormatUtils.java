@@ -2,13 +2,10 @@ package com.choculaterie.util;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
-import net.minecraft.client.gui.Font;
 
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Locale;
 
 public final class FormatUtils {
@@ -98,30 +95,4 @@ public final class FormatUtils {
         }
         return msg;
     }
-
-    public static List<String> wrapText(Font textRenderer, String text, int maxWidth) {
-        List<String> lines = new ArrayList<>();
-        for (String paragraph : text.split("\n")) {
-            if (paragraph.isEmpty()) {
-                lines.add("");
-                continue;
-            }
-            StringBuilder currentLine = new StringBuilder();
-            for (String word : paragraph.split(" ")) {
-                String testLine = currentLine.isEmpty() ? word : currentLine + " " + word;
-                if (textRenderer.width(testLine) <= maxWidth) {
-                    if (!currentLine.isEmpty())
-                        currentLine.append(" ");
-                    currentLine.append(word);
-                } else {
-                    if (!currentLine.isEmpty())
-                        lines.add(currentLine.toString());
-                    currentLine = new StringBuilder(word);
-                }
-            }
-            if (!currentLine.isEmpty())
-                lines.add(currentLine.toString());
-        }
-        return lines.isEmpty() ? List.of(text) : lines;
-    }
 }
@@ -0,0 +1,450 @@
+package com.choculaterie.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Versioned local backups of worlds under {@code <data dir>/backups}. Files are split with the same chunkers as
+ * delta uploads and every chunk is stored once, by SHA-256, as a blob under {@code blobs/}; a version is a small
+ * manifest listing each file as chunks at offsets. Files whose size and mtime match the previous version reuse
+ * its chunk list without being read, so a version of a mostly unchanged world costs a directory scan and a
+ * manifest. Changed files are read once: blobs are written from the chunker's buffers as the file is split.
+ * Blobs are deflated unless that saves too little, as for region chunk payloads.
+ *
+ * <p>{@link #prune} applies the hourly/daily/weekly retention settings and then garbage-collects blobs no
+ * remaining manifest references. Creating, pruning and extracting versions exclude each other, so a sweep never
+ * sees a blob written for a manifest that does not exist yet. Since the command-line tool can run next to the
+ * game, the exclusion is a file lock on {@code backups/.lock} as well as a monitor.
+ */
+public final class LocalBackupStore {
+    private static final String BACKUPS_DIR = "backups";
+    private static final String BLOBS_DIR = "blobs";
+    private static final String VERSIONS_DIR = "versions";
+    private static final String MANIFEST_SUFFIX = ".json";
+    private static final String LOCK_FILE = "session.lock";
+    private static final String STORE_LOCK = ".lock";
+    private static final byte STORED = 0;
+    private static final byte DEFLATED = 1;
+    private static final double STORE_RATIO = 0.9;
+
+    private LocalBackupStore() {
+    }
+
+    /** One stored version of a world. */
+    public record Version(String worldName, long createdAt, int files, long sizeBytes, Path manifest) {
+    }
+
+    record FileEntry(String path, long size, long mtime, List<ContentChunker.Chunk> chunks) {
+    }
+
+    private interface Locked<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Stores the current contents of {@code worldDir} as a new version of {@code worldName}. Returns the latest
+     * existing version instead when nothing changed since it. {@code progress} receives the running count of
+     * bytes scanned and may throw to abort.
+     */
+    public static synchronized Version create(String worldName, Path worldDir, LongConsumer progress) throws IOException {
+        return locked(() -> createLocked(worldName, worldDir, progress));
+    }
+
+    private static Version createLocked(String worldName, Path worldDir, LongConsumer progress) throws IOException {
+        Version latest = latest(worldName);
+        Map<String, FileEntry> previous = new HashMap<>();
+        if (latest != null)
+            for (FileEntry f : readManifest(latest.manifest())) previous.put(f.path(), f);
+
+        Set<String> written = new HashSet<>();
+        ContentChunker.ChunkSink store = (c, data) -> {
+            if (written.add(c.hash()) && !Files.exists(blobPath(c.hash())))
+                writeBlob(c.hash(), data);
+        };
+        List<FileEntry> files = new ArrayList<>();
+        long[] scanned = {0L};
+        Files.walkFileTree(worldDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (LOCK_FILE.equalsIgnoreCase(file.getFileName().toString())) return FileVisitResult.CONTINUE;
+                String rel = worldDir.relativize(file).toString().replace('\\', '/');
+                long size = attrs.size(), mtime = attrs.lastModifiedTime().toMillis();
+                FileEntry prev = previous.get(rel);
+                FileEntry entry;
+                if (prev != null && prev.size() == size && prev.mtime() == mtime) {
+                    entry = prev;
+                } else {
+                    List<ContentChunker.Chunk> chunks = RegionFileChunker.isRegionFile(file)
+                            ? RegionFileChunker.split(file, store)
+                            : ContentChunker.split(file, store);
+                    entry = new FileEntry(rel, size, mtime, chunks);
+                }
+                files.add(entry);
+                scanned[0] += size;
+                if (progress != null) progress.accept(scanned[0]);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        files.sort(Comparator.comparing(FileEntry::path));
+
+        if (latest != null && sameFiles(files, readManifest(latest.manifest())))
+            return latest;
+        long createdAt = Math.max(System.currentTimeMillis(), latest != null ? latest.createdAt() + 1 : 0L);
+        Path manifest = versionsDir(worldName).resolve(createdAt + MANIFEST_SUFFIX);
+        writeManifest(manifest, files);
+        return new Version(worldName, createdAt, files.size(), files.stream().mapToLong(FileEntry::size).sum(), manifest);
+    }
+
+    /** Stored versions of {@code worldName}, newest first. */
+    public static List<Version> versions(String worldName) {
+        List<Version> out = new ArrayList<>();
+        Path dir = versionsDir(worldName);
+        if (!Files.isDirectory(dir)) return out;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*" + MANIFEST_SUFFIX)) {
+            for (Path p : ds) {
+                Version v = describe(worldName, p);
+                if (v != null) out.add(v);
+            }
+        } catch (IOException ignored) {
+        }
+        out.sort(Comparator.comparingLong(Version::createdAt).reversed());
+        return out;
+    }
+
+    /** Names of the worlds that have at least one stored version. */
+    public static List<String> worlds() {
+        List<String> out = new ArrayList<>();
+        Path dir = root().resolve(VERSIONS_DIR);
+        if (!Files.isDirectory(dir)) return out;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, Files::isDirectory)) {
+            for (Path p : ds) out.add(p.getFileName().toString());
+        } catch (IOException ignored) {
+        }
+        out.sort(String::compareToIgnoreCase);
+        return out;
+    }
+
+    /**
+     * Rebuilds {@code version} into the empty directory {@code dir}, verifying every chunk against its hash.
+     * {@code progress} receives the running count of bytes written.
+     */
+    public static synchronized void extract(Version version, Path dir, LongConsumer progress) throws IOException {
+        locked(() -> {
+            extractLocked(version, dir, progress);
+            return null;
+        });
+    }
+
+    private static void extractLocked(Version version, Path dir, LongConsumer progress) throws IOException {
+        long done = 0L;
+        for (FileEntry f : readManifest(version.manifest())) {
+            Path out = dir.resolve(f.path()).normalize();
+            if (!out.startsWith(dir)) throw new IOException("Invalid path in backup: " + f.path());
+            Files.createDirectories(out.getParent());
+            try (RandomAccessFile raf = new RandomAccessFile(out.toFile(), "rw")) {
+                raf.setLength(f.size());
+                FileChannel ch = raf.getChannel();
+                for (ContentChunker.Chunk c : f.chunks()) {
+                    ByteBuffer bb = ByteBuffer.wrap(readBlob(c));
+                    while (bb.hasRemaining()) ch.write(bb, c.offset() + bb.position());
+                }
+            }
+            Files.setLastModifiedTime(out, FileTime.fromMillis(f.mtime()));
+            done += f.size();
+            if (progress != null) progress.accept(done);
+        }
+    }
+
+    /**
+     * Deletes versions the retention settings no longer keep, then every blob no remaining version references.
+     * The newest version of each world is always kept. Returns the number of blobs deleted.
+     */
+    public static synchronized int prune() throws IOException {
+        return locked(LocalBackupStore::pruneLocked);
+    }
+
+    private static int pruneLocked() throws IOException {
+        int hourly = ConfigManager.getInt(ConfigManager.LOCAL_BACKUP_KEEP_HOURLY, 24);
+        int daily = ConfigManager.getInt(ConfigManager.LOCAL_BACKUP_KEEP_DAILY, 7);
+        int weekly = ConfigManager.getInt(ConfigManager.LOCAL_BACKUP_KEEP_WEEKLY, 4);
+        for (String world : worlds()) {
+            List<Version> all = versions(world);
+            Set<Version> keep = retained(all, hourly, daily, weekly);
+            for (Version v : all)
+                if (!keep.contains(v)) Files.deleteIfExists(v.manifest());
+        }
+        return sweep(mark());
+    }
+
+    /** The versions kept: the newest overall, plus the newest in each of the last N hours, days and weeks. */
+    static Set<Version> retained(List<Version> newestFirst, int hourly, int daily, int weekly) {
+        Set<Version> keep = new LinkedHashSet<>();
+        if (newestFirst.isEmpty()) return keep;
+        keep.add(newestFirst.get(0));
+        keepNewestPer(newestFirst, hourly, keep, t -> t.truncatedTo(ChronoUnit.HOURS));
+        keepNewestPer(newestFirst, daily, keep, t -> t.truncatedTo(ChronoUnit.DAYS));
+        keepNewestPer(newestFirst, weekly, keep, t -> t.truncatedTo(ChronoUnit.DAYS)
+                .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)));
+        return keep;
+    }
+
+    private static void keepNewestPer(List<Version> newestFirst, int count, Set<Version> keep,
+            Function<LocalDateTime, LocalDateTime> bucket) {
+        Set<LocalDateTime> seen = new HashSet<>();
+        for (Version v : newestFirst) {
+            if (seen.size() >= count) return;
+            LocalDateTime t = LocalDateTime.ofInstant(Instant.ofEpochMilli(v.createdAt()), ZoneId.systemDefault());
+            if (seen.add(bucket.apply(t))) keep.add(v);
+        }
+    }
+
+    private static Set<String> mark() throws IOException {
+        Set<String> live = new HashSet<>();
+        for (String world : worlds())
+            for (Version v : versions(world))
+                for (FileEntry f : readManifest(v.manifest()))
+                    for (ContentChunker.Chunk c : f.chunks()) live.add(c.hash());
+        return live;
+    }
+
+    private static int sweep(Set<String> live) throws IOException {
+        Path blobs = root().resolve(BLOBS_DIR);
+        if (!Files.isDirectory(blobs)) return 0;
+        int[] deleted = {0};
+        Files.walkFileTree(blobs, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!live.contains(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                    deleted[0]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                if (!dir.equals(blobs)) {
+                    try { Files.deleteIfExists(dir); } catch (IOException ignored) {}
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return deleted[0];
+    }
+
+    // ── Blobs ──
+
+    private static void writeBlob(String hash, byte[] data) throws IOException {
+        Path target = blobPath(hash);
+        Files.createDirectories(target.getParent());
+        byte[] deflated = deflate(data);
+        boolean store = deflated.length >= data.length * STORE_RATIO;
+        Path tmp = target.resolveSibling(hash + ".tmp-" + (System.nanoTime() & Long.MAX_VALUE));
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ch.write(ByteBuffer.wrap(new byte[] { store ? STORED : DEFLATED }));
+                ByteBuffer body = ByteBuffer.wrap(store ? data : deflated);
+                while (body.hasRemaining()) ch.write(body);
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target);
+            }
+        } catch (FileAlreadyExistsException ignored) {
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static byte[] readBlob(ContentChunker.Chunk c) throws IOException {
+        byte[] raw = Files.readAllBytes(blobPath(c.hash()));
+        if (raw.length == 0) throw new IOException("Corrupt backup blob " + c.hash());
+        byte[] data;
+        if (raw[0] == STORED) {
+            data = Arrays.copyOfRange(raw, 1, raw.length);
+        } else {
+            data = new byte[c.length()];
+            Inflater inf = new Inflater();
+            try {
+                inf.setInput(raw, 1, raw.length - 1);
+                int n = 0;
+                while (n < data.length && !inf.finished()) {
+                    int r = inf.inflate(data, n, data.length - n);
+                    if (r == 0 && (inf.needsInput() || inf.needsDictionary())) break;
+                    n += r;
+                }
+                if (n != data.length) throw new IOException("Corrupt backup blob " + c.hash());
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt backup blob " + c.hash(), e);
+            } finally {
+                inf.end();
+            }
+        }
+        if (data.length != c.length() || !ContentChunker.hash(data, 0, data.length).equals(c.hash()))
+            throw new IOException("Corrupt backup blob " + c.hash());
+        return data;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater def = new Deflater(Deflater.BEST_SPEED);
+        try {
+            def.setInput(data);
+            def.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+            byte[] buf = new byte[64 * 1024];
+            while (!def.finished()) out.write(buf, 0, def.deflate(buf));
+            return out.toByteArray();
+        } finally {
+            def.end();
+        }
+    }
+
+    // ── Manifests ──
+
+    private static Version latest(String worldName) {
+        List<Version> all = versions(worldName);
+        return all.isEmpty() ? null : all.get(0);
+    }
+
+    private static Version describe(String worldName, Path manifest) {
+        String name = manifest.getFileName().toString();
+        try {
+            long createdAt = Long.parseLong(name.substring(0, name.length() - MANIFEST_SUFFIX.length()));
+            List<FileEntry> files = readManifest(manifest);
+            return new Version(worldName, createdAt, files.size(), files.stream().mapToLong(FileEntry::size).sum(), manifest);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static boolean sameFiles(List<FileEntry> a, List<FileEntry> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            FileEntry x = a.get(i), y = b.get(i);
+            if (!x.path().equals(y.path()) || x.size() != y.size() || x.mtime() != y.mtime()
+                    || !x.chunks().equals(y.chunks()))
+                return false;
+        }
+        return true;
+    }
+
+    private static List<FileEntry> readManifest(Path manifest) throws IOException {
+        List<FileEntry> files = new ArrayList<>();
+        try (Reader r = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            JsonObject root = new Gson().fromJson(r, JsonObject.class);
+            if (root == null || !root.has("files")) throw new IOException("Invalid backup manifest " + manifest);
+            for (JsonElement e : root.getAsJsonArray("files")) {
+                JsonObject o = e.getAsJsonObject();
+                List<ContentChunker.Chunk> chunks = new ArrayList<>();
+                for (JsonElement ce : o.getAsJsonArray("chunks")) {
+                    JsonArray a = ce.getAsJsonArray();
+                    chunks.add(new ContentChunker.Chunk(a.get(0).getAsString(), a.get(1).getAsLong(),
+                            a.get(2).getAsInt(), a.size() > 3 ? a.get(3).getAsLong() : 0L));
+                }
+                files.add(new FileEntry(o.get("path").getAsString(), o.get("size").getAsLong(),
+                        o.get("mtime").getAsLong(), chunks));
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid backup manifest " + manifest, e);
+        }
+        return files;
+    }
+
+    private static void writeManifest(Path manifest, List<FileEntry> files) throws IOException {
+        JsonArray arr = new JsonArray();
+        for (FileEntry f : files) {
+            JsonObject o = new JsonObject();
+            o.addProperty("path", f.path());
+            o.addProperty("size", f.size());
+            o.addProperty("mtime", f.mtime());
+            JsonArray chunks = new JsonArray();
+            for (ContentChunker.Chunk c : f.chunks()) {
+                JsonArray a = new JsonArray();
+                a.add(c.hash());
+                a.add(c.offset());
+                a.add(c.length());
+                if (c.stamp() != 0L) a.add(c.stamp());
+                chunks.add(a);
+            }
+            o.add("chunks", chunks);
+            arr.add(o);
+        }
+        JsonObject root = new JsonObject();
+        root.add("files", arr);
+        Files.createDirectories(manifest.getParent());
+        Path tmp = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            new Gson().toJson(root, w);
+        }
+        try {
+            Files.move(tmp, manifest, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, manifest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Runs {@code work} holding the store's file lock, waiting for another process to release it. */
+    private static <T> T locked(Locked<T> work) throws IOException {
+        Files.createDirectories(root());
+        try (FileChannel ch = FileChannel.open(root().resolve(STORE_LOCK), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE); FileLock ignored = ch.lock()) {
+            return work.run();
+        }
+    }
+
+    private static Path blobPath(String hash) {
+        return root().resolve(BLOBS_DIR).resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static Path versionsDir(String worldName) {
+        return root().resolve(VERSIONS_DIR).resolve(worldName);
+    }
+
+    private static Path root() {
+        return ConfigManager.getDataDir().toPath().resolve(BACKUPS_DIR);
+    }
+}
@@ -0,0 +1,409 @@
+package com.choculaterie.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes a standard zip archive while deflating entries on a worker pool. Files are cut into fixed-size blocks
+ * that are compressed independently (pigz style) and stitched back together in order, so large region files
+ * spread across cores as well as many small ones. Deflated entries use data descriptors and ZIP64 records where
+ * needed; entries the {@link CompressionPolicy} marks as incompressible are written STORED.
+ */
+public final class ParallelZipWriter implements Closeable {
+    static final int BLOCK_SIZE = 1024 * 1024;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+    private static final int FLAG_UTF8 = 0x800;
+    private static final int RAW = -1;
+    private static final int CHECKSUM_ONLY = -2;
+
+    private final CountingOutputStream out;
+    private final ExecutorService pool;
+    private final int window;
+    private final CompressionPolicy policy;
+    private final LongConsumer progress;
+    private final Deque<PendingBlock> inflight = new ArrayDeque<>();
+    private final List<Entry> written = new ArrayList<>();
+    private long bytesRead = 0L;
+    private boolean finished = false;
+
+    public ParallelZipWriter(OutputStream out, int threads, CompressionPolicy policy, LongConsumer progress) {
+        int n = Math.max(1, threads);
+        AtomicInteger idx = new AtomicInteger();
+        this.out = new CountingOutputStream(out);
+        this.pool = Executors.newFixedThreadPool(n, r -> {
+            Thread t = new Thread(r, "SaveManager-deflate-" + idx.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.window = n * 4;
+        this.policy = policy;
+        this.progress = progress;
+    }
+
+    public static int defaultThreads() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    public void addFile(Path file, String name, long size, long lastModified) throws IOException {
+        boolean store = policy.shouldStore(file, size);
+        Entry entry = new Entry(name, lastModified, store ? ZipEntry.STORED : ZipEntry.DEFLATED);
+        int blocks = (int) Math.max(1L, (size + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        // A STORED header needs the CRC up front, so a checksum-only pass runs ahead of the data pass instead of
+        // holding the whole entry in memory.
+        if (store) submitBlocks(entry, file, size, blocks, CHECKSUM_ONLY);
+        submitBlocks(entry, file, size, blocks, store ? RAW : policy.level());
+    }
+
+    private void submitBlocks(Entry entry, Path file, long size, int blocks, int level) throws IOException {
+        for (int i = 0; i < blocks; i++) {
+            long start = (long) i * BLOCK_SIZE;
+            int len = (int) Math.min(BLOCK_SIZE, Math.max(0L, size - start));
+            while (inflight.size() >= window) drainOne();
+            inflight.add(new PendingBlock(entry, level == CHECKSUM_ONLY, i == 0, i == blocks - 1,
+                    pool.submit(() -> readBlock(file, start, len, level))));
+        }
+    }
+
+    public void finish() throws IOException {
+        if (finished) return;
+        while (!inflight.isEmpty()) drainOne();
+        writeCentralDirectory();
+        out.flush();
+        finished = true;
+    }
+
+    /** Archive bytes written so far. */
+    public long bytesWritten() {
+        return out.count;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private void drainOne() throws IOException {
+        PendingBlock pending = inflight.poll();
+        Block block = await(pending);
+        Entry entry = pending.entry;
+        if (pending.checksumOnly) {
+            addBlock(entry, block);
+            if (pending.last) {
+                entry.offset = out.count;
+                writeLocalHeader(entry);
+            }
+            return;
+        }
+        boolean stored = entry.method == ZipEntry.STORED;
+        if (pending.first && !stored) {
+            entry.offset = out.count;
+            writeLocalHeader(entry);
+        }
+        out.write(block.data, 0, block.data.length);
+        if (stored) {
+            entry.writtenCrc = crc32Combine(entry.writtenCrc, block.crc, block.length);
+            entry.writtenSize += block.length;
+        } else {
+            addBlock(entry, block);
+        }
+        bytesRead += block.length;
+        if (progress != null) progress.accept(bytesRead);
+        if (pending.last) {
+            if (!stored) {
+                writeDataDescriptor(entry);
+            } else if (entry.writtenCrc != entry.crc || entry.writtenSize != entry.size) {
+                throw new IOException(entry.name + " changed while it was being archived");
+            }
+            written.add(entry);
+        }
+    }
+
+    private static Block await(PendingBlock pending) throws IOException {
+        try {
+            return pending.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Archiving interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static void addBlock(Entry entry, Block block) {
+        entry.crc = crc32Combine(entry.crc, block.crc, block.length);
+        entry.size += block.length;
+        entry.csize += block.data == null ? block.length : block.data.length;
+    }
+
+    private static Block readBlock(Path file, long start, int len, int level) throws IOException {
+        byte[] raw = new byte[len];
+        int filled = 0;
+        if (len > 0) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer bb = ByteBuffer.wrap(raw);
+                while (bb.hasRemaining()) {
+                    int r = ch.read(bb, start + bb.position());
+                    if (r < 0) break;
+                }
+                filled = bb.position();
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(raw, 0, filled);
+        if (level == CHECKSUM_ONLY) return new Block(null, crc.getValue(), filled);
+        if (level == RAW) return new Block(filled == len ? raw : Arrays.copyOf(raw, filled), crc.getValue(), filled);
+
+        // Every block is a self-contained, sync-flushed deflate run ending on a byte boundary, so blocks can be
+        // concatenated in order; the entry is terminated by an empty final block in writeDataDescriptor.
+        Deflater def = new Deflater(level, true);
+        try {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, filled / 2));
+            byte[] buf = new byte[64 * 1024];
+            def.setInput(raw, 0, filled);
+            int n;
+            do {
+                n = def.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                compressed.write(buf, 0, n);
+            } while (n == buf.length);
+            return new Block(compressed.toByteArray(), crc.getValue(), filled);
+        } finally {
+            def.end();
+        }
+    }
+
+    private void writeLocalHeader(Entry e) throws IOException {
+        byte[] name = e.name.getBytes(StandardCharsets.UTF_8);
+        boolean stored = e.method == ZipEntry.STORED;
+        boolean zip64 = stored && e.size >= ZIP64_MAGIC;
+        writeInt(0x04034b50L);
+        writeShort(zip64 ? 45 : e.versionNeeded());
+        writeShort(e.flags());
+        writeShort(e.method);
+        writeInt(e.dosTime);
+        writeInt(stored ? e.crc : 0L);
+        writeInt(zip64 ? ZIP64_MAGIC : stored ? e.csize : 0L);
+        writeInt(zip64 ? ZIP64_MAGIC : stored ? e.size : 0L);
+        writeShort(name.length);
+        writeShort(zip64 ? 20 : 0);
+        out.write(name);
+        if (zip64) {
+            writeShort(0x0001);
+            writeShort(16);
+            writeLong(e.size);
+            writeLong(e.csize);
+        }
+    }
+
+    private void writeDataDescriptor(Entry e) throws IOException {
+        // The final empty block marks the end of the deflate stream for the entry.
+        out.write(new byte[] { 0x03, 0x00 });
+        e.csize += 2;
+        writeInt(0x08074b50L);
+        writeInt(e.crc);
+        if (e.size >= ZIP64_MAGIC || e.csize >= ZIP64_MAGIC) {
+            writeLong(e.csize);
+            writeLong(e.size);
+        } else {
+            writeInt(e.csize);
+            writeInt(e.size);
+        }
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long cenStart = out.count;
+        for (Entry e : written) {
+            byte[] name = e.name.getBytes(StandardCharsets.UTF_8);
+            boolean bigSize = e.size >= ZIP64_MAGIC, bigCsize = e.csize >= ZIP64_MAGIC, bigOffset = e.offset >= ZIP64_MAGIC;
+            int extraLen = (bigSize ? 8 : 0) + (bigCsize ? 8 : 0) + (bigOffset ? 8 : 0);
+            boolean zip64 = extraLen > 0;
+            writeInt(0x02014b50L);
+            writeShort(zip64 ? 45 : e.versionNeeded());
+            writeShort(zip64 ? 45 : e.versionNeeded());
+            writeShort(e.flags());
+            writeShort(e.method);
+            writeInt(e.dosTime);
+            writeInt(e.crc);
+            writeInt(bigCsize ? ZIP64_MAGIC : e.csize);
+            writeInt(bigSize ? ZIP64_MAGIC : e.size);
+            writeShort(name.length);
+            writeShort(zip64 ? extraLen + 4 : 0);
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeInt(0L);
+            writeInt(bigOffset ? ZIP64_MAGIC : e.offset);
+            out.write(name);
+            if (zip64) {
+                writeShort(0x0001);
+                writeShort(extraLen);
+                if (bigSize) writeLong(e.size);
+                if (bigCsize) writeLong(e.csize);
+                if (bigOffset) writeLong(e.offset);
+            }
+        }
+        long cenLen = out.count - cenStart;
+        int count = written.size();
+        if (count >= ZIP64_MAGIC_COUNT || cenStart >= ZIP64_MAGIC || cenLen >= ZIP64_MAGIC) {
+            long zip64End = out.count;
+            writeInt(0x06064b50L);
+            writeLong(44L);
+            writeShort(45);
+            writeShort(45);
+            writeInt(0L);
+            writeInt(0L);
+            writeLong(count);
+            writeLong(count);
+            writeLong(cenLen);
+            writeLong(cenStart);
+            writeInt(0x07064b50L);
+            writeInt(0L);
+            writeLong(zip64End);
+            writeInt(1L);
+        }
+        writeInt(0x06054b50L);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+        writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+        writeInt(Math.min(cenLen, ZIP64_MAGIC));
+        writeInt(Math.min(cenStart, ZIP64_MAGIC));
+        writeShort(0);
+    }
+
+    private void writeShort(int v) throws IOException {
+        out.write(v & 0xFF);
+        out.write((v >>> 8) & 0xFF);
+    }
+
+    private void writeInt(long v) throws IOException {
+        writeShort((int) (v & 0xFFFF));
+        writeShort((int) ((v >>> 16) & 0xFFFF));
+    }
+
+    private void writeLong(long v) throws IOException {
+        writeInt(v & 0xFFFFFFFFL);
+        writeInt(v >>> 32);
+    }
+
+    static long dosTime(long epochMillis) {
+        LocalDateTime d = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+        if (d.getYear() < 1980) return (1L << 21) | (1L << 16);
+        return ((long) (d.getYear() - 1980) << 25) | ((long) d.getMonthValue() << 21) | ((long) d.getDayOfMonth() << 16)
+                | ((long) d.getHour() << 11) | ((long) d.getMinute() << 5) | (d.getSecond() >> 1);
+    }
+
+    // zlib's crc32_combine: the CRC of A||B from crc(A), crc(B) and len(B).
+    static long crc32Combine(long crc1, long crc2, long len2) {
+        if (len2 <= 0) return crc1;
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        odd[0] = 0xEDB88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((len2 & 1) != 0) crc1 = gf2MatrixTimes(even, crc1);
+            len2 >>= 1;
+            if (len2 == 0) break;
+            gf2MatrixSquare(odd, even);
+            if ((len2 & 1) != 0) crc1 = gf2MatrixTimes(odd, crc1);
+            len2 >>= 1;
+        } while (len2 != 0);
+        return crc1 ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] mat, long vec) {
+        long sum = 0;
+        for (int i = 0; vec != 0; i++, vec >>>= 1) {
+            if ((vec & 1) != 0) sum ^= mat[i];
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] mat) {
+        for (int n = 0; n < 32; n++) square[n] = gf2MatrixTimes(mat, mat[n]);
+    }
+
+    private static final class Entry {
+        final String name;
+        final long dosTime;
+        final int method;
+        long offset, crc, size, csize;
+        long writtenCrc, writtenSize;
+
+        Entry(String name, long lastModified, int method) {
+            this.name = name;
+            this.dosTime = dosTime(lastModified);
+            this.method = method;
+        }
+
+        int versionNeeded() {
+            return method == ZipEntry.STORED ? 10 : 20;
+        }
+
+        int flags() {
+            int flags = method == ZipEntry.STORED ? 0 : FLAG_DATA_DESCRIPTOR;
+            for (int i = 0; i < name.length(); i++) {
+                if (name.charAt(i) > 0x7F) return flags | FLAG_UTF8;
+            }
+            return flags;
+        }
+    }
+
+    private record Block(byte[] data, long crc, int length) {}
+
+    private record PendingBlock(Entry entry, boolean checksumOnly, boolean first, boolean last, Future<Block> future) {}
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count = 0L;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.choculaterie.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits Anvil region files ({@code .mca}) along their own structure: the 8 KB header (sector locations and
+ * timestamps) is one chunk and each stored Minecraft chunk payload is another, placed at its sector offset.
+ * Every payload is read and hashed: region timestamps only have one-second resolution, so a chunk saved twice
+ * within a second keeps its timestamp and length while its bytes change. The timestamp is recorded with the
+ * chunk as a hint for receivers, never trusted in place of the hash. Sector padding and free sectors are not
+ * part of any chunk; a receiver rebuilds the file by writing every chunk at its offset into a zero-filled file of
+ * the recorded size. Files whose header does not describe valid payloads fall back to content-defined chunking.
+ */
+public final class RegionFileChunker {
+    private static final int SECTOR_SIZE = 4096;
+    private static final int HEADER_SIZE = 2 * SECTOR_SIZE;
+    private static final int ENTRIES = 1024;
+
+    private RegionFileChunker() {
+    }
+
+    public static boolean isRegionFile(Path file) {
+        return file.getFileName().toString().endsWith(".mca");
+    }
+
+    public static List<ContentChunker.Chunk> split(Path file) throws IOException {
+        return split(file, null);
+    }
+
+    /**
+     * Splits {@code file}, handing every chunk with its bytes to {@code sink} when it is not {@code null}. The
+     * header is validated before any chunk is handed over, so a fallback never follows chunks already sunk.
+     */
+    public static List<ContentChunker.Chunk> split(Path file, ContentChunker.ChunkSink sink) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_SIZE) return ContentChunker.split(file, sink);
+            byte[] header = read(ch, 0L, HEADER_SIZE);
+            ByteBuffer hb = ByteBuffer.wrap(header);
+
+            List<long[]> payloads = new ArrayList<>();
+            for (int i = 0; i < ENTRIES; i++) {
+                int location = hb.getInt(i * 4);
+                if (location == 0) continue;
+                long offset = (long) (location >>> 8) * SECTOR_SIZE;
+                int sectors = location & 0xFF;
+                if (offset < HEADER_SIZE || offset + 4 > size || sectors == 0) return ContentChunker.split(file, sink);
+                long stamp = Integer.toUnsignedLong(hb.getInt(SECTOR_SIZE + i * 4));
+
+                int stored = ByteBuffer.wrap(read(ch, offset, 4)).getInt();
+                long limit = Math.min((long) sectors * SECTOR_SIZE, size - offset);
+                if (stored <= 0 || stored + 4L > limit) return ContentChunker.split(file, sink);
+                payloads.add(new long[] { offset, stored + 4, stamp });
+            }
+
+            List<ContentChunker.Chunk> chunks = new ArrayList<>();
+            ContentChunker.Chunk head = new ContentChunker.Chunk(ContentChunker.hash(header, 0, HEADER_SIZE), 0L, HEADER_SIZE);
+            chunks.add(head);
+            if (sink != null) sink.accept(head, header);
+            for (long[] p : payloads) {
+                int length = (int) p[1];
+                byte[] payload = read(ch, p[0], length);
+                ContentChunker.Chunk chunk = new ContentChunker.Chunk(ContentChunker.hash(payload, 0, length), p[0],
+                        length, p[2]);
+                chunks.add(chunk);
+                if (sink != null) sink.accept(chunk, payload);
+            }
+            return chunks;
+        }
+    }
+
+    private static byte[] read(FileChannel ch, long offset, int length) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(length);
+        while (bb.hasRemaining()) {
+            if (ch.read(bb, offset + bb.position()) < 0) throw new IOException("Region file truncated");
+        }
+        return bb.array();
+    }
+}
@@ -0,0 +1,135 @@
+package com.choculaterie.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.nio.file.Path;
+
+/**
+ * Java Flight Recorder events for the slow phases: archiving, extraction, uploads, downloads and world scans.
+ * They cost nothing unless a recording is running, and show up under "Save Manager" in JDK Mission Control
+ * next to GC, allocation and file I/O events of the same time span.
+ */
+public final class SaveManagerEvents {
+    private static final String CATEGORY = "Save Manager";
+
+    private SaveManagerEvents() {
+    }
+
+    @Name("com.choculaterie.WorldArchive")
+    @Label("World Archive")
+    @Category(CATEGORY)
+    @Description("A world folder written as a zip archive")
+    @StackTrace(false)
+    public static final class Archive extends Event {
+        @Label("World Folder")
+        public String path;
+        @Label("Files")
+        public int files;
+        @Label("Uncompressed Size")
+        @DataAmount
+        public long uncompressedBytes;
+        @Label("Archive Size")
+        @DataAmount
+        public long compressedBytes;
+        @Label("Compression Level")
+        public int level;
+        @Label("Threads")
+        public int threads;
+    }
+
+    @Name("com.choculaterie.WorldExtract")
+    @Label("World Extract")
+    @Category(CATEGORY)
+    @Description("A zip archive unpacked into a world folder")
+    @StackTrace(false)
+    public static final class Extract extends Event {
+        @Label("Target Folder")
+        public String path;
+        @Label("Archive")
+        public String archive;
+        @Label("Streamed")
+        public boolean streamed;
+        @Label("Files")
+        public int files;
+        @Label("Uncompressed Size")
+        @DataAmount
+        public long uncompressedBytes;
+        @Label("Archive Size")
+        @DataAmount
+        public long compressedBytes;
+        @Label("Threads")
+        public int threads;
+    }
+
+    @Name("com.choculaterie.Upload")
+    @Label("Save Upload")
+    @Category(CATEGORY)
+    @Description("A world archive sent to the Save Manager API, from connect until the response was read")
+    @StackTrace(false)
+    public static final class Upload extends Event {
+        @Label("World")
+        public String worldName;
+        @Label("Streamed")
+        public boolean streamed;
+        @Label("Bytes Sent")
+        @DataAmount
+        public long bytes;
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    @Name("com.choculaterie.Download")
+    @Label("Save Download")
+    @Category(CATEGORY)
+    @Description("A save archive received from the Save Manager API")
+    @StackTrace(false)
+    public static final class Download extends Event {
+        @Label("Save Id")
+        public String saveId;
+        @Label("Mode")
+        public String mode;
+        @Label("Connections")
+        public int connections;
+        @Label("Bytes Received")
+        @DataAmount
+        public long bytes;
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    @Name("com.choculaterie.WorldScan")
+    @Label("World Scan")
+    @Category(CATEGORY)
+    @Description("A metadata walk over a world folder")
+    @StackTrace(false)
+    public static final class Scan extends Event {
+        @Label("World Folder")
+        public String path;
+        @Label("Kind")
+        public String kind;
+        @Label("Entries")
+        @Description("Files listed by a watch scan, directories indexed by a size scan")
+        public int entries;
+        @Label("Total Size")
+        @DataAmount
+        public long bytes;
+        @Label("Answered From Cache")
+        public boolean cached;
+
+        public void finish(String kind, Path path, int entries, long bytes, boolean cached) {
+            if (!shouldCommit()) return;
+            this.kind = kind;
+            this.path = String.valueOf(path);
+            this.entries = entries;
+            this.bytes = bytes;
+            this.cached = cached;
+            commit();
+        }
+    }
+}
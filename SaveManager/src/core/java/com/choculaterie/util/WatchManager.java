@@ -0,0 +1,453 @@
+package com.choculaterie.util;
+
+import com.google.gson.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tracks whether watched worlds changed since they were last uploaded. Each watched world has a persisted
+ * manifest of (path, size, mtime); a background {@link WatchService} marks worlds dirty as their files change,
+ * so {@link #getChangedWorlds} is a lookup rather than a disk scan. Manifests are compared against disk once
+ * per session to catch edits made while the game was not running.
+ */
+public final class WatchManager {
+    private static final String WATCH_FILE = "save-manager-watch.json";
+    private static final String MANIFEST_FILE = "save-manager-watch-manifest.json";
+    private static final String LOCK_FILE = "session.lock";
+    private static final String SAVES_KEY = "";
+    private static final Map<String, Long> watchedWorlds = new LinkedHashMap<>();
+    private static final Map<String, Map<String, long[]>> manifests = new HashMap<>();
+    private static final Set<String> dirtyWorlds = new HashSet<>();
+    private static final Map<String, Long> lastEventNanos = new HashMap<>();
+    private static final Map<WatchKey, String> keyWorlds = new HashMap<>();
+    private static final ExecutorService SCANNER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "SaveManager-watch-scan");
+        t.setDaemon(true);
+        return t;
+    });
+    private static boolean loaded = false;
+    private static WatchService watchService;
+    private static volatile List<String> pendingNotifications = List.of();
+
+    private WatchManager() {
+    }
+
+    private static synchronized void ensureLoaded() {
+        if (loaded)
+            return;
+        loaded = true;
+        try {
+            File f = getFile();
+            if (f.exists()) {
+                try (FileReader r = new FileReader(f)) {
+                    JsonObject obj = new Gson().fromJson(r, JsonObject.class);
+                    if (obj != null && obj.has("worlds")) {
+                        for (var entry : obj.getAsJsonObject("worlds").entrySet()) {
+                            if (entry.getValue().isJsonPrimitive())
+                                watchedWorlds.put(entry.getKey(), entry.getValue().getAsLong());
+                        }
+                    }
+                    if (obj != null && obj.has("dirty")) {
+                        for (JsonElement e : obj.getAsJsonArray("dirty"))
+                            dirtyWorlds.add(e.getAsString());
+                    }
+                }
+            }
+            File mf = getManifestFile();
+            if (mf.exists()) {
+                try (FileReader r = new FileReader(mf)) {
+                    JsonObject obj = new Gson().fromJson(r, JsonObject.class);
+                    if (obj != null) {
+                        for (var world : obj.entrySet()) {
+                            Map<String, long[]> files = new HashMap<>();
+                            for (var file : world.getValue().getAsJsonObject().entrySet()) {
+                                JsonArray a = file.getValue().getAsJsonArray();
+                                files.put(file.getKey(), new long[] { a.get(0).getAsLong(), a.get(1).getAsLong() });
+                            }
+                            manifests.put(world.getKey(), files);
+                        }
+                    }
+                }
+            }
+        } catch (Exception ignored) {
+        }
+        dirtyWorlds.retainAll(watchedWorlds.keySet());
+        manifests.keySet().retainAll(watchedWorlds.keySet());
+        startWatcher();
+        for (String name : watchedWorlds.keySet()) {
+            register(name);
+            SCANNER.execute(() -> reconcile(name));
+        }
+    }
+
+    private static synchronized void persist() {
+        try {
+            File f = getFile();
+            f.getParentFile().mkdirs();
+            JsonObject worlds = new JsonObject();
+            watchedWorlds.forEach(worlds::addProperty);
+            JsonObject root = new JsonObject();
+            root.add("worlds", worlds);
+            JsonArray dirty = new JsonArray();
+            dirtyWorlds.forEach(dirty::add);
+            root.add("dirty", dirty);
+            try (FileWriter w = new FileWriter(f)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(root, w);
+            }
+        } catch (Exception ignored) {
+        }
+    }
+
+    private static synchronized void persistManifests() {
+        try {
+            File f = getManifestFile();
+            f.getParentFile().mkdirs();
+            JsonObject root = new JsonObject();
+            manifests.forEach((name, files) -> {
+                JsonObject fo = new JsonObject();
+                files.forEach((path, attrs) -> {
+                    JsonArray a = new JsonArray();
+                    a.add(attrs[0]);
+                    a.add(attrs[1]);
+                    fo.add(path, a);
+                });
+                root.add(name, fo);
+            });
+            try (FileWriter w = new FileWriter(f)) {
+                new Gson().toJson(root, w);
+            }
+        } catch (Exception ignored) {
+        }
+    }
+
+    public static synchronized boolean isWatching(String worldName) {
+        ensureLoaded();
+        return watchedWorlds.containsKey(worldName);
+    }
+
+    public static synchronized void setWatching(String worldName, Path worldDir, boolean watching) {
+        ensureLoaded();
+        if (watching) {
+            watchedWorlds.put(worldName, 0L);
+            register(worldName);
+            rebaseline(worldName, worldDir);
+        } else {
+            watchedWorlds.remove(worldName);
+            manifests.remove(worldName);
+            dirtyWorlds.remove(worldName);
+            unregister(worldName);
+            persistManifests();
+        }
+        persist();
+    }
+
+    public static synchronized void updateLastKnown(String worldName, Path worldDir) {
+        updateLastKnown(worldName, worldDir, System.nanoTime());
+    }
+
+    /** For an upload of the world as it was at {@code capturedNanos}: changes seen since then keep it dirty. */
+    public static synchronized void updateLastKnown(String worldName, Path worldDir, long capturedNanos) {
+        ensureLoaded();
+        if (watchedWorlds.containsKey(worldName))
+            rebaseline(worldName, worldDir, capturedNanos);
+    }
+
+    public static synchronized List<String> getChangedWorlds(Path savesDir) {
+        ensureLoaded();
+        List<String> changed = new ArrayList<>();
+        for (String name : watchedWorlds.keySet()) {
+            if (dirtyWorlds.contains(name) && Files.exists(savesDir.resolve(name)))
+                changed.add(name);
+        }
+        return changed;
+    }
+
+    /** Blocks until the once-per-session comparison against disk has run, for callers that check changes once. */
+    public static void awaitReconciled() {
+        ensureLoaded();
+        try {
+            SCANNER.submit(() -> {}).get();
+        } catch (Exception ignored) {
+        }
+    }
+
+    /**
+     * Blocks until scans already queued, such as the rebaseline after an upload, have run and persisted their
+     * manifests. The scanner thread is a daemon, so a process that exits without this loses them.
+     */
+    public static void flush() {
+        try {
+            SCANNER.submit(() -> {}).get();
+        } catch (Exception ignored) {
+        }
+    }
+
+    public static void setPendingNotifications(List<String> worlds) {
+        pendingNotifications = List.copyOf(worlds);
+    }
+
+    public static List<String> getPendingNotifications() {
+        return pendingNotifications;
+    }
+
+    public static void clearPendingNotification(String worldName) {
+        pendingNotifications = pendingNotifications.stream()
+                .filter(n -> !n.equals(worldName))
+                .collect(java.util.stream.Collectors.toList());
+    }
+
+    public static synchronized void dismissChanges(List<String> worldNames, Path savesDir) {
+        ensureLoaded();
+        for (String name : worldNames) {
+            if (!watchedWorlds.containsKey(name))
+                continue;
+            Path worldDir = savesDir.resolve(name);
+            if (Files.exists(worldDir))
+                rebaseline(name, worldDir);
+        }
+    }
+
+    /** Returns the recorded manifest of a watched world as path to {size, mtime}, or an empty map. */
+    public static synchronized Map<String, long[]> getManifest(String worldName) {
+        ensureLoaded();
+        Map<String, long[]> m = manifests.get(worldName);
+        return m != null ? Collections.unmodifiableMap(m) : Map.of();
+    }
+
+    private static void rebaseline(String worldName, Path worldDir) {
+        rebaseline(worldName, worldDir, System.nanoTime());
+    }
+
+    private static void rebaseline(String worldName, Path worldDir, long started) {
+        SCANNER.execute(() -> {
+            Map<String, long[]> manifest = scan(worldDir);
+            synchronized (WatchManager.class) {
+                if (!watchedWorlds.containsKey(worldName))
+                    return;
+                manifests.put(worldName, manifest);
+                watchedWorlds.put(worldName, maxModified(manifest));
+                if (lastEventNanos.getOrDefault(worldName, 0L) < started)
+                    dirtyWorlds.remove(worldName);
+                persist();
+                persistManifests();
+            }
+        });
+    }
+
+    private static void reconcile(String worldName) {
+        Path worldDir = savesDir().resolve(worldName);
+        if (!Files.isDirectory(worldDir))
+            return;
+        Map<String, long[]> current = scan(worldDir);
+        synchronized (WatchManager.class) {
+            if (!watchedWorlds.containsKey(worldName) || dirtyWorlds.contains(worldName))
+                return;
+            Map<String, long[]> recorded = manifests.get(worldName);
+            boolean changed;
+            if (recorded == null) {
+                changed = maxModified(current) > watchedWorlds.get(worldName);
+                manifests.put(worldName, current);
+                persistManifests();
+            } else {
+                changed = !sameManifest(recorded, current);
+            }
+            if (changed)
+                markDirty(worldName);
+        }
+    }
+
+    private static boolean sameManifest(Map<String, long[]> a, Map<String, long[]> b) {
+        if (a.size() != b.size())
+            return false;
+        for (var e : a.entrySet()) {
+            long[] other = b.get(e.getKey());
+            if (other == null || !Arrays.equals(e.getValue(), other))
+                return false;
+        }
+        return true;
+    }
+
+    static Map<String, long[]> scan(Path dir) {
+        SaveManagerEvents.Scan event = new SaveManagerEvents.Scan();
+        event.begin();
+        Map<String, long[]> files = new HashMap<>();
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!LOCK_FILE.equals(file.getFileName().toString())) {
+                        files.put(dir.relativize(file).toString().replace('\\', '/'),
+                                new long[] { attrs.size(), attrs.lastModifiedTime().toMillis() });
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (Exception ignored) {
+        }
+        if (event.shouldCommit()) {
+            long bytes = 0L;
+            for (long[] attrs : files.values()) bytes += attrs[0];
+            event.finish("watch", dir, files.size(), bytes, false);
+        }
+        return files;
+    }
+
+    static long maxModified(Map<String, long[]> manifest) {
+        long max = 0L;
+        for (long[] attrs : manifest.values())
+            max = Math.max(max, attrs[1]);
+        return max;
+    }
+
+    private static void markDirty(String worldName) {
+        lastEventNanos.put(worldName, System.nanoTime());
+        if (dirtyWorlds.add(worldName))
+            persist();
+    }
+
+    // ── Watch service ──
+
+    private static void startWatcher() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            return;
+        }
+        try {
+            Path saves = savesDir();
+            if (Files.isDirectory(saves))
+                keyWorlds.put(saves.register(watchService, StandardWatchEventKinds.ENTRY_CREATE), SAVES_KEY);
+        } catch (IOException ignored) {
+        }
+        Thread t = new Thread(WatchManager::pollEvents, "SaveManager-watch");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static void register(String worldName) {
+        if (watchService == null)
+            return;
+        Path worldDir = savesDir().resolve(worldName);
+        if (Files.isDirectory(worldDir))
+            SCANNER.execute(() -> registerTree(worldName, worldDir));
+    }
+
+    private static void registerTree(String worldName, Path dir) {
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                    WatchKey key = d.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    synchronized (WatchManager.class) {
+                        if (!watchedWorlds.containsKey(worldName)) {
+                            key.cancel();
+                            return FileVisitResult.TERMINATE;
+                        }
+                        keyWorlds.put(key, worldName);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (Exception ignored) {
+        }
+    }
+
+    private static void unregister(String worldName) {
+        keyWorlds.entrySet().removeIf(e -> {
+            if (!e.getValue().equals(worldName))
+                return false;
+            e.getKey().cancel();
+            return true;
+        });
+    }
+
+    private static void pollEvents() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            String worldName;
+            synchronized (WatchManager.class) {
+                worldName = keyWorlds.get(key);
+            }
+            if (worldName == null) {
+                key.cancel();
+                continue;
+            }
+            if (worldName.equals(SAVES_KEY)) {
+                onWorldCreated(key);
+                continue;
+            }
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    changed = true;
+                    continue;
+                }
+                Path name = (Path) event.context();
+                if (LOCK_FILE.equals(name.toString()))
+                    continue;
+                changed = true;
+                Path child = ((Path) key.watchable()).resolve(name);
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child))
+                    SCANNER.execute(() -> registerTree(worldName, child));
+            }
+            if (changed) {
+                synchronized (WatchManager.class) {
+                    if (watchedWorlds.containsKey(worldName))
+                        markDirty(worldName);
+                }
+            }
+            if (!key.reset()) {
+                synchronized (WatchManager.class) {
+                    keyWorlds.remove(key);
+                }
+            }
+        }
+    }
+
+    private static void onWorldCreated(WatchKey key) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (!(event.context() instanceof Path name))
+                continue;
+            synchronized (WatchManager.class) {
+                if (!watchedWorlds.containsKey(name.toString()))
+                    continue;
+                markDirty(name.toString());
+                register(name.toString());
+            }
+        }
+        key.reset();
+    }
+
+    private static Path savesDir() {
+        return ConfigManager.getSavesDir();
+    }
+
+    private static File getFile() {
+        return new File(ConfigManager.getConfigDir(), WATCH_FILE);
+    }
+
+    private static File getManifestFile() {
+        return new File(ConfigManager.getConfigDir(), MANIFEST_FILE);
+    }
+}
@@ -0,0 +1,80 @@
+package com.choculaterie.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.LongConsumer;
+
+public final class WorldArchiver {
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private WorldArchiver() {
+    }
+
+    public static Path zipWorld(Path worldDir, String worldName, CompressionPolicy policy) throws Exception {
+        Path zip = Files.createTempFile("savemanager-" + worldName + "-", ".zip");
+        try (OutputStream out = Files.newOutputStream(zip, StandardOpenOption.WRITE)) {
+            writeZip(worldDir, out, null, policy, ParallelZipWriter.defaultThreads());
+        } catch (Exception e) {
+            try { Files.deleteIfExists(zip); } catch (Exception ignored) {}
+            throw e;
+        }
+        return zip;
+    }
+
+    /**
+     * Writes the world as a zip archive to {@code out} without closing it. {@code progress} receives the
+     * running count of uncompressed bytes archived.
+     */
+    public static long writeZip(Path worldDir, OutputStream out, LongConsumer progress, CompressionPolicy policy)
+            throws IOException {
+        return writeZip(worldDir, out, progress, policy, ParallelZipWriter.defaultThreads());
+    }
+
+    public static long writeZip(Path worldDir, OutputStream out, LongConsumer progress, CompressionPolicy policy,
+            int threads) throws IOException {
+        final long[] total = {0L};
+        final int[] files = {0};
+        SaveManagerEvents.Archive event = new SaveManagerEvents.Archive();
+        event.begin();
+        BufferedOutputStream buffered = new BufferedOutputStream(out, COPY_BUFFER_SIZE);
+        try (ParallelZipWriter zip = new ParallelZipWriter(buffered, threads, policy, progress)) {
+            try {
+                Files.walkFileTree(worldDir, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        Path rel = worldDir.relativize(file);
+                        if (isSkipped(rel)) return FileVisitResult.CONTINUE;
+                        zip.addFile(file, entryName(rel), attrs.size(), attrs.lastModifiedTime().toMillis());
+                        total[0] += attrs.size();
+                        files[0]++;
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+                zip.finish();
+            } finally {
+                if (event.shouldCommit()) {
+                    event.path = worldDir.toString();
+                    event.files = files[0];
+                    event.uncompressedBytes = total[0];
+                    event.compressedBytes = zip.bytesWritten();
+                    event.level = policy.level();
+                    event.threads = threads;
+                    event.commit();
+                }
+            }
+        }
+        buffered.flush();
+        return total[0];
+    }
+
+    static boolean isSkipped(Path rel) {
+        return "session.lock".equalsIgnoreCase(rel.getFileName().toString());
+    }
+
+    static String entryName(Path rel) {
+        return rel.toString().replace('\\', '/');
+    }
+}
@@ -0,0 +1,222 @@
+package com.choculaterie.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Unpacks a world archive with random access: the central directory is read once to find a shared root
+ * folder and create every directory, then entries are inflated concurrently, each into its own file.
+ */
+public final class WorldExtractor {
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private WorldExtractor() {
+    }
+
+    public static void extract(Path zipFile, Path targetBase) throws IOException {
+        extract(zipFile, targetBase, ParallelZipWriter.defaultThreads());
+    }
+
+    public static void extract(Path zipFile, Path targetBase, int threads) throws IOException {
+        SaveManagerEvents.Extract event = new SaveManagerEvents.Extract();
+        event.begin();
+        try {
+            extractFile(zipFile, targetBase.toAbsolutePath().normalize(), threads, event);
+        } finally {
+            if (event.shouldCommit()) {
+                event.path = targetBase.toString();
+                event.archive = zipFile.toString();
+                try { event.compressedBytes = Files.size(zipFile); } catch (IOException ignored) {}
+                event.threads = threads;
+                event.commit();
+            }
+        }
+    }
+
+    private static void extractFile(Path zipFile, Path base, int threads, SaveManagerEvents.Extract event)
+            throws IOException {
+        try (ZipFile zf = new ZipFile(zipFile.toFile())) {
+            List<ZipEntry> entries = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            for (Enumeration<? extends ZipEntry> en = zf.entries(); en.hasMoreElements(); ) {
+                ZipEntry e = en.nextElement();
+                entries.add(e);
+                names.add(e.getName().replace('\\', '/'));
+            }
+            String root = singleRoot(names);
+
+            List<ZipEntry> files = new ArrayList<>();
+            List<Path> outputs = new ArrayList<>();
+            Set<Path> dirs = new LinkedHashSet<>();
+            for (int i = 0; i < entries.size(); i++) {
+                ZipEntry e = entries.get(i);
+                String name = stripRoot(names.get(i), root);
+                if (name == null) continue;
+                Path out = resolveEntry(base, name);
+                if (e.isDirectory()) {
+                    dirs.add(out);
+                } else {
+                    dirs.add(out.getParent());
+                    files.add(e);
+                    outputs.add(out);
+                    event.uncompressedBytes += Math.max(0L, e.getSize());
+                }
+            }
+            event.files = files.size();
+            for (Path d : dirs) Files.createDirectories(d);
+
+            Integer[] order = new Integer[files.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, Comparator.comparingLong((Integer i) -> files.get(i).getSize()).reversed());
+
+            int n = Math.max(1, Math.min(threads, files.size()));
+            if (n == 1) {
+                for (Integer i : order) copyEntry(zf, files.get(i), outputs.get(i));
+                return;
+            }
+            AtomicInteger idx = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(n, r -> {
+                Thread t = new Thread(r, "SaveManager-inflate-" + idx.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                List<Future<?>> jobs = new ArrayList<>(order.length);
+                for (Integer i : order) {
+                    jobs.add(pool.submit(() -> {
+                        copyEntry(zf, files.get(i), outputs.get(i));
+                        return null;
+                    }));
+                }
+                for (Future<?> f : jobs) {
+                    try {
+                        f.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Extraction interrupted", e);
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof IOException io) throw io;
+                        throw new IOException(e.getCause());
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Unpacks an archive as it arrives. Entries are written under their full names; once the stream ends, a
+     * shared root folder is hoisted into {@code targetBase}. {@code progress} receives uncompressed bytes written.
+     */
+    public static void extractStream(InputStream in, Path targetBase, LongConsumer progress) throws IOException {
+        Path base = targetBase.toAbsolutePath().normalize();
+        Files.createDirectories(base);
+        List<String> names = new ArrayList<>();
+        long written = 0L;
+        int files = 0;
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        SaveManagerEvents.Extract event = new SaveManagerEvents.Extract();
+        event.begin();
+        try {
+            ZipInputStream zis = new ZipInputStream(in);
+            for (ZipEntry e; (e = zis.getNextEntry()) != null; ) {
+                String name = e.getName().replace('\\', '/');
+                names.add(name);
+                if (name.isBlank()) continue;
+                Path out = resolveEntry(base, name);
+                if (e.isDirectory()) {
+                    Files.createDirectories(out);
+                    continue;
+                }
+                Files.createDirectories(out.getParent());
+                files++;
+                try (OutputStream os = Files.newOutputStream(out)) {
+                    int r;
+                    while ((r = zis.read(buffer)) != -1) {
+                        os.write(buffer, 0, r);
+                        written += r;
+                        if (progress != null) progress.accept(written);
+                    }
+                }
+            }
+            String root = singleRoot(names);
+            if (root != null) hoist(base, base.resolve(root));
+        } finally {
+            if (event.shouldCommit()) {
+                event.path = targetBase.toString();
+                event.archive = "stream";
+                event.streamed = true;
+                event.files = files;
+                event.uncompressedBytes = written;
+                event.threads = 1;
+                event.commit();
+            }
+        }
+    }
+
+    private static void hoist(Path base, Path rootDir) throws IOException {
+        Path holding = base.resolve("." + rootDir.getFileName() + "-" + System.nanoTime());
+        Files.move(rootDir, holding);
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(holding)) {
+            for (Path child : children) Files.move(child, base.resolve(child.getFileName().toString()));
+        }
+        Files.delete(holding);
+    }
+
+    /** Returns the folder every entry lives under, or {@code null} if the archive has no single root. */
+    static String singleRoot(List<String> names) {
+        String root = null;
+        boolean nested = false;
+        for (String name : names) {
+            if (name.isBlank()) continue;
+            String[] parts = name.split("/", 2);
+            if (parts[0].isBlank()) return null;
+            if (root == null) root = parts[0];
+            else if (!root.equals(parts[0])) return null;
+            if (parts.length > 1) nested = true;
+        }
+        return nested ? root : null;
+    }
+
+    static String stripRoot(String name, String root) {
+        if (root != null && name.startsWith(root + "/")) name = name.substring(root.length() + 1);
+        if (name.isBlank() || (root != null && name.equals(root))) return null;
+        return name;
+    }
+
+    static Path resolveEntry(Path base, String name) {
+        Path out = base.resolve(name).normalize();
+        if (!out.startsWith(base) || out.equals(base)) throw new IllegalArgumentException("Blocked zip entry: " + name);
+        return out;
+    }
+
+    private static void copyEntry(ZipFile zf, ZipEntry e, Path out) throws IOException {
+        try (InputStream in = zf.getInputStream(e);
+             OutputStream os = Files.newOutputStream(out)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int r;
+            while ((r = in.read(buffer)) != -1) os.write(buffer, 0, r);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.choculaterie.gui;
+
+import com.choculaterie.network.CloudSave;
+import com.choculaterie.util.ConfigManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CloudCacheTest {
+    @TempDir
+    static Path gameDir;
+
+    @BeforeAll
+    static void useTempGameDir() {
+        ConfigManager.setGameDir(gameDir.toFile(), true);
+    }
+
+    @Test
+    void keepsValuesAndValidatorsPerAccount() throws IOException {
+        CloudCache.putSaves("key-one", List.of(save("a", "Alpha")), "\"v1\"", "Mon, 01 Jan 2024 00:00:00 GMT");
+        CloudCache.putQuota("key-one", "1 MB / 5 GB", "\"q1\"", null);
+
+        CloudCache.Snapshot one = CloudCache.get("key-one");
+        assertEquals("Alpha", one.saves.get(0).worldName);
+        assertEquals("\"v1\"", one.savesEtag);
+        assertEquals("Mon, 01 Jan 2024 00:00:00 GMT", one.savesLastModified);
+        assertEquals("1 MB / 5 GB", one.quotaFormatted);
+        assertFalse(CloudCache.isStale(one.savesFetchedAt, 60_000L));
+
+        String file = Files.readString(gameDir.resolve("config/save-manager-cloud-cache.json"));
+        assertTrue(file.contains("Alpha"));
+        assertFalse(file.contains("key-one"), "API key written to the cache file");
+
+        // Another account never sees the first one's saves.
+        CloudCache.Snapshot two = CloudCache.get("key-two");
+        assertNull(two.saves);
+        assertNull(two.savesEtag);
+        assertNull(two.quotaFormatted);
+    }
+
+    @Test
+    void touchRefreshesTimestampAndValidatorsOnly() throws InterruptedException {
+        CloudCache.putSaves("key-touch", List.of(save("b", "Beta")), "\"v1\"", null);
+        long fetched = CloudCache.get("key-touch").savesFetchedAt;
+        Thread.sleep(5);
+
+        CloudCache.touchSaves("key-touch", "\"v2\"", "Tue, 02 Jan 2024 00:00:00 GMT");
+
+        CloudCache.Snapshot s = CloudCache.get("key-touch");
+        assertEquals("Beta", s.saves.get(0).worldName);
+        assertEquals("\"v2\"", s.savesEtag);
+        assertTrue(s.savesFetchedAt > fetched);
+    }
+
+    @Test
+    void snapshotsAreCopies() {
+        CloudCache.putSaves("key-copy", List.of(save("c", "Gamma")), null, null);
+        CloudCache.get("key-copy").saves.clear();
+        assertEquals(1, CloudCache.get("key-copy").saves.size());
+    }
+
+    @Test
+    void staleAfterMaxAge() {
+        long now = System.currentTimeMillis();
+        assertFalse(CloudCache.isStale(now - 1_000L, 15 * 60_000L));
+        assertTrue(CloudCache.isStale(now - 16 * 60_000L, 15 * 60_000L));
+        assertTrue(CloudCache.isStale(0L, 15 * 60_000L));
+    }
+
+    private static CloudSave save(String id, String name) {
+        CloudSave s = new CloudSave();
+        s.id = id;
+        s.worldName = name;
+        s.createdAt = s.updatedAt = "";
+        return s;
+    }
+}
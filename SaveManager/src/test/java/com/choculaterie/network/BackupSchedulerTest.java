@@ -0,0 +1,59 @@
+package com.choculaterie.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackupSchedulerTest {
+    private static final long MINUTE = 60_000L;
+
+    @Test
+    void dueOnceTheIntervalHasPassed() {
+        long last = 1_000_000L;
+        assertFalse(BackupScheduler.isDue(30, last, last + 29 * MINUTE));
+        assertTrue(BackupScheduler.isDue(30, last, last + 30 * MINUTE));
+        assertTrue(BackupScheduler.isDue(1, last, last + 5 * MINUTE));
+    }
+
+    @Test
+    void zeroIntervalTurnsTheTimerOff() {
+        assertFalse(BackupScheduler.isDue(0, 0L, 365 * 24 * 60 * MINUTE));
+        assertFalse(BackupScheduler.isDue(-5, 0L, 365 * 24 * 60 * MINUTE));
+    }
+
+    @Test
+    void pacedReadsHoldTheDiskLimit() {
+        LongConsumer pace = WorldTransfers.paced(job(), 10L * 1024 * 1024);
+        long start = System.nanoTime();
+        for (long read = 0; read <= 5L * 1024 * 1024; read += 256 * 1024) pace.accept(read);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+
+        // 5 MB at 10 MB/s
+        assertTrue(elapsedMs >= 450, "too fast: " + elapsedMs + " ms");
+        assertTrue(elapsedMs < 2000, "too slow: " + elapsedMs + " ms");
+    }
+
+    @Test
+    void unlimitedPacingOnlyChecksCancellation() {
+        TransferJob job = job();
+        LongConsumer pace = WorldTransfers.paced(job, 0L);
+        long start = System.nanoTime();
+        pace.accept(1L << 40);
+        assertTrue(System.nanoTime() - start < 100_000_000L);
+
+        job.cancel();
+        assertThrows(CancellationException.class, () -> pace.accept(1L));
+    }
+
+    private static TransferJob job() {
+        return new TransferJob(TransferJob.Kind.LOCAL, "Backup", Set.of(), TransferScheduler.PRIORITY_BACKGROUND,
+                j -> CompletableFuture.completedFuture(null));
+    }
+}
@@ -0,0 +1,92 @@
+package com.choculaterie.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BandwidthLimiterTest {
+    private static final int SLICE = 64 * 1024;
+
+    @Test
+    void unlimitedNeverWaits() throws InterruptedIOException {
+        BandwidthLimiter limiter = new BandwidthLimiter();
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) limiter.acquire(SLICE);
+        assertTrue(System.nanoTime() - start < 500_000_000L);
+        assertEquals(0L, limiter.effectiveRateBps());
+    }
+
+    @Test
+    void capHoldsThroughput() throws InterruptedIOException {
+        BandwidthLimiter limiter = new BandwidthLimiter();
+        limiter.configure(1024L * 1024, false);
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) limiter.acquire(SLICE);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+
+        // 1.25 MB at 1 MB/s with at most a 256 KB burst banked
+        assertTrue(elapsedMs >= 900, "too fast: " + elapsedMs + " ms");
+        assertTrue(elapsedMs < 3000, "too slow: " + elapsedMs + " ms");
+    }
+
+    @Test
+    void stallCutsRateAndFastWritesGrowItBackToTheCap() throws InterruptedException {
+        long cap = 1024L * 1024;
+        BandwidthLimiter limiter = new BandwidthLimiter();
+        limiter.configure(cap, true);
+        limiter.recordWrite(SLICE, 1_000_000L);
+
+        limiter.recordWrite(SLICE, 100_000_000L);
+        long cut = limiter.effectiveRateBps();
+        assertEquals((long) (cap * 0.7), cut);
+
+        Thread.sleep(300);
+        limiter.recordWrite(SLICE, 1_000_000L);
+        long grown = limiter.effectiveRateBps();
+        assertTrue(grown > cut && grown <= cap, "rate " + grown);
+
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(260);
+            limiter.recordWrite(SLICE, 1_000_000L);
+        }
+        assertEquals(cap, limiter.effectiveRateBps());
+    }
+
+    @Test
+    void fixedModeIgnoresWriteTimings() {
+        BandwidthLimiter limiter = new BandwidthLimiter();
+        limiter.configure(1024L * 1024, false);
+        limiter.recordWrite(SLICE, 1_000_000L);
+        limiter.recordWrite(SLICE, 500_000_000L);
+        assertEquals(1024L * 1024, limiter.effectiveRateBps());
+    }
+
+    @Test
+    void interruptedAcquireThrows() {
+        BandwidthLimiter limiter = new BandwidthLimiter();
+        limiter.configure(64L * 1024, false);
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(InterruptedIOException.class, () -> limiter.acquire(SLICE));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    void presetsCycleAndLabel() {
+        assertEquals(512, BandwidthLimiter.nextPreset(0));
+        assertEquals(1024, BandwidthLimiter.nextPreset(512));
+        assertEquals(0, BandwidthLimiter.nextPreset(16384));
+        assertEquals(4096, BandwidthLimiter.nextPreset(2000));
+        assertEquals(0, BandwidthLimiter.nextPreset(99999));
+        assertEquals("Unlimited", BandwidthLimiter.label(0));
+        assertEquals("512 KB/s", BandwidthLimiter.label(512));
+        assertEquals("4 MB/s", BandwidthLimiter.label(4096));
+    }
+}
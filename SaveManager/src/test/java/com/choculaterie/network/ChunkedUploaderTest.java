@@ -0,0 +1,263 @@
+package com.choculaterie.network;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+
+import static com.choculaterie.util.TestFiles.random;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkedUploaderTest {
+    private static final int PART = ChunkedUploader.PART_SIZE;
+    private static final int DROP = 0;
+
+    @TempDir
+    Path dir;
+
+    private SessionServer server;
+    private NetworkManager network;
+    private File stateFile;
+
+    @BeforeAll
+    static void fastBackoff() {
+        System.setProperty("savemanager.retryBackoffMs", "20");
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new SessionServer();
+        network = server.client();
+        stateFile = dir.resolve("uploads.json").toFile();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void uploadsAllPartsAndClearsState() throws IOException {
+        byte[] data = random(2 * PART + 1234, 1L);
+        Path zip = Files.write(dir.resolve("world.zip"), data);
+
+        JsonObject result = new ChunkedUploader(network, stateFile).upload("World", zip, null).join();
+
+        assertEquals("success", result.get("status").getAsString());
+        assertArrayEquals(data, server.assembled());
+        assertEquals(List.of(0, 1, 2), server.partRequests);
+        assertTrue(new ChunkedUploader(network, stateFile).pending().isEmpty());
+        assertTrue(Files.notExists(zip));
+    }
+
+    @Test
+    void resumesFromStateFileAfterRestart() throws IOException {
+        byte[] data = random(3 * PART + 10, 2L);
+        Path zip = Files.write(dir.resolve("world.zip"), data);
+        for (int i = 0; i < 6; i++) server.faults(2).add(DROP);
+
+        assertThrows(CompletionException.class,
+                () -> new ChunkedUploader(network, stateFile).upload("World", zip, null).join());
+        assertTrue(Files.exists(zip));
+
+        // A fresh uploader stands in for the game restarting; it only has the state file to go on.
+        ChunkedUploader restarted = new ChunkedUploader(network, stateFile);
+        List<ChunkedUploader.PendingUpload> pending = restarted.pending();
+        assertEquals(1, pending.size());
+        assertEquals("World", pending.get(0).worldName());
+        server.partRequests.clear();
+        List<Long> progress = Collections.synchronizedList(new ArrayList<>());
+
+        restarted.resume(pending.get(0), (done, total) -> progress.add(done)).join();
+
+        assertEquals(List.of(2, 3), server.partRequests);
+        assertEquals(1, server.sessionsCreated);
+        assertArrayEquals(data, server.assembled());
+        assertEquals(2L * PART, progress.get(0));
+        assertEquals((long) data.length, progress.get(progress.size() - 1));
+        assertTrue(restarted.pending().isEmpty());
+    }
+
+    @Test
+    void resendsPartOnChecksumMismatch() throws IOException {
+        byte[] data = random(PART + 100, 3L);
+        Path zip = Files.write(dir.resolve("world.zip"), data);
+        server.corrupt(1);
+
+        new ChunkedUploader(network, stateFile).upload("World", zip, null).join();
+
+        assertEquals(List.of(0, 1, 1), server.partRequests);
+        assertEquals(1, server.checksumRejections);
+        assertArrayEquals(data, server.assembled());
+    }
+
+    @Test
+    void retriesServerErrorsAndDroppedConnectionsWithBackoff() throws IOException {
+        byte[] data = random(PART + 100, 4L);
+        Path zip = Files.write(dir.resolve("world.zip"), data);
+        server.faults(0).add(503);
+        server.faults(0).add(DROP);
+        server.faults(1).add(500);
+
+        long start = System.nanoTime();
+        new ChunkedUploader(network, stateFile).upload("World", zip, null).join();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+
+        assertEquals(List.of(0, 0, 0, 1, 1), server.partRequests);
+        assertArrayEquals(data, server.assembled());
+        // 20 ms then 40 ms for part 0, 20 ms for part 1, before jitter
+        assertTrue(elapsedMs >= 80, "backoff too short: " + elapsedMs + " ms");
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() throws IOException {
+        Path zip = Files.write(dir.resolve("world.zip"), random(100, 5L));
+        for (int i = 0; i < 10; i++) server.faults(0).add(502);
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> new ChunkedUploader(network, stateFile).upload("World", zip, null).join());
+
+        assertEquals(6, server.partRequests.size());
+        assertTrue(e.getCause().getMessage().contains("after 6 attempts"), e.getCause().getMessage());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() throws IOException {
+        Path zip = Files.write(dir.resolve("world.zip"), random(PART + 1, 6L));
+        server.faults(1).add(413);
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> new ChunkedUploader(network, stateFile).upload("World", zip, null).join());
+
+        assertEquals(List.of(0, 1), server.partRequests);
+        assertTrue(e.getCause().getMessage().contains("HTTP 413"), e.getCause().getMessage());
+    }
+
+    @Test
+    void withRetryRethrowsNonRetryableStatusAtOnce() {
+        int[] calls = { 0 };
+        assertThrows(ChunkedUploader.HttpStatusException.class, () -> ChunkedUploader.withRetry("probe", null, () -> {
+            calls[0]++;
+            ChunkedUploader.checkStatus(404, "");
+            return null;
+        }));
+        assertEquals(1, calls[0]);
+    }
+
+    /**
+     * Just enough of the upload session protocol: create, status, part PUTs verified against X-Part-Sha256,
+     * complete. Faults are queued per part as a status code, or {@link #DROP} to close the connection unanswered.
+     */
+    private static final class SessionServer extends LoopbackServer {
+        private static final String ROUTE = "/upload/sessions";
+        private static final String ROOT = NetworkManager.API_BASE_PATH + ROUTE;
+
+        final Map<Integer, byte[]> parts = new TreeMap<>();
+        final Map<Integer, Deque<Integer>> faults = new TreeMap<>();
+        final List<Integer> partRequests = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> corrupted = new ArrayList<>();
+        int sessionsCreated;
+        int checksumRejections;
+
+        SessionServer() throws IOException {
+            route(ROUTE, this::handle);
+        }
+
+        synchronized Deque<Integer> faults(int part) {
+            return faults.computeIfAbsent(part, p -> new ArrayDeque<>());
+        }
+
+        synchronized void corrupt(int part) {
+            corrupted.add(part);
+        }
+
+        synchronized byte[] assembled() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            parts.values().forEach(out::writeBytes);
+            return out.toByteArray();
+        }
+
+        private void handle(HttpExchange ex) throws IOException {
+            if (!API_KEY.equals(ex.getRequestHeaders().getFirst(NetworkManager.API_KEY_HEADER))) {
+                respond(ex, 401, "");
+                return;
+            }
+            String rest = ex.getRequestURI().getPath().substring(ROOT.length());
+            String[] path = rest.split("/");
+            String method = ex.getRequestMethod();
+            byte[] body = ex.getRequestBody().readAllBytes();
+            if (rest.isEmpty() && method.equals("POST")) {
+                synchronized (this) {
+                    sessionsCreated++;
+                }
+                respond(ex, 200, "{\"sessionId\":\"s1\"}");
+            } else if (path.length == 2 && method.equals("GET")) {
+                JsonArray received = new JsonArray();
+                synchronized (this) {
+                    parts.keySet().forEach(received::add);
+                }
+                JsonObject json = new JsonObject();
+                json.add("receivedParts", received);
+                respond(ex, 200, json.toString());
+            } else if (path.length == 4 && path[2].equals("parts") && method.equals("PUT")) {
+                putPart(ex, Integer.parseInt(path[3]), body);
+            } else if (path.length == 3 && path[2].equals("complete") && method.equals("POST")) {
+                respond(ex, 200, "{\"status\":\"success\"}");
+            } else {
+                respond(ex, 404, "");
+            }
+        }
+
+        private void putPart(HttpExchange ex, int index, byte[] body) throws IOException {
+            partRequests.add(index);
+            Integer fault;
+            boolean corrupt;
+            synchronized (this) {
+                Deque<Integer> queue = faults.get(index);
+                fault = queue == null ? null : queue.poll();
+                corrupt = corrupted.remove((Integer) index);
+            }
+            if (fault != null && fault == DROP) {
+                ex.close();
+                return;
+            }
+            if (fault != null) {
+                respond(ex, fault, "");
+                return;
+            }
+            if (corrupt) body[body.length / 2] ^= 1;
+            if (!ChunkedUploader.sha256Hex(body).equals(ex.getRequestHeaders().getFirst("X-Part-Sha256"))) {
+                synchronized (this) {
+                    checksumRejections++;
+                }
+                respond(ex, 422, "checksum mismatch");
+                return;
+            }
+            synchronized (this) {
+                parts.put(index, body);
+            }
+            respond(ex, 200, "");
+        }
+    }
+}
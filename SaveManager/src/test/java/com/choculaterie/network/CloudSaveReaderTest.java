@@ -0,0 +1,91 @@
+package com.choculaterie.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CloudSaveReaderTest {
+
+    @Test
+    void readsTopLevelSavesArray() throws IOException {
+        List<CloudSave> saves = read("""
+                {"quota": {"used": 1}, "saves": [
+                  {"id": "a1", "worldName": "Alpha", "sizeBytes": 1024, "createdAt": "2024-01-01", "updatedAt": "2024-01-02"},
+                  {"id": "b2", "worldName": "Beta", "sizeBytes": 2048}
+                ]}""");
+
+        assertEquals(2, saves.size());
+        CloudSave a = saves.get(0);
+        assertEquals("a1", a.id);
+        assertEquals("Alpha", a.worldName);
+        assertEquals(1024L, a.fileSizeBytes);
+        assertEquals("2024-01-01", a.createdAt);
+        assertEquals("2024-01-02", a.updatedAt);
+        assertEquals("", saves.get(1).createdAt);
+    }
+
+    @Test
+    void earlierListKeyWinsWhateverItsPosition() throws IOException {
+        List<CloudSave> saves = read("""
+                {"worlds": [{"id": "w"}], "items": [{"id": "i"}], "saves": [{"id": "s"}]}""");
+        assertEquals("s", saves.get(0).id);
+    }
+
+    @Test
+    void fallsBackToResultObjectThenAnyArray() throws IOException {
+        assertEquals("r", read("""
+                {"tags": [{"id": "t"}], "result": {"items": [{"id": "r"}]}}""").get(0).id);
+        assertEquals("t", read("""
+                {"tags": [{"id": "t"}], "other": [{"id": "o"}], "result": {"count": 0}}""").get(0).id);
+        assertEquals("top", read("""
+                {"result": {"saves": [{"id": "nested"}]}, "data": [{"id": "top"}]}""").get(0).id);
+    }
+
+    @Test
+    void fieldAliasesPreferEarlierNames() throws IOException {
+        CloudSave s = read("""
+                {"items": [{"title": "T", "name": "N", "guid": "g", "saveId": "s",
+                            "bytes": 5, "fileSize": 7, "updated_on": "u2", "lastModified": "u3", "created": "c"}]}""")
+                .get(0);
+
+        assertEquals("s", s.id);
+        assertEquals("N", s.worldName);
+        assertEquals(7L, s.fileSizeBytes);
+        assertEquals("u2", s.updatedAt);
+        assertEquals("c", s.createdAt);
+    }
+
+    @Test
+    void ignoresWrongTypesAndNonObjectEntries() throws IOException {
+        List<CloudSave> saves = read("""
+                {"saves": [1, "x", null, {"id": 42, "worldName": "W", "size": "big", "sizeBytes": 1.5e3, "extra": {"a": [1]}}]}""");
+
+        assertEquals(1, saves.size());
+        CloudSave s = saves.get(0);
+        assertEquals("", s.id);
+        assertEquals("W", s.worldName);
+        assertEquals(1500L, s.fileSizeBytes);
+    }
+
+    @Test
+    void emptyWhenNoArray() throws IOException {
+        assertTrue(read("{\"saves\": null, \"count\": 0}").isEmpty());
+        assertTrue(read("{}").isEmpty());
+    }
+
+    @Test
+    void rejectsNonObjectBody() {
+        assertThrows(IllegalStateException.class, () -> read("[{\"id\": \"a\"}]"));
+    }
+
+    private static List<CloudSave> read(String json) throws IOException {
+        return CloudSaveReader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
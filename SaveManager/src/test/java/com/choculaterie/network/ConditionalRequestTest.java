@@ -0,0 +1,72 @@
+package com.choculaterie.network;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConditionalRequestTest {
+    private static final String ETAG = "\"q-1\"";
+    private static final String LAST_MODIFIED = "Mon, 01 Jan 2024 00:00:00 GMT";
+
+    private LoopbackServer server;
+    private NetworkManager network;
+    private final List<String> sentValidators = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new LoopbackServer().route("/quota-info", this::quota);
+        network = server.client();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void firstRequestReturnsBodyAndValidators() {
+        NetworkManager.Revalidated res = network.getQuotaInfo(null, null).join();
+
+        assertFalse(res.notModified());
+        assertEquals("1 MB", res.json().get("formatted").getAsString());
+        assertEquals(ETAG, res.etag());
+        assertEquals(LAST_MODIFIED, res.lastModified());
+        assertEquals(List.of("null"), sentValidators);
+    }
+
+    @Test
+    void matchingValidatorRevalidatesWithoutBody() {
+        NetworkManager.Revalidated res = network.getQuotaInfo(ETAG, LAST_MODIFIED).join();
+
+        assertTrue(res.notModified());
+        assertNull(res.json());
+        assertEquals(ETAG, res.etag());
+        assertEquals(LAST_MODIFIED, res.lastModified());
+        assertEquals(List.of(ETAG), sentValidators);
+    }
+
+    @Test
+    void staleValidatorGetsFreshBody() {
+        NetworkManager.Revalidated res = network.getQuotaInfo("\"old\"", null).join();
+
+        assertFalse(res.notModified());
+        assertEquals(ETAG, res.etag());
+    }
+
+    private void quota(HttpExchange ex) throws IOException {
+        sentValidators.add(String.valueOf(ex.getRequestHeaders().getFirst("If-None-Match")));
+        // A 304 carries no validators here, so the client must keep the ones it sent.
+        LoopbackServer.sendCacheable(ex, ETAG, LAST_MODIFIED, "{\"formatted\":\"1 MB\"}");
+    }
+}
@@ -0,0 +1,188 @@
+package com.choculaterie.network;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.choculaterie.util.TestFiles.random;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeltaUploaderTest {
+    @TempDir
+    Path dir;
+
+    private DeltaServer server;
+    private NetworkManager network;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new DeltaServer();
+        network = server.client();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void batchSkipsChunksAnEarlierWorldAlreadySent() throws IOException {
+        byte[] shared = random(600 * 1024, 1L);
+        Path a = world("A", shared, random(100 * 1024, 2L));
+        Path b = world("B", shared, random(100 * 1024, 3L));
+        DeltaUploader uploader = new DeltaUploader(network, dir.resolve("delta.json").toFile());
+
+        // A batch prepares the next world while the previous one uploads, so both plans see the shared chunks
+        // as missing.
+        DeltaUploader.Plan planA = uploader.prepare("A", a);
+        DeltaUploader.Plan planB = uploader.prepare("B", b);
+        assertTrue(planB.bytesToSend() > 600 * 1024);
+
+        uploader.send(planA, null);
+        uploader.send(planB, null);
+
+        Set<String> unique = new HashSet<>(server.received);
+        assertEquals(unique.size(), server.received.size(), "a chunk was uploaded twice");
+        assertEquals(unique, server.stored);
+        assertEquals(List.of("A", "B"), server.manifests);
+    }
+
+    @Test
+    void unchangedWorldSendsNothingTheSecondTime() throws IOException {
+        Path a = world("A", random(300 * 1024, 4L), random(10, 5L));
+        DeltaUploader uploader = new DeltaUploader(network, dir.resolve("delta.json").toFile());
+        uploader.send(uploader.prepare("A", a), null);
+        int sent = server.received.size();
+
+        DeltaUploader restarted = new DeltaUploader(network, dir.resolve("delta.json").toFile());
+        DeltaUploader.Plan again = restarted.prepare("A", a);
+
+        assertEquals(0L, again.bytesToSend());
+        restarted.send(again, null);
+        assertEquals(sent, server.received.size());
+    }
+
+    @Test
+    void missingEndpointIsReportedAsUnsupported() throws IOException {
+        server.probe(404, "");
+        DeltaUploader uploader = new DeltaUploader(network, dir.resolve("delta.json").toFile());
+        DeltaUploader.UnsupportedException e = assertThrows(DeltaUploader.UnsupportedException.class,
+                () -> uploader.prepare("A", world("A", random(1024, 6L), random(10, 7L))));
+        assertTrue(e.endpointMissing);
+    }
+
+    @Test
+    void failingProbeFallsBackWithoutRetrying() throws IOException {
+        Path a = world("A", random(1024, 8L), random(10, 9L));
+        DeltaUploader uploader = new DeltaUploader(network, dir.resolve("delta.json").toFile());
+
+        server.probe(503, "busy");
+        long start = System.nanoTime();
+        DeltaUploader.UnsupportedException e = assertThrows(DeltaUploader.UnsupportedException.class,
+                () -> uploader.prepare("A", a));
+        assertFalse(e.endpointMissing);
+        assertTrue(System.nanoTime() - start < 2_000_000_000L, "probe was retried");
+        assertEquals(1, server.probes.get());
+
+        // A proxy or captive portal answering 200 with a web page
+        server.probe(200, "<html><body>Sign in</body></html>");
+        e = assertThrows(DeltaUploader.UnsupportedException.class, () -> uploader.prepare("A", a));
+        assertFalse(e.endpointMissing);
+    }
+
+    private Path world(String name, byte[] region, byte[] level) throws IOException {
+        Path w = Files.createDirectories(dir.resolve(name));
+        Files.write(w.resolve("data.bin"), region);
+        Files.write(w.resolve("level.dat"), level);
+        Files.writeString(w.resolve("session.lock"), "lock");
+        return w;
+    }
+
+    /** Delta endpoints backed by an in-memory chunk store: missing-chunk queries, chunk batches, manifests. */
+    private static final class DeltaServer extends LoopbackServer {
+        private static final String ROUTE = "/delta";
+        private static final String ROOT = NetworkManager.API_BASE_PATH + ROUTE;
+
+        final Set<String> stored = Collections.synchronizedSet(new HashSet<>());
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        final List<String> manifests = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger probes = new AtomicInteger();
+        private volatile int probeStatus;
+        private volatile String probeBody;
+
+        DeltaServer() throws IOException {
+            route(ROUTE, this::handle);
+        }
+
+        /** Answers empty missing-chunk queries with a fixed response instead. */
+        void probe(int status, String body) {
+            probeStatus = status;
+            probeBody = body;
+        }
+
+        private void handle(HttpExchange ex) throws IOException {
+            String path = ex.getRequestURI().getPath().substring(ROOT.length());
+            byte[] body = ex.getRequestBody().readAllBytes();
+            switch (path) {
+                case "/chunks/missing" -> {
+                    JsonObject query = JsonParser.parseString(new String(body, StandardCharsets.UTF_8))
+                            .getAsJsonObject();
+                    if (probeStatus != 0 && query.getAsJsonArray("hashes").isEmpty()) {
+                        probes.incrementAndGet();
+                        respond(ex, probeStatus, probeBody);
+                        return;
+                    }
+                    JsonArray missing = new JsonArray();
+                    for (JsonElement h : query.getAsJsonArray("hashes")) {
+                        if (!stored.contains(h.getAsString())) missing.add(h);
+                    }
+                    JsonObject json = new JsonObject();
+                    json.add("missing", missing);
+                    respond(ex, 200, json.toString());
+                }
+                case "/chunks" -> {
+                    String[] hashes = ex.getRequestHeaders().getFirst("X-Chunk-Hashes").split(",");
+                    String[] lengths = ex.getRequestHeaders().getFirst("X-Chunk-Lengths").split(",");
+                    long total = 0L;
+                    for (String l : lengths) total += Long.parseLong(l);
+                    if (total != body.length) {
+                        respond(ex, 400, "length mismatch");
+                        return;
+                    }
+                    for (String h : hashes) {
+                        received.add(h);
+                        stored.add(h);
+                    }
+                    respond(ex, 200, "");
+                }
+                case "/manifests" -> {
+                    JsonObject manifest = JsonParser.parseString(new String(body, StandardCharsets.UTF_8))
+                            .getAsJsonObject();
+                    manifests.add(manifest.get("worldName").getAsString());
+                    respond(ex, 200, "{\"status\":\"success\"}");
+                }
+                default -> respond(ex, 404, "");
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.choculaterie.network;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Loopback HTTP server the network tests point a {@link NetworkManager} at. Routes are registered below
+ * {@link NetworkManager#API_BASE_PATH} and the exchange is closed after the handler returns. Handlers run on a
+ * pool, so one may block until the test releases it. Test servers for a whole protocol extend it.
+ */
+class LoopbackServer implements AutoCloseable {
+    static final String API_KEY = "test-key";
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private final HttpServer http;
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+
+    LoopbackServer() throws IOException {
+        http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        http.setExecutor(handlers);
+        http.start();
+    }
+
+    LoopbackServer route(String path, HttpHandler handler) {
+        http.createContext(NetworkManager.API_BASE_PATH + path, ex -> {
+            try (ex) {
+                handler.handle(ex);
+            }
+        });
+        return this;
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + http.getAddress().getPort();
+    }
+
+    String url(String path) {
+        return baseUrl() + NetworkManager.API_BASE_PATH + path;
+    }
+
+    /** A client for this server that sends {@link #API_KEY}. */
+    NetworkManager client() {
+        NetworkManager network = new NetworkManager(baseUrl(), baseUrl());
+        network.setApiKey(API_KEY);
+        return network;
+    }
+
+    static void respond(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Sends what a single {@code bytes=a-b} Range asks for of {@code data} as a 206, or all of it as a 200, like
+     * the download endpoint. Only the first {@code limit} body bytes are written; a body cut short of its declared
+     * length drops the connection when the exchange closes.
+     */
+    static void sendRange(HttpExchange ex, byte[] data, int limit) throws IOException {
+        String range = ex.getRequestHeaders().getFirst("Range");
+        int start = 0, end = data.length - 1;
+        if (range != null) {
+            Matcher m = RANGE.matcher(range);
+            if (m.matches()) {
+                start = Integer.parseInt(m.group(1));
+                end = Math.min(data.length - 1, Integer.parseInt(m.group(2)));
+            }
+            ex.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+        }
+        ex.getResponseHeaders().add("Content-Disposition", "attachment; filename=\"world.zip\"");
+        int length = end - start + 1;
+        ex.sendResponseHeaders(range != null ? 206 : 200, length);
+        OutputStream out = ex.getResponseBody();
+        out.write(data, start, Math.min(length, limit));
+        out.flush();
+        if (limit >= length) out.close();
+    }
+
+    /** Sends {@code json} with its validators, or a bare 304 when the request's If-None-Match is {@code etag}. */
+    static void sendCacheable(HttpExchange ex, String etag, String lastModified, String json) throws IOException {
+        if (etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+            ex.sendResponseHeaders(304, -1);
+            return;
+        }
+        ex.getResponseHeaders().add("ETag", etag);
+        ex.getResponseHeaders().add("Last-Modified", lastModified);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        respond(ex, 200, json);
+    }
+
+    @Override
+    public void close() {
+        http.stop(0);
+        handlers.shutdownNow();
+    }
+}
@@ -0,0 +1,89 @@
+package com.choculaterie.network;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RangedDownloaderTest {
+    private static final int CHUNK = RangedDownloader.CHUNK_SIZE;
+
+    @TempDir
+    Path dir;
+
+    private LoopbackServer server;
+    private NetworkManager network;
+    private byte[] data;
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    /** Request number (1-based) to cut short, and how many body bytes it gets before the connection drops. */
+    private volatile int cutRequest = -1;
+    private volatile int cutAfter;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        data = new byte[2 * CHUNK + 12345];
+        new Random(7L).nextBytes(data);
+        server = new LoopbackServer().route("/download/", this::handle);
+        network = server.client();
+        network.setDownloadConnections(3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void downloadsAllRanges() throws IOException {
+        Path saved = network.downloadWorldSave("s1", dir, null).join();
+
+        assertArrayEquals(data, Files.readAllBytes(saved));
+        assertTrue(ranges.stream().noneMatch(String::isEmpty), "fell back to a single stream: " + ranges);
+    }
+
+    @Test
+    void refetchesFirstRangeWhenProbeBodyFailsBeforeAnyByte() throws IOException {
+        cutRequest = 1;
+        cutAfter = 0;
+
+        Path saved = network.downloadWorldSave("s1", dir, null).join();
+
+        assertArrayEquals(data, Files.readAllBytes(saved));
+        assertEquals(2, ranges.stream().filter(r -> r.startsWith("bytes=0-")).count(), ranges.toString());
+        assertTrue(ranges.stream().noneMatch(String::isEmpty), "fell back to a single stream: " + ranges);
+    }
+
+    @Test
+    void resumesProbeRangeFromLastByteWritten() throws IOException {
+        cutRequest = 1;
+        cutAfter = 1_000_000;
+
+        Path saved = network.downloadWorldSave("s1", dir, null).join();
+
+        assertArrayEquals(data, Files.readAllBytes(saved));
+        assertTrue(ranges.stream().anyMatch(r -> r.startsWith("bytes=1000000-")), ranges.toString());
+        assertTrue(ranges.stream().noneMatch(String::isEmpty), "fell back to a single stream: " + ranges);
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        int n = requests.incrementAndGet();
+        String range = ex.getRequestHeaders().getFirst("Range");
+        ranges.add(range == null ? "" : range);
+        LoopbackServer.sendRange(ex, data, n == cutRequest ? cutAfter : Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,109 @@
+package com.choculaterie.network;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StagedRestoreTest {
+    @TempDir
+    Path saves;
+
+    @Test
+    void commitSwapsInStagedWorldAndDeletesReplacedOne() throws Exception {
+        Path target = world("World", "old");
+        Path staging = StagedRestore.stage(target);
+        Files.writeString(staging.resolve("level.dat"), "new");
+
+        StagedRestore.commit(staging, target);
+
+        assertEquals("new", Files.readString(target.resolve("level.dat")));
+        awaitEmpty(saves.resolve(StagedRestore.WORK_DIR));
+    }
+
+    @Test
+    void failedSecondRenameMovesReplacedWorldBack() throws Exception {
+        Path target = world("World", "old");
+        Path staging = StagedRestore.stage(target);
+        Files.writeString(staging.resolve("level.dat"), "new");
+        IOException failure = new IOException("rename failed");
+        AtomicInteger moves = new AtomicInteger();
+
+        IOException e = assertThrows(IOException.class, () -> StagedRestore.commit(staging, target, (from, to) -> {
+            if (moves.incrementAndGet() == 2) throw failure;
+            Files.move(from, to);
+        }));
+
+        assertSame(failure, e);
+        assertEquals(3, moves.get());
+        assertEquals("old", Files.readString(target.resolve("level.dat")));
+        assertEquals(List.of(staging), entries(saves.resolve(StagedRestore.WORK_DIR)));
+    }
+
+    @Test
+    void recoverMovesReplacedWorldBackWhenItsNameIsFree() throws Exception {
+        // The game stopped between the two renames: the world is set aside and nothing took its place.
+        Path work = Files.createDirectories(saves.resolve(StagedRestore.WORK_DIR));
+        Path replaced = world(work, "replaced-123-My World", "old");
+
+        StagedRestore.recover(saves);
+
+        assertFalse(Files.exists(replaced));
+        assertEquals("old", Files.readString(saves.resolve("My World/level.dat")));
+    }
+
+    @Test
+    void recoverDeletesLeftoversButSkipsFoldersInUse() throws Exception {
+        Path target = world("World", "current");
+        Path inUse = StagedRestore.stage(target);
+        Path work = inUse.getParent();
+        Path staleStaging = world(work, "staging-1-Other", "partial");
+        Path staleReplaced = world(work, "replaced-2-World", "older");
+
+        StagedRestore.recover(saves);
+
+        awaitGone(staleStaging);
+        awaitGone(staleReplaced);
+        assertTrue(Files.isDirectory(inUse));
+        assertEquals("current", Files.readString(target.resolve("level.dat")));
+        StagedRestore.discard(inUse);
+    }
+
+    private Path world(String name, String level) throws IOException {
+        return world(saves, name, level);
+    }
+
+    private static Path world(Path parent, String name, String level) throws IOException {
+        Path dir = Files.createDirectories(parent.resolve(name));
+        Files.writeString(dir.resolve("level.dat"), level);
+        return dir;
+    }
+
+    private static List<Path> entries(Path dir) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.toList();
+        }
+    }
+
+    /** Deletes run on a background thread. */
+    private static void awaitGone(Path p) throws InterruptedException {
+        for (int i = 0; i < 100 && Files.exists(p); i++) Thread.sleep(20);
+        assertFalse(Files.exists(p), p + " was not deleted");
+    }
+
+    private static void awaitEmpty(Path dir) throws IOException, InterruptedException {
+        for (int i = 0; i < 100 && !entries(dir).isEmpty(); i++) Thread.sleep(20);
+        assertEquals(List.of(), entries(dir));
+    }
+}
@@ -0,0 +1,139 @@
+package com.choculaterie.network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferCancelTest {
+    private LoopbackServer server;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    private NetworkManager network;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new LoopbackServer();
+        // Answers nothing until released.
+        server.route("/stall", ex -> {
+            try {
+                stalled.countDown();
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        // Sends headers and the first bytes of a large body, then stops.
+        server.route("/download/", ex -> {
+            try {
+                ex.sendResponseHeaders(200, 1 << 20);
+                OutputStream out = ex.getResponseBody();
+                out.write(new byte[1000]);
+                out.flush();
+                stalled.countDown();
+                release.await();
+            } catch (InterruptedException | IOException ignored) {
+            }
+        });
+        network = server.client();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        server.close();
+    }
+
+    @Test
+    void cancelAbortsRequestWaitingOnServer() throws Exception {
+        TestProgress progress = new TestProgress();
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(server.url("/stall")))
+                .GET()
+                .build();
+        CompletableFuture<Throwable> outcome = CompletableFuture.supplyAsync(() -> {
+            try {
+                network.send(req, HttpResponse.BodyHandlers.ofString(), progress);
+                return null;
+            } catch (Throwable t) {
+                return t;
+            }
+        });
+        assertTrue(stalled.await(5, TimeUnit.SECONDS));
+
+        progress.cancel();
+
+        Throwable t = outcome.get(5, TimeUnit.SECONDS);
+        assertTrue(t instanceof CancellationException, String.valueOf(t));
+        assertTrue(progress.hooks.isEmpty(), "abort hook was not unregistered");
+    }
+
+    @Test
+    void cancelClosesStalledDownloadBody() throws Exception {
+        TestProgress progress = new TestProgress();
+        CompletableFuture<Void> download = network.downloadWorldSaveStreaming("save-1", in -> {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+            }
+        }, progress);
+        assertTrue(stalled.await(5, TimeUnit.SECONDS));
+
+        progress.cancel();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> download.get(5, TimeUnit.SECONDS));
+        assertTrue(NetworkManager.isCancellation(e), String.valueOf(e.getCause()));
+        assertEquals(0, progress.hooks.size());
+    }
+
+    @Test
+    void plainCallbacksAreNotAborted() {
+        Runnable release = NetworkManager.onCancel((done, total) -> {}, () -> {
+            throw new AssertionError("should not run");
+        });
+        release.run();
+        NetworkManager.checkAborted(null);
+    }
+
+    /** Minimal stand-in for a transfer job: records hooks and runs them on cancel. */
+    private static final class TestProgress implements NetworkManager.CancellableProgress {
+        final List<Runnable> hooks = new CopyOnWriteArrayList<>();
+        volatile boolean cancelled;
+
+        void cancel() {
+            cancelled = true;
+            hooks.forEach(Runnable::run);
+        }
+
+        @Override
+        public void accept(Long done, Long total) {
+            if (cancelled) throw new CancellationException("Transfer cancelled");
+        }
+
+        @Override
+        public Runnable onCancel(Runnable abort) {
+            hooks.add(abort);
+            if (cancelled) abort.run();
+            return () -> hooks.remove(abort);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.choculaterie.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferMetricsTest {
+
+    @Test
+    void phaseKeysNameUiPhases() {
+        assertEquals("zip", TransferMetrics.phaseKey("Zipping..."));
+        assertEquals("upload", TransferMetrics.phaseKey("Uploading changes..."));
+        assertEquals("server", TransferMetrics.phaseKey(TransferJob.SERVER_PHASE));
+        assertEquals("commit", TransferMetrics.phaseKey(WorldTransfers.COMMIT_PHASE));
+        assertEquals("verifying", TransferMetrics.phaseKey("Verifying..."));
+    }
+
+    @Test
+    void finishedJobRecordsPhasesBytesAndRetries() throws Exception {
+        TransferMetrics.Summary before = summary(TransferJob.Kind.UPLOAD);
+        TransferJob job = new TransferJob(TransferJob.Kind.UPLOAD, "metrics-upload", Set.of("World"), 0, j -> {
+            j.setSourceBytes(4_000_000L);
+            j.begin("Zipping...", true);
+            Thread.sleep(20);
+            j.begin("Uploading...", false);
+            j.retried();
+            j.retried();
+            j.setSent(1_000_000L);
+            Thread.sleep(20);
+            j.awaitServer();
+            return CompletableFuture.completedFuture("ok");
+        });
+
+        job.start().get();
+        job.finish("ok", null);
+
+        TransferMetrics.Operation op = find("metrics-upload");
+        assertEquals("UPLOAD", op.kind);
+        assertEquals("DONE", op.status);
+        assertEquals(Set.of("prepare", "zip", "upload", "server"), op.phasesMs.keySet());
+        assertTrue(op.phasesMs.get("zip") >= 20);
+        assertEquals(1_000_000L, op.wireBytes);
+        assertEquals(0.25, op.compressionRatio, 1e-9);
+        assertEquals(2, op.retries);
+        assertTrue(op.throughputBps > 0 && op.throughputBps <= 50_000_000L, "throughput " + op.throughputBps);
+        assertNull(op.error);
+
+        TransferMetrics.Summary after = summary(TransferJob.Kind.UPLOAD);
+        assertEquals(before.count + 1, after.count);
+        assertEquals(before.failed, after.failed);
+        assertEquals(before.wireBytes + 1_000_000L, after.wireBytes);
+        long histogramBefore = 0L, histogramAfter = 0L;
+        for (long n : before.histogram) histogramBefore += n;
+        for (long n : after.histogram) histogramAfter += n;
+        assertEquals(histogramBefore + 1, histogramAfter);
+    }
+
+    @Test
+    void overlappingJobsCountOnlyTheirOwnRetries() throws Exception {
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        TransferJob first = new TransferJob(TransferJob.Kind.UPLOAD, "metrics-first", Set.of(), 0, j -> {
+            bothRunning.countDown();
+            bothRunning.await();
+            j.retried();
+            return CompletableFuture.completedFuture(null);
+        });
+        TransferJob second = new TransferJob(TransferJob.Kind.DOWNLOAD, "metrics-second", Set.of(), 0, j -> {
+            bothRunning.countDown();
+            bothRunning.await();
+            for (int i = 0; i < 3; i++) TransferMetrics.retried(new Handle(j));
+            return CompletableFuture.completedFuture(null);
+        });
+
+        CompletableFuture<?> a = CompletableFuture.runAsync(() -> run(first));
+        CompletableFuture<?> b = CompletableFuture.runAsync(() -> run(second));
+        a.get(5, TimeUnit.SECONDS);
+        b.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, find("metrics-first").retries);
+        assertEquals(3, find("metrics-second").retries);
+    }
+
+    @Test
+    void failedJobRecordsError() throws Exception {
+        TransferMetrics.Summary before = summary(TransferJob.Kind.LOCAL);
+        TransferJob job = new TransferJob(TransferJob.Kind.LOCAL, "metrics-failed", Set.of(), 0,
+                j -> CompletableFuture.completedFuture(null));
+
+        job.start();
+        job.finish(null, new IOException("disk full"));
+
+        TransferMetrics.Operation op = find("metrics-failed");
+        assertEquals("FAILED", op.status);
+        assertEquals("disk full", op.error);
+        assertEquals(-1L, op.wireBytes);
+        assertEquals(before.failed + 1, summary(TransferJob.Kind.LOCAL).failed);
+    }
+
+    @Test
+    void jobCancelledWhileQueuedIsNotRecorded() {
+        TransferJob job = new TransferJob(TransferJob.Kind.LOCAL, "metrics-queued", Set.of(), 0,
+                j -> CompletableFuture.completedFuture(null));
+        job.cancel();
+        job.finish(null, null);
+
+        assertEquals(TransferJob.Status.CANCELLED, job.status());
+        assertTrue(TransferMetrics.recent().stream().noneMatch(o -> o.label.equals("metrics-queued")));
+    }
+
+    private static void run(TransferJob job) {
+        try {
+            job.start().get();
+            job.finish(null, null);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static TransferMetrics.Operation find(String label) {
+        return TransferMetrics.recent().stream().filter(o -> o.label.equals(label)).findFirst().orElseThrow();
+    }
+
+    private static TransferMetrics.Summary summary(TransferJob.Kind kind) {
+        TransferMetrics.Summary s = TransferMetrics.summaries().get(kind);
+        return s != null ? s : new TransferMetrics.Summary();
+    }
+
+    /** Progress handle of a job, as the network layer receives it. */
+    private record Handle(TransferJob job) implements NetworkManager.CancellableProgress {
+        @Override
+        public void accept(Long done, Long total) {
+        }
+
+        @Override
+        public Runnable onCancel(Runnable abort) {
+            return job.onCancel(abort);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return job.isCancelled();
+        }
+
+        @Override
+        public void retried() {
+            job.retried();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.choculaterie.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressionPolicyTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void storeLevelStoresFilesOfAnySize() throws IOException {
+        Path big = dir.resolve("big.txt");
+        try (RandomAccessFile raf = new RandomAccessFile(big.toFile(), "rw")) {
+            raf.setLength(CompressionPolicy.STORED_MAX_SIZE + 1);
+        }
+        long size = Files.size(big);
+
+        assertTrue(new CompressionPolicy(CompressionPolicy.STORE).shouldStore(big, size));
+        assertFalse(new CompressionPolicy(CompressionPolicy.FAST).shouldStore(big, size));
+    }
+
+    @Test
+    void storesAlreadyCompressedFiles() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(bytes)) {
+            gz.write(new byte[4096]);
+        }
+        Path gzip = Files.write(dir.resolve("level.dat"), bytes.toByteArray());
+        byte[] noise = new byte[512 * 1024];
+        new Random(1L).nextBytes(noise);
+        Path random = Files.write(dir.resolve("r.0.0.mca"), noise);
+        Path text = Files.write(dir.resolve("stats.json"), "{\"stat\":1}\n".repeat(50_000).getBytes());
+
+        CompressionPolicy policy = new CompressionPolicy(CompressionPolicy.BALANCED);
+        assertTrue(policy.shouldStore(gzip, Files.size(gzip)));
+        assertTrue(policy.shouldStore(random, Files.size(random)));
+        assertFalse(policy.shouldStore(text, Files.size(text)));
+    }
+
+    @Test
+    void cyclesPresets() {
+        assertEquals(CompressionPolicy.FAST, CompressionPolicy.nextPreset(CompressionPolicy.STORE));
+        assertEquals(CompressionPolicy.BALANCED, CompressionPolicy.nextPreset(CompressionPolicy.FAST));
+        assertEquals(CompressionPolicy.MAX, CompressionPolicy.nextPreset(CompressionPolicy.BALANCED));
+        assertEquals(CompressionPolicy.STORE, CompressionPolicy.nextPreset(CompressionPolicy.MAX));
+        assertEquals(CompressionPolicy.BALANCED, CompressionPolicy.nextPreset(3));
+    }
+}
@@ -0,0 +1,103 @@
+package com.choculaterie.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.choculaterie.util.TestFiles.random;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContentChunkerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void emptyFileHasNoChunks() throws IOException {
+        assertTrue(ContentChunker.split(Files.write(dir.resolve("empty"), new byte[0])).isEmpty());
+    }
+
+    @Test
+    void fileBelowMinimumIsOneChunk() throws IOException {
+        byte[] data = random(ContentChunker.MIN_SIZE - 1, 1L);
+        List<ContentChunker.Chunk> chunks = ContentChunker.split(Files.write(dir.resolve("small"), data));
+
+        assertEquals(1, chunks.size());
+        assertEquals(new ContentChunker.Chunk(ContentChunker.hash(data, 0, data.length), 0L, data.length),
+                chunks.get(0));
+    }
+
+    @Test
+    void chunksTileTheFileWithinSizeBounds() throws IOException {
+        // Larger than the 1 MB read buffer, so cut points also land across buffer refills.
+        byte[] data = random(5 * 1024 * 1024 + 333, 2L);
+        List<ContentChunker.Chunk> chunks = ContentChunker.split(Files.write(dir.resolve("big"), data));
+
+        long expectedOffset = 0L;
+        for (int i = 0; i < chunks.size(); i++) {
+            ContentChunker.Chunk c = chunks.get(i);
+            assertEquals(expectedOffset, c.offset());
+            assertTrue(c.length() <= ContentChunker.MAX_SIZE, "chunk " + i + " too long: " + c.length());
+            if (i < chunks.size() - 1)
+                assertTrue(c.length() >= ContentChunker.MIN_SIZE, "chunk " + i + " too short: " + c.length());
+            assertEquals(ContentChunker.hash(data, (int) c.offset(), c.length()), c.hash());
+            expectedOffset += c.length();
+        }
+        assertEquals(data.length, expectedOffset);
+        double average = (double) data.length / chunks.size();
+        assertTrue(average > ContentChunker.AVG_SIZE / 2.0 && average < ContentChunker.AVG_SIZE * 2.0,
+                "average chunk size " + average);
+    }
+
+    @Test
+    void uniformDataIsCutAtMaximumSize() throws IOException {
+        byte[] data = new byte[3 * ContentChunker.MAX_SIZE + 10];
+        List<ContentChunker.Chunk> chunks = ContentChunker.split(Files.write(dir.resolve("zeros"), data));
+
+        assertEquals(4, chunks.size());
+        for (int i = 0; i < 3; i++) assertEquals(ContentChunker.MAX_SIZE, chunks.get(i).length());
+        assertEquals(10, chunks.get(3).length());
+        assertEquals(chunks.get(0).hash(), chunks.get(1).hash());
+    }
+
+    @Test
+    void insertionOnlyChangesNearbyChunks() throws IOException {
+        byte[] data = random(4 * 1024 * 1024, 3L);
+        byte[] edited = new byte[data.length + 100];
+        int at = data.length / 2;
+        System.arraycopy(data, 0, edited, 0, at);
+        System.arraycopy(random(100, 4L), 0, edited, at, 100);
+        System.arraycopy(data, at, edited, at + 100, data.length - at);
+
+        Set<String> before = new HashSet<>();
+        for (ContentChunker.Chunk c : ContentChunker.split(Files.write(dir.resolve("a"), data))) before.add(c.hash());
+        List<ContentChunker.Chunk> after = ContentChunker.split(Files.write(dir.resolve("b"), edited));
+        long changed = after.stream().filter(c -> !before.contains(c.hash())).count();
+
+        assertTrue(changed >= 1 && changed <= 3, changed + " of " + after.size() + " chunks changed");
+    }
+
+    @Test
+    void sinkReceivesTheBytesOfEveryChunk() throws IOException {
+        byte[] data = random(3 * 1024 * 1024 + 77, 4L);
+        List<byte[]> sunk = new ArrayList<>();
+        List<ContentChunker.Chunk> chunks = ContentChunker.split(Files.write(dir.resolve("sink"), data),
+                (c, bytes) -> sunk.add(bytes));
+
+        assertEquals(chunks, ContentChunker.split(dir.resolve("sink")));
+        assertEquals(chunks.size(), sunk.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            ContentChunker.Chunk c = chunks.get(i);
+            assertArrayEquals(Arrays.copyOfRange(data, (int) c.offset(), (int) c.offset() + c.length()), sunk.get(i));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.choculaterie.util;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.choculaterie.util.TestFiles.random;
+import static com.choculaterie.util.TestFiles.region;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalBackupStoreTest {
+    @TempDir
+    static Path gameDir;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void useTempGameDir() {
+        ConfigManager.setGameDir(gameDir.toFile(), true);
+    }
+
+    // ── Retention ──
+
+    @Test
+    void keepsOnlyNewestWhenNothingElseIsRetained() {
+        List<LocalBackupStore.Version> all = versions(
+                at(2024, 1, 15, 10, 50), at(2024, 1, 15, 9, 0), at(2024, 1, 10, 9, 0));
+        assertEquals(Set.of(all.get(0)), LocalBackupStore.retained(all, 0, 0, 0));
+        assertTrue(LocalBackupStore.retained(List.of(), 24, 7, 4).isEmpty());
+    }
+
+    @Test
+    void keepsNewestPerHour() {
+        List<LocalBackupStore.Version> all = versions(
+                at(2024, 1, 15, 10, 50), at(2024, 1, 15, 10, 20), at(2024, 1, 15, 9, 40), at(2024, 1, 15, 8, 10));
+        assertEquals(Set.of(all.get(0), all.get(2)), LocalBackupStore.retained(all, 2, 0, 0));
+    }
+
+    @Test
+    void keepsNewestPerDayForTheLastDaysWithVersions() {
+        List<LocalBackupStore.Version> all = versions(
+                at(2024, 1, 15, 18, 0), at(2024, 1, 15, 8, 0),
+                at(2024, 1, 12, 23, 0), at(2024, 1, 12, 1, 0),
+                at(2024, 1, 11, 12, 0),
+                at(2024, 1, 9, 12, 0));
+        assertEquals(Set.of(all.get(0), all.get(2), all.get(4)), LocalBackupStore.retained(all, 0, 3, 0));
+    }
+
+    @Test
+    void weeksStartOnMonday() {
+        // 2024-01-15 is a Monday, so the 14th and 13th share the previous week.
+        List<LocalBackupStore.Version> all = versions(
+                at(2024, 1, 15, 0, 30), at(2024, 1, 14, 23, 0), at(2024, 1, 13, 12, 0), at(2024, 1, 7, 12, 0));
+        assertEquals(Set.of(all.get(0), all.get(1)), LocalBackupStore.retained(all, 0, 0, 2));
+    }
+
+    @Test
+    void unionOfAllRules() {
+        List<LocalBackupStore.Version> all = versions(
+                at(2024, 1, 15, 10, 0), at(2024, 1, 15, 9, 0), at(2024, 1, 14, 9, 0), at(2024, 1, 1, 9, 0));
+        assertEquals(Set.of(all.get(0), all.get(1), all.get(2), all.get(3)),
+                LocalBackupStore.retained(all, 2, 2, 3));
+    }
+
+    // ── Store ──
+
+    @Test
+    void roundTripsChangedFilesAndReusesUnchangedOnes() throws IOException {
+        Path world = Files.createDirectories(dir.resolve("world"));
+        Files.createDirectories(world.resolve("region"));
+        byte[] level = random(200_000, 1L);
+        byte[] region = region(3000, 9000);
+        Files.write(world.resolve("level.dat"), level);
+        Files.write(world.resolve("region/r.0.0.mca"), region);
+        Files.writeString(world.resolve("session.lock"), "lock");
+
+        LocalBackupStore.Version first = LocalBackupStore.create("RoundTrip", world, null);
+        assertEquals(2, first.files());
+        assertEquals(first, LocalBackupStore.create("RoundTrip", world, null),
+                "an unchanged world must not make a new version");
+
+        level[1234] ^= 1;
+        Files.write(world.resolve("level.dat"), level);
+        LocalBackupStore.Version second = LocalBackupStore.create("RoundTrip", world, null);
+        assertTrue(second.createdAt() > first.createdAt());
+
+        Path out = Files.createDirectories(dir.resolve("out"));
+        LocalBackupStore.extract(second, out, null);
+        assertArrayEquals(level, Files.readAllBytes(out.resolve("level.dat")));
+        assertArrayEquals(region, Files.readAllBytes(out.resolve("region/r.0.0.mca")));
+        assertFalse(Files.exists(out.resolve("session.lock")));
+        assertEquals(Files.getLastModifiedTime(world.resolve("level.dat")).toMillis(),
+                Files.getLastModifiedTime(out.resolve("level.dat")).toMillis());
+        assertTrue(Files.exists(gameDir.resolve("save-manager/backups/.lock")));
+    }
+
+    @Test
+    void pruneKeepsBlobsOfRemainingVersions() throws IOException {
+        Path world = Files.createDirectories(dir.resolve("pruned"));
+        byte[] data = random(300_000, 2L);
+        Files.write(world.resolve("level.dat"), data);
+        LocalBackupStore.create("Pruned", world, null);
+        int blobsBefore = blobCount();
+
+        LocalBackupStore.prune();
+
+        assertEquals(blobsBefore, blobCount());
+        LocalBackupStore.Version kept = LocalBackupStore.versions("Pruned").get(0);
+        Path out = Files.createDirectories(dir.resolve("pruned-out"));
+        LocalBackupStore.extract(kept, out, null);
+        assertArrayEquals(data, Files.readAllBytes(out.resolve("level.dat")));
+    }
+
+    private static int blobCount() throws IOException {
+        try (Stream<Path> s = Files.walk(gameDir.resolve("save-manager/backups/blobs"))) {
+            return (int) s.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static long at(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute).atZone(ZoneId.systemDefault()).toInstant()
+                .toEpochMilli();
+    }
+
+    private static List<LocalBackupStore.Version> versions(long... newestFirst) {
+        List<LocalBackupStore.Version> out = new ArrayList<>();
+        for (long t : newestFirst) out.add(new LocalBackupStore.Version("World", t, 1, 1L, Path.of(t + ".json")));
+        return out;
+    }
+}
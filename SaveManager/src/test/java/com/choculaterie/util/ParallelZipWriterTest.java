@@ -0,0 +1,251 @@
+package com.choculaterie.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static com.choculaterie.util.TestFiles.random;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelZipWriterTest {
+    private static final int BLOCK = ParallelZipWriter.BLOCK_SIZE;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsEmptyFilesAndBlockBoundaries() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("empty.txt", new byte[0]);
+        files.put("one.txt", new byte[] { 42 });
+        files.put("block.dat", text(BLOCK));
+        files.put("two-blocks.dat", text(2 * BLOCK));
+        files.put("block-minus-one.dat", text(BLOCK - 1));
+        files.put("block-plus-one.dat", text(BLOCK + 1));
+        files.put("data/level.dat_old", new byte[0]);
+
+        Path zip = write(files, new CompressionPolicy(CompressionPolicy.BALANCED), 4);
+
+        assertZipFile(zip, files);
+        assertZipStream(zip, files);
+    }
+
+    @Test
+    void roundTripsMixedStoredAndDeflatedEntries() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("level.dat", gzip(text(10_000)));
+        files.put("region/r.0.0.mca", random(3 * BLOCK + 123, 1L));
+        files.put("stats/player.json", text(50_000));
+        files.put("region/r.0.1.mca", random(2 * BLOCK, 2L));
+        files.put("empty", new byte[0]);
+        files.put("data/raids.dat", text(3 * BLOCK + 7));
+
+        Path zip = write(files, new CompressionPolicy(CompressionPolicy.FAST), 3);
+
+        assertZipFile(zip, files);
+        assertZipStream(zip, files);
+        try (ZipFile zf = new ZipFile(zip.toFile())) {
+            assertEquals(ZipEntry.STORED, zf.getEntry("level.dat").getMethod());
+            assertEquals(ZipEntry.STORED, zf.getEntry("region/r.0.0.mca").getMethod());
+            assertEquals(ZipEntry.STORED, zf.getEntry("region/r.0.1.mca").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zf.getEntry("stats/player.json").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zf.getEntry("data/raids.dat").getMethod());
+        }
+    }
+
+    @Test
+    void storeLevelStoresEverything() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("a.txt", text(9 * BLOCK + 5));
+        files.put("b.txt", text(100));
+        files.put("c.txt", new byte[0]);
+
+        Path zip = write(files, new CompressionPolicy(CompressionPolicy.STORE), 1);
+
+        assertZipFile(zip, files);
+        assertZipStream(zip, files);
+        try (ZipFile zf = new ZipFile(zip.toFile())) {
+            zf.stream().forEach(e -> assertEquals(ZipEntry.STORED, e.getMethod(), e.getName()));
+        }
+    }
+
+    @Test
+    void writesZip64ForEntriesOverFourGigabytes() throws IOException {
+        long size = 0x1_0000_0000L + BLOCK + 17;
+        Path big = dir.resolve("big.mca");
+        try (RandomAccessFile raf = new RandomAccessFile(big.toFile(), "rw")) {
+            raf.setLength(size);
+            raf.seek(size - 4);
+            raf.write(new byte[] { 1, 2, 3, 4 });
+        }
+        Path small = dir.resolve("after.txt");
+        Files.write(small, text(1000));
+
+        Path zip = dir.resolve("big.zip");
+        try (OutputStream out = Files.newOutputStream(zip);
+                ParallelZipWriter writer = new ParallelZipWriter(out, 4,
+                        new CompressionPolicy(CompressionPolicy.FAST), null)) {
+            writer.addFile(big, "region/big.mca", size, 0L);
+            writer.addFile(small, "after.txt", 1000, 0L);
+            writer.finish();
+        }
+
+        CRC32 expected = new CRC32();
+        try (InputStream in = Files.newInputStream(big)) {
+            byte[] buf = new byte[BLOCK];
+            int n;
+            while ((n = in.read(buf)) > 0) expected.update(buf, 0, n);
+        }
+        try (ZipFile zf = new ZipFile(zip.toFile())) {
+            ZipEntry e = zf.getEntry("region/big.mca");
+            assertNotNull(e);
+            assertEquals(size, e.getSize());
+            assertEquals(expected.getValue(), e.getCrc());
+            try (InputStream in = zf.getInputStream(e)) {
+                CRC32 actual = new CRC32();
+                long total = 0L;
+                byte[] buf = new byte[BLOCK];
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    actual.update(buf, 0, n);
+                    total += n;
+                }
+                assertEquals(size, total);
+                assertEquals(expected.getValue(), actual.getValue());
+            }
+            try (InputStream in = zf.getInputStream(zf.getEntry("after.txt"))) {
+                assertArrayEquals(text(1000), in.readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    void writesZip64HeadersForStoredEntriesOverFourGigabytes() throws IOException {
+        long size = 0x1_0000_0000L + 3;
+        Path big = dir.resolve("big.bin");
+        try (RandomAccessFile raf = new RandomAccessFile(big.toFile(), "rw")) {
+            raf.setLength(size);
+            raf.seek(size - 3);
+            raf.write(new byte[] { 7, 8, 9 });
+        }
+        Path small = dir.resolve("after.txt");
+        Files.write(small, text(1000));
+
+        Path zip = dir.resolve("big.zip");
+        try (OutputStream out = Files.newOutputStream(zip);
+                ParallelZipWriter writer = new ParallelZipWriter(out, 4,
+                        new CompressionPolicy(CompressionPolicy.STORE), null)) {
+            writer.addFile(big, "big.bin", size, 0L);
+            writer.addFile(small, "after.txt", 1000, 0L);
+            writer.finish();
+        }
+
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zip))) {
+            ZipEntry e = in.getNextEntry();
+            assertEquals("big.bin", e.getName());
+            assertEquals(ZipEntry.STORED, e.getMethod());
+            assertEquals(size, e.getSize());
+            long skipped = 0L;
+            for (long n; skipped < size - 3 && (n = in.skip(size - 3 - skipped)) > 0; ) skipped += n;
+            assertEquals(size - 3, skipped);
+            assertArrayEquals(new byte[] { 7, 8, 9 }, in.readAllBytes());
+            assertEquals("after.txt", in.getNextEntry().getName());
+            assertArrayEquals(text(1000), in.readAllBytes());
+        }
+        try (ZipFile zf = new ZipFile(zip.toFile())) {
+            assertEquals(size, zf.getEntry("big.bin").getSize());
+            try (InputStream in = zf.getInputStream(zf.getEntry("after.txt"))) {
+                assertArrayEquals(text(1000), in.readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    void combinedCrcMatchesWholeCrc() {
+        byte[] data = random(10_000, 3L);
+        for (int split : new int[] { 0, 1, 4096, 9999, 10_000 }) {
+            CRC32 a = new CRC32(), b = new CRC32(), whole = new CRC32();
+            a.update(data, 0, split);
+            b.update(data, split, data.length - split);
+            whole.update(data);
+            assertEquals(whole.getValue(),
+                    ParallelZipWriter.crc32Combine(a.getValue(), b.getValue(), data.length - split));
+        }
+    }
+
+    private Path write(Map<String, byte[]> files, CompressionPolicy policy, int threads) throws IOException {
+        Path src = Files.createDirectories(dir.resolve("src"));
+        Path zip = dir.resolve("out.zip");
+        long[] progress = { 0L };
+        try (OutputStream out = Files.newOutputStream(zip);
+                ParallelZipWriter writer = new ParallelZipWriter(out, threads, policy, n -> progress[0] = n)) {
+            for (Map.Entry<String, byte[]> f : files.entrySet()) {
+                Path file = src.resolve(f.getKey());
+                Files.createDirectories(file.getParent());
+                Files.write(file, f.getValue());
+                writer.addFile(file, f.getKey(), f.getValue().length, 1_700_000_000_000L);
+            }
+            writer.finish();
+        }
+        assertEquals(files.values().stream().mapToLong(b -> b.length).sum(), progress[0]);
+        return zip;
+    }
+
+    private static void assertZipFile(Path zip, Map<String, byte[]> files) throws IOException {
+        try (ZipFile zf = new ZipFile(zip.toFile())) {
+            assertEquals(files.size(), zf.size());
+            for (Map.Entry<String, byte[]> f : files.entrySet()) {
+                ZipEntry e = zf.getEntry(f.getKey());
+                assertNotNull(e, f.getKey());
+                assertEquals(f.getValue().length, e.getSize(), f.getKey());
+                try (InputStream in = zf.getInputStream(e)) {
+                    assertArrayEquals(f.getValue(), in.readAllBytes(), f.getKey());
+                }
+            }
+        }
+    }
+
+    private static void assertZipStream(Path zip, Map<String, byte[]> files) throws IOException {
+        Map<String, byte[]> remaining = new LinkedHashMap<>(files);
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zip))) {
+            for (ZipEntry e; (e = in.getNextEntry()) != null; ) {
+                byte[] want = remaining.remove(e.getName());
+                assertNotNull(want, e.getName());
+                assertArrayEquals(want, in.readAllBytes(), e.getName());
+            }
+        }
+        assertTrue(remaining.isEmpty(), "missing entries " + remaining.keySet());
+    }
+
+    private static byte[] text(int size) {
+        byte[] line = "{\"x\":12,\"y\":64,\"z\":-300,\"id\":\"minecraft:stone\"}\n".getBytes();
+        byte[] out = new byte[size];
+        for (int i = 0; i < size; i++) out[i] = line[i % line.length];
+        return out;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(bytes)) {
+            gz.write(data);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,94 @@
+package com.choculaterie.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.choculaterie.util.TestFiles.region;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class RegionFileChunkerTest {
+    private static final int SECTOR = 4096;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void splitsHeaderAndPayloadsAtTheirSectors() throws IOException {
+        byte[] region = region(1000, 5000);
+        List<ContentChunker.Chunk> chunks = RegionFileChunker.split(Files.write(dir.resolve("r.0.0.mca"), region));
+
+        assertEquals(3, chunks.size());
+        assertEquals(0L, chunks.get(0).offset());
+        assertEquals(2 * SECTOR, chunks.get(0).length());
+        assertEquals(2L * SECTOR, chunks.get(1).offset());
+        assertEquals(1000 + 4, chunks.get(1).length());
+        assertEquals(1_700_000_000L, chunks.get(1).stamp());
+        assertEquals(3L * SECTOR, chunks.get(2).offset());
+        assertEquals(5000 + 4, chunks.get(2).length());
+        assertEquals(ContentChunker.hash(region, 3 * SECTOR, 5004), chunks.get(2).hash());
+    }
+
+    @Test
+    void rehashesPayloadWhenTimestampAndLengthAreUnchanged() throws IOException {
+        Path file = dir.resolve("r.0.0.mca");
+        byte[] region = region(1000, 5000);
+        List<ContentChunker.Chunk> before = RegionFileChunker.split(Files.write(file, region));
+
+        // Saved again within the same second: same timestamp and length, different bytes.
+        region[3 * SECTOR + 100] ^= 0x55;
+        List<ContentChunker.Chunk> after = RegionFileChunker.split(Files.write(file, region));
+
+        assertEquals(before.get(0), after.get(0));
+        assertEquals(before.get(1), after.get(1));
+        assertEquals(before.get(2).stamp(), after.get(2).stamp());
+        assertEquals(before.get(2).length(), after.get(2).length());
+        assertNotEquals(before.get(2).hash(), after.get(2).hash());
+        assertEquals(ContentChunker.hash(region, 3 * SECTOR, 5004), after.get(2).hash());
+    }
+
+    @Test
+    void fallsBackToContentChunkingForInvalidHeaders() throws IOException {
+        byte[] region = region(1000, 5000);
+        ByteBuffer.wrap(region).putInt(0, (1 << 8) | 1);
+        Path file = Files.write(dir.resolve("r.0.0.mca"), region);
+
+        assertEquals(ContentChunker.split(file), RegionFileChunker.split(file));
+    }
+
+    @Test
+    void sinkReceivesHeaderAndPayloads() throws IOException {
+        byte[] region = region(1000, 5000);
+        List<byte[]> sunk = new ArrayList<>();
+        List<ContentChunker.Chunk> chunks = RegionFileChunker.split(Files.write(dir.resolve("r.0.0.mca"), region),
+                (c, bytes) -> sunk.add(bytes));
+
+        assertEquals(3, sunk.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            ContentChunker.Chunk c = chunks.get(i);
+            assertArrayEquals(Arrays.copyOfRange(region, (int) c.offset(), (int) c.offset() + c.length()), sunk.get(i));
+        }
+    }
+
+    @Test
+    void invalidHeaderSinksOnlyTheFallbackChunks() throws IOException {
+        byte[] region = region(1000, 5000);
+        // The second entry points past the end of the file; nothing of the first may have been sunk.
+        ByteBuffer.wrap(region).putInt(4, (100 << 8) | 1);
+        List<ContentChunker.Chunk> sunk = new ArrayList<>();
+        List<ContentChunker.Chunk> chunks = RegionFileChunker.split(Files.write(dir.resolve("r.0.0.mca"), region),
+                (c, bytes) -> sunk.add(c));
+
+        assertEquals(ContentChunker.split(dir.resolve("r.0.0.mca")), chunks);
+        assertEquals(chunks, sunk);
+    }
+}
@@ -0,0 +1,42 @@
+package com.choculaterie.util;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/** File contents shared by the chunking, archive, backup and upload tests. */
+public final class TestFiles {
+    private static final int SECTOR = 4096;
+
+    private TestFiles() {
+    }
+
+    /** {@code size} bytes that do not compress and never repeat a window, reproducible from {@code seed}. */
+    public static byte[] random(int size, long seed) {
+        byte[] out = new byte[size];
+        new Random(seed).nextBytes(out);
+        return out;
+    }
+
+    /** A region file with a payload of each given length, one per sector run after the two header sectors. */
+    public static byte[] region(int... payloads) {
+        int sector = 2;
+        int[] sectors = new int[payloads.length];
+        for (int i = 0; i < payloads.length; i++) {
+            sectors[i] = (payloads[i] + 4 + SECTOR - 1) / SECTOR;
+        }
+        int total = 2;
+        for (int s : sectors) total += s;
+        ByteBuffer bb = ByteBuffer.allocate(total * SECTOR);
+        Random random = new Random(9L);
+        for (int i = 0; i < payloads.length; i++) {
+            bb.putInt(i * 4, (sector << 8) | sectors[i]);
+            bb.putInt(SECTOR + i * 4, 1_700_000_000);
+            byte[] body = new byte[payloads[i]];
+            random.nextBytes(body);
+            bb.putInt(sector * SECTOR, payloads[i]);
+            bb.put(sector * SECTOR + 4, body);
+            sector += sectors[i];
+        }
+        return bb.array();
+    }
+}
@@ -0,0 +1,44 @@
+package com.choculaterie.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WatchManagerTest {
+    @TempDir
+    static Path gameDir;
+
+    @BeforeAll
+    static void useTempGameDir() {
+        ConfigManager.setGameDir(gameDir.toFile(), true);
+    }
+
+    @Test
+    void flushPersistsQueuedRebaselines() throws IOException {
+        Path saves = ConfigManager.getSavesDir();
+        Path world = Files.createDirectories(saves.resolve("Flushed"));
+        Files.write(world.resolve("level.dat"), new byte[100]);
+        WatchManager.setWatching("Flushed", world, true);
+        WatchManager.flush();
+
+        Files.write(world.resolve("level.dat"), new byte[250]);
+        WatchManager.dismissChanges(List.of("Flushed"), saves);
+        WatchManager.flush();
+
+        // What a fresh process, such as the next command-line run, would load.
+        Path file = gameDir.resolve("config/save-manager-watch-manifest.json");
+        assertTrue(Files.exists(file));
+        JsonObject manifest = new Gson().fromJson(Files.readString(file), JsonObject.class);
+        assertEquals(250L, manifest.getAsJsonObject("Flushed").getAsJsonArray("level.dat").get(0).getAsLong());
+    }
+}
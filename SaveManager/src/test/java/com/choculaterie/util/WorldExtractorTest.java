@@ -0,0 +1,143 @@
+package com.choculaterie.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.choculaterie.util.TestFiles.random;
+import static com.choculaterie.util.TestFiles.region;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorldExtractorTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsWorldThroughParallelZipWriter() throws IOException {
+        Map<String, byte[]> files = world();
+        Path worldDir = write(dir.resolve("World"), files);
+        Files.writeString(worldDir.resolve("session.lock"), "lock");
+        Path zip = dir.resolve("world.zip");
+        try (OutputStream out = Files.newOutputStream(zip)) {
+            WorldArchiver.writeZip(worldDir, out, null, new CompressionPolicy(CompressionPolicy.FAST), 4);
+        }
+
+        Path target = dir.resolve("restored");
+        WorldExtractor.extract(zip, target, 4);
+
+        assertTree(files, target);
+        assertFalse(Files.exists(target.resolve("session.lock")));
+    }
+
+    @Test
+    void streamingExtractMatchesArchiveAndReportsProgress() throws IOException {
+        Map<String, byte[]> files = world();
+        Path worldDir = write(dir.resolve("World"), files);
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        long total = WorldArchiver.writeZip(worldDir, zip, null, new CompressionPolicy(CompressionPolicy.BALANCED), 2);
+        List<Long> progress = new ArrayList<>();
+
+        Path target = dir.resolve("restored");
+        WorldExtractor.extractStream(new ByteArrayInputStream(zip.toByteArray()), target, progress::add);
+
+        assertTree(files, target);
+        assertEquals(total, progress.get(progress.size() - 1));
+    }
+
+    @Test
+    void stripsSingleTopLevelFolder() throws IOException {
+        byte[] zip = zip("MyWorld/level.dat", "MyWorld/region/r.0.0.mca");
+
+        Path fromFile = dir.resolve("file");
+        WorldExtractor.extract(Files.write(dir.resolve("nested.zip"), zip), fromFile, 2);
+        Path fromStream = dir.resolve("stream");
+        WorldExtractor.extractStream(new ByteArrayInputStream(zip), fromStream, null);
+
+        for (Path target : List.of(fromFile, fromStream)) {
+            assertEquals("MyWorld/level.dat", Files.readString(target.resolve("level.dat")));
+            assertEquals("MyWorld/region/r.0.0.mca", Files.readString(target.resolve("region/r.0.0.mca")));
+            assertFalse(Files.exists(target.resolve("MyWorld")), target.toString());
+        }
+    }
+
+    @Test
+    void keepsFoldersWhenThereIsNoSingleRoot() throws IOException {
+        byte[] zip = zip("a/level.dat", "b/level.dat");
+
+        Path target = dir.resolve("target");
+        WorldExtractor.extract(Files.write(dir.resolve("two.zip"), zip), target, 1);
+
+        assertTrue(Files.exists(target.resolve("a/level.dat")));
+        assertTrue(Files.exists(target.resolve("b/level.dat")));
+    }
+
+    @Test
+    void rejectsEntriesOutsideTheTarget() throws IOException {
+        byte[] zip = zip("level.dat", "../evil.txt");
+        Path target = dir.resolve("inside/target");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> WorldExtractor.extract(Files.write(dir.resolve("slip.zip"), zip), target, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> WorldExtractor.extractStream(new ByteArrayInputStream(zip), target, null));
+
+        assertFalse(Files.exists(dir.resolve("inside/evil.txt")));
+        assertThrows(IllegalArgumentException.class, () -> WorldExtractor.resolveEntry(target, "a/../../b"));
+    }
+
+    private static Map<String, byte[]> world() {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("level.dat", random(2_000, 1L));
+        files.put("region/r.0.0.mca", region(1000, 5000, 70_000));
+        files.put("playerdata/0000.dat", random(500, 2L));
+        files.put("data/raids.dat", new byte[0]);
+        return files;
+    }
+
+    private static Path write(Path root, Map<String, byte[]> files) throws IOException {
+        for (Map.Entry<String, byte[]> f : files.entrySet()) {
+            Path p = root.resolve(f.getKey());
+            Files.createDirectories(p.getParent());
+            Files.write(p, f.getValue());
+        }
+        return root;
+    }
+
+    private static void assertTree(Map<String, byte[]> files, Path root) throws IOException {
+        for (Map.Entry<String, byte[]> f : files.entrySet())
+            assertArrayEquals(f.getValue(), Files.readAllBytes(root.resolve(f.getKey())), f.getKey());
+        try (var walk = Files.walk(root)) {
+            assertEquals(files.size(), walk.filter(Files::isRegularFile).count());
+        }
+    }
+
+    /** An archive whose entries hold their own names. */
+    private static byte[] zip(String... names) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            for (String name : names) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(name.getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}